@@ -0,0 +1,179 @@
+package eu.enmeshed;
+
+import eu.enmeshed.EnmeshedMessagingService.AuthenticationStatus;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the status of all awaited authentication requests of a messaging service together. Every
+ * round looks up all awaited requests with one sync and one batch query. The interval starts at
+ * {@code minInterval} and doubles after every round up to {@code maxInterval}, a new waiter resets
+ * it.
+ */
+@Slf4j
+class AuthenticationStatusPoller implements AutoCloseable {
+
+  private final EnmeshedMessagingService messagingService;
+
+  private final Duration minInterval;
+
+  private final Duration maxInterval;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final Map<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+  private final Object lock = new Object();
+
+  private Duration interval;
+
+  private ScheduledFuture<?> nextRound;
+
+  private long nextRoundNanos;
+
+  private boolean polling;
+
+  private boolean closed;
+
+  AuthenticationStatusPoller(
+      EnmeshedMessagingService messagingService, Duration minInterval, Duration maxInterval) {
+
+    this.messagingService = messagingService;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.interval = minInterval;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-authentication-poller");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Awaits the final status of a request. Waiters of the same request share one lookup.
+   *
+   * @return Future completed with the final status, or exceptionally with a {@link
+   *     java.util.concurrent.TimeoutException} when the timeout passes first
+   */
+  CompletableFuture<AuthenticationStatus> await(String requestId, Duration timeout) {
+
+    long deadlineNanos = System.nanoTime() + timeout.toNanos();
+    Waiter waiter =
+        waiters.compute(
+            requestId,
+            (id, existing) -> {
+              if (existing == null) {
+                return new Waiter(deadlineNanos);
+              }
+              existing.deadlineNanos = Math.max(existing.deadlineNanos, deadlineNanos);
+              return existing;
+            });
+
+    synchronized (lock) {
+      if (closed) {
+        waiters.remove(requestId, waiter);
+        throw new IllegalStateException("The poller is closed");
+      }
+
+      interval = minInterval;
+      // A running round schedules the next one with the reset interval when it is done
+      if (!polling
+          && (nextRound == null || nextRoundNanos - System.nanoTime() > minInterval.toNanos())) {
+        schedule(minInterval);
+      }
+    }
+
+    return waiter.status.copy().orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Stops polling, the futures of waiting requests are cancelled. */
+  @Override
+  public void close() {
+
+    synchronized (lock) {
+      closed = true;
+    }
+
+    scheduler.shutdownNow();
+    waiters.values().forEach(waiter -> waiter.status.cancel(false));
+    waiters.clear();
+  }
+
+  int getWaitingCount() {
+
+    return waiters.size();
+  }
+
+  private void schedule(Duration delay) {
+
+    if (nextRound != null) {
+      nextRound.cancel(false);
+    }
+    nextRoundNanos = System.nanoTime() + delay.toNanos();
+    nextRound = scheduler.schedule(this::poll, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private void poll() {
+
+    synchronized (lock) {
+      polling = true;
+      nextRound = null;
+    }
+
+    long now = System.nanoTime();
+    waiters.entrySet().removeIf(entry -> entry.getValue().deadlineNanos - now < 0);
+
+    List<String> requestIds = List.copyOf(waiters.keySet());
+
+    if (!requestIds.isEmpty()) {
+      try {
+        messagingService
+            .getAuthenticationStatuses(requestIds)
+            .forEach(
+                (requestId, authenticationStatus) -> {
+                  if (authenticationStatus.isFinal()) {
+                    Waiter waiter = waiters.remove(requestId);
+                    if (waiter != null) {
+                      waiter.status.complete(authenticationStatus);
+                    }
+                  }
+                });
+      } catch (RuntimeException e) {
+        log.warn("Polling of awaited authentication requests failed: {}", e.getMessage());
+      }
+    }
+
+    synchronized (lock) {
+      polling = false;
+      if (!closed && !waiters.isEmpty()) {
+        Duration delay = interval;
+        interval =
+            interval.multipliedBy(2).compareTo(maxInterval) > 0
+                ? maxInterval
+                : interval.multipliedBy(2);
+        schedule(delay);
+      }
+    }
+  }
+
+  private static final class Waiter {
+
+    private final CompletableFuture<AuthenticationStatus> status = new CompletableFuture<>();
+
+    private volatile long deadlineNanos;
+
+    private Waiter(long deadlineNanos) {
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+}
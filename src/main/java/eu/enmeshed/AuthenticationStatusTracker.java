@@ -0,0 +1,247 @@
+package eu.enmeshed;
+
+import eu.enmeshed.EnmeshedMessagingService.AuthenticationStatus;
+import eu.enmeshed.EnmeshedMessagingService.SendMessageFailedException;
+import eu.enmeshed.model.event.RequestStatusChangedEventData;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.timer.TimingWheel;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks authentication requests by consuming request webhooks instead of polling every request. As
+ * soon as a status change with the answer of a tracked request arrives, its future completes with
+ * the {@link AuthenticationStatus}. Requests without answer are completed as expired locally when
+ * their expiry passes. Requests that did not receive an event are checked in one batch every {@code
+ * fallbackPollInterval}, in case a webhook got lost. Requests sent by {@link #sendAndTrack} are
+ * looked up once right after they are tracked, as their answer may arrive before the request id is
+ * known.
+ *
+ * <p>Webhooks have to be passed to {@link #onWebhook(Webhook)} by the application.
+ */
+@Slf4j
+public class AuthenticationStatusTracker implements AutoCloseable {
+
+  private static final Duration FALLBACK_POLL_INTERVAL_DEFAULT = Duration.ofMinutes(5);
+
+  /**
+   * An answer whose webhook arrived before the request was tracked is already synced by the
+   * connector, so the lookup after sending accepts any recent sync instead of syncing again.
+   */
+  private static final Duration EARLY_ANSWER_MAX_STALENESS = Duration.ofDays(1);
+
+  private final EnmeshedMessagingService messagingService;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final TimingWheel timingWheel;
+
+  private final boolean ownsTimingWheel;
+
+  private final Map<String, TrackedRequest> trackedRequests = new ConcurrentHashMap<>();
+
+  public AuthenticationStatusTracker(EnmeshedMessagingService messagingService) {
+    this(messagingService, FALLBACK_POLL_INTERVAL_DEFAULT);
+  }
+
+  /**
+   * @param messagingService Service used to send and check the requests
+   * @param fallbackPollInterval Interval of the batch check of requests without events, no fallback
+   *     check if null
+   */
+  public AuthenticationStatusTracker(
+      EnmeshedMessagingService messagingService, Duration fallbackPollInterval) {
+
+    this(messagingService, fallbackPollInterval, null);
+  }
+
+  /**
+   * @param messagingService Service used to send and check the requests
+   * @param fallbackPollInterval Interval of the batch check of requests without events, no fallback
+   *     check if null
+   * @param timingWheel Wheel running the expiry callbacks, may be shared with other trackers. A
+   *     wheel of the tracker is created if null.
+   */
+  public AuthenticationStatusTracker(
+      EnmeshedMessagingService messagingService,
+      Duration fallbackPollInterval,
+      TimingWheel timingWheel) {
+
+    this.messagingService = messagingService;
+    this.ownsTimingWheel = timingWheel == null;
+    this.timingWheel = ownsTimingWheel ? new TimingWheel() : timingWheel;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-authentication-tracker");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    if (fallbackPollInterval != null) {
+      scheduler.scheduleWithFixedDelay(
+          this::poll,
+          fallbackPollInterval.toNanos(),
+          fallbackPollInterval.toNanos(),
+          TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Sends an authentication request and tracks its answer.
+   *
+   * @see EnmeshedMessagingService#sendAuthenticationRequest(String, String, String, boolean,
+   *     Duration, Map)
+   */
+  public CompletableFuture<AuthenticationStatus> sendAndTrack(
+      String receiver,
+      String displayTitle,
+      String displayText,
+      boolean mandatory,
+      Duration lifetime,
+      Map<String, String> metadata)
+      throws SendMessageFailedException {
+
+    String requestId =
+        messagingService.sendAuthenticationRequest(
+            receiver, displayTitle, displayText, mandatory, lifetime, metadata);
+
+    // Taken after sending, so the request never expires locally before it does on the connector
+    CompletableFuture<AuthenticationStatus> status =
+        track(requestId, ZonedDateTime.now().plus(lifetime));
+
+    // A webhook with the answer may have been consumed before the request id was tracked
+    scheduler.execute(() -> checkEarlyAnswer(requestId));
+
+    return status;
+  }
+
+  /**
+   * Tracks the answer of an authentication request.
+   *
+   * @param requestId ID of the request returned by sendAuthenticationRequest()
+   * @param expiresAt Expiry of the request. The future completes with an expired status if there is
+   *     no answer until then.
+   * @return Future completed with the final status of the request
+   */
+  public CompletableFuture<AuthenticationStatus> track(String requestId, ZonedDateTime expiresAt) {
+
+    TrackedRequest trackedRequest =
+        trackedRequests.computeIfAbsent(requestId, id -> new TrackedRequest());
+
+    synchronized (trackedRequest) {
+      if (trackedRequest.expiry == null && !trackedRequest.status.isDone()) {
+        trackedRequest.expiry =
+            timingWheel.schedule(
+                expiresAt,
+                () -> complete(requestId, messagingService.expiredAuthenticationStatus(requestId)));
+      }
+    }
+
+    return trackedRequest.status;
+  }
+
+  /** Returns the number of tracked requests which are not completed yet. */
+  public int getTrackedCount() {
+
+    return trackedRequests.size();
+  }
+
+  /**
+   * Consumes a webhook received from the connector. Events not related to a tracked request are
+   * ignored.
+   */
+  public void onWebhook(Webhook<?> webhook) {
+
+    if (webhook.getTrigger() == WebhookTrigger.CONSUMPTION__OUTGOING_REQUEST_STATUS_CHANGED
+        && webhook.getData() instanceof RequestStatusChangedEventData eventData
+        && eventData.getRequest() != null
+        && trackedRequests.containsKey(eventData.getRequest().getId())) {
+
+      String requestId = eventData.getRequest().getId();
+      AuthenticationStatus authenticationStatus =
+          messagingService.toAuthenticationStatus(requestId, eventData.getRequest());
+
+      if (authenticationStatus.isFinal()) {
+        complete(requestId, authenticationStatus);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+
+    scheduler.shutdownNow();
+    if (ownsTimingWheel) {
+      timingWheel.close();
+    }
+  }
+
+  private void complete(String requestId, AuthenticationStatus authenticationStatus) {
+
+    TrackedRequest trackedRequest = trackedRequests.remove(requestId);
+
+    if (trackedRequest != null) {
+      synchronized (trackedRequest) {
+        if (trackedRequest.expiry != null) {
+          trackedRequest.expiry.cancel();
+        }
+      }
+      trackedRequest.status.complete(authenticationStatus);
+    }
+  }
+
+  private void checkEarlyAnswer(String requestId) {
+
+    if (!trackedRequests.containsKey(requestId)) {
+      return;
+    }
+
+    try {
+      messagingService
+          .findAuthenticationStatus(requestId, EARLY_ANSWER_MAX_STALENESS)
+          .filter(AuthenticationStatus::isFinal)
+          .ifPresent(authenticationStatus -> complete(requestId, authenticationStatus));
+    } catch (RuntimeException e) {
+      log.warn("Lookup of authentication request {} failed: {}", requestId, e.getMessage());
+    }
+  }
+
+  private void poll() {
+
+    try {
+      List<String> requestIds = List.copyOf(trackedRequests.keySet());
+
+      if (requestIds.isEmpty()) {
+        return;
+      }
+
+      messagingService
+          .getAuthenticationStatuses(requestIds)
+          .forEach(
+              (requestId, authenticationStatus) -> {
+                if (authenticationStatus.isFinal()) {
+                  complete(requestId, authenticationStatus);
+                }
+              });
+    } catch (RuntimeException e) {
+      log.warn("Fallback poll of authentication requests failed: {}", e.getMessage());
+    }
+  }
+
+  private static final class TrackedRequest {
+
+    private final CompletableFuture<AuthenticationStatus> status = new CompletableFuture<>();
+
+    private TimingWheel.Timeout expiry;
+  }
+}
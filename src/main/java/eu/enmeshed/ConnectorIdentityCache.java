@@ -0,0 +1,93 @@
+package eu.enmeshed;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.AttributeWrapper;
+import eu.enmeshed.model.IdentityInfo;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of the identity info and the display name attributes of the connectors, keyed
+ * by their client. All services created for the same connector share one lookup, and concurrent
+ * lookups of the same entry are served by a single connector call. Failed lookups are not cached.
+ *
+ * <p>The clients are referenced weakly, the entries of a client are evicted once it is no longer
+ * used by the application.
+ */
+final class ConnectorIdentityCache {
+
+  private static final Map<EnmeshedClient, ClientEntry> CLIENT_ENTRIES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private ConnectorIdentityCache() {}
+
+  static CompletableFuture<IdentityInfo> getIdentityInfo(
+      EnmeshedClient enmeshedClient, Executor executor) {
+
+    return load(
+        clientEntry(enmeshedClient).identityInfos(),
+        Boolean.TRUE,
+        () -> enmeshedClient.getIdentityInfo().getResult(),
+        executor);
+  }
+
+  static CompletableFuture<AttributeWrapper> getDisplayNameAttribute(
+      EnmeshedClient enmeshedClient,
+      String connectorDisplayName,
+      Supplier<AttributeWrapper> loader,
+      Executor executor) {
+
+    return load(
+        clientEntry(enmeshedClient).displayNameAttributes(),
+        connectorDisplayName,
+        loader,
+        executor);
+  }
+
+  private static ClientEntry clientEntry(EnmeshedClient enmeshedClient) {
+
+    // The entry must not reference the client, otherwise it would never be evicted
+    return CLIENT_ENTRIES.computeIfAbsent(
+        enmeshedClient,
+        client -> new ClientEntry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+  }
+
+  private static <K, V> CompletableFuture<V> load(
+      Map<K, CompletableFuture<V>> cache, K key, Supplier<V> loader, Executor executor) {
+
+    CompletableFuture<V> loaded = new CompletableFuture<>();
+    CompletableFuture<V> existing = cache.putIfAbsent(key, loaded);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    // The loader runs outside of the map, so a slow connector does not block other keys
+    try {
+      executor.execute(
+          () -> {
+            try {
+              loaded.complete(loader.get());
+            } catch (RuntimeException e) {
+              cache.remove(key, loaded);
+              loaded.completeExceptionally(e);
+            }
+          });
+    } catch (RuntimeException e) {
+      cache.remove(key, loaded);
+      loaded.completeExceptionally(e);
+    }
+
+    return loaded;
+  }
+
+  /** Lookups of a client, the identity info is stored under a single key. */
+  private record ClientEntry(
+      Map<Boolean, CompletableFuture<IdentityInfo>> identityInfos,
+      Map<String, CompletableFuture<AttributeWrapper>> displayNameAttributes) {}
+}
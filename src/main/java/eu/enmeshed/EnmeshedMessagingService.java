@@ -1,27 +1,103 @@
 package eu.enmeshed;
 
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import eu.enmeshed.bulk.BulkOperation;
 import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.exception.EnmeshedException;
+import eu.enmeshed.exception.status.EnmeshedHttpStatus;
 import eu.enmeshed.model.Response;
+import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.messaging.Message;
+import eu.enmeshed.model.messaging.MessageContent;
 import eu.enmeshed.model.messaging.SendMessage;
 import eu.enmeshed.model.request.LocalRequest;
 import eu.enmeshed.model.request.Request;
 import eu.enmeshed.model.requestItems.AuthenticationRequestItem;
+import eu.enmeshed.sync.SyncCoordinator;
 import feign.FeignException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @RequiredArgsConstructor
-public class EnmeshedMessagingService {
+public class EnmeshedMessagingService implements AutoCloseable {
+
+  private static final TypeReference<ResultWrapper<LocalRequest>> LOCAL_REQUEST_RESULT_TYPE =
+      new TypeReference<>() {};
+
+  // Keeps the query string of a chunk well below common URL length limits
+  private static final int STATUS_QUERY_CHUNK_SIZE = 50;
+  private static final int STATUS_QUERY_CONCURRENCY = 4;
+
+  private static final long AWAIT_MIN_INTERVAL_MILLIS = 500;
+  private static final long AWAIT_MAX_INTERVAL_SECONDS = 10;
+
+  // Connector errors rejecting a message because of some of its recipients, without naming them
+  private static final Set<String> RECIPIENT_ERROR_CODES =
+      Set.of(
+          "error.transport.messages.missingOrInactiveRelationship",
+          "error.transport.messages.hasNoActiveRelationship",
+          "error.transport.messages.peerIsDeleted",
+          "error.transport.messages.peerIsInDeletion");
+
+  private static final Duration MESSAGE_SCAN_OVERLAP = Duration.ofMinutes(1);
+
+  private static final Duration MESSAGE_POLL_MIN_INTERVAL = Duration.ofSeconds(2);
+  private static final Duration MESSAGE_POLL_MAX_INTERVAL = Duration.ofMinutes(1);
 
   private final EnmeshedClient enmeshedClient;
 
+  /** Coordinator for the Account/Sync calls, may be shared with other services. */
+  private final SyncCoordinator syncCoordinator;
+
+  /** Created with the first awaited request. */
+  private volatile AuthenticationStatusPoller authenticationStatusPoller;
+
+  /**
+   * Lists the chunks of status queries of more than one chunk. Created with the first such query,
+   * its idle threads end after a minute.
+   */
+  private volatile ExecutorService statusQueryExecutor;
+
+  /** Set under the lock of this service, which also guards the creation of its threads. */
+  private volatile boolean closed;
+
+  public EnmeshedMessagingService(EnmeshedClient enmeshedClient) {
+    this(enmeshedClient, new SyncCoordinator(enmeshedClient));
+  }
+
   /**
    * Send an authentication request to an enmeshed wallet. The peer needs to be already onboarded in
    * order to send a message. The receiver can accept or reject the authentication request. The
@@ -98,6 +174,8 @@ public class EnmeshedMessagingService {
       enmeshedClient.sendMessage(
           SendMessage.builder().recipients(List.of(receiver)).content(createdRequest).build());
 
+      syncCoordinator.addPendingWork(createdRequest.getId(), request.getExpiresAt());
+
       return createdRequest.getId();
     } catch (FeignException e) {
       if (e.status() == 404) {
@@ -114,6 +192,268 @@ public class EnmeshedMessagingService {
     }
   }
 
+  /**
+   * Send the same authentication request to many enmeshed wallets. Every receiver gets its own
+   * request, created and sent like with {@link #sendAuthenticationRequest(String, String, String,
+   * boolean, Duration, Map)}. Up to {@code maxConcurrency} receivers are processed at the same
+   * time, each on its own worker thread.
+   *
+   * @param receivers enmeshed addresses of the receivers
+   * @param displayTitle Displayed title of the authentication request
+   * @param displayText Displayed description of the authentication request
+   * @param mandatory flag whether the acceptance of this authentication request is displayed as
+   *     mandatory.
+   * @param lifetime Lifetime of the requests
+   * @param metadata Map with metadata that will be attached to the AuthenticationRequestItems.
+   * @param maxConcurrency Maximum number of receivers processed at the same time
+   * @param progressListener Called after every processed receiver, may be null
+   * @return Running operation. Its results contain the Request-ID per receiver, or the {@link
+   *     SendMessageFailedException} if sending to the receiver failed.
+   */
+  public BulkOperation<String, String> sendAuthenticationRequests(
+      List<String> receivers,
+      String displayTitle,
+      String displayText,
+      boolean mandatory,
+      Duration lifetime,
+      Map<String, String> metadata,
+      int maxConcurrency,
+      Consumer<BulkOperation.Progress> progressListener) {
+
+    return sendAuthenticationRequests(
+        receivers,
+        displayTitle,
+        displayText,
+        mandatory,
+        lifetime,
+        metadata,
+        maxConcurrency,
+        null,
+        progressListener);
+  }
+
+  /**
+   * Send the same authentication request to many enmeshed wallets, processing the receivers on the
+   * given executor.
+   *
+   * @param executor Executor running the workers, a thread per worker if null
+   * @see #sendAuthenticationRequests(List, String, String, boolean, Duration, Map, int, Consumer)
+   */
+  public BulkOperation<String, String> sendAuthenticationRequests(
+      List<String> receivers,
+      String displayTitle,
+      String displayText,
+      boolean mandatory,
+      Duration lifetime,
+      Map<String, String> metadata,
+      int maxConcurrency,
+      Executor executor,
+      Consumer<BulkOperation.Progress> progressListener) {
+
+    return BulkOperation.start(
+        receivers,
+        receiver ->
+            sendAuthenticationRequest(
+                receiver, displayTitle, displayText, mandatory, lifetime, metadata),
+        maxConcurrency,
+        executor,
+        progressListener);
+  }
+
+  /**
+   * Send the same content, e.g. a {@code Mail}, to many enmeshed wallets. The recipients are split
+   * into chunks of {@code chunkSize}, every chunk is sent as one message to all of its recipients.
+   * Up to {@code maxConcurrency} chunks are sent at the same time, each on its own worker thread.
+   *
+   * <p>If the connector rejects a chunk because of some of its recipients, e.g. because one
+   * recipient is not a peer of a relationship, the other recipients still get the message: the
+   * recipients named in the error are left out, otherwise the chunk is split in halves until the
+   * rejected recipients are isolated. Other rejections, e.g. of the content, fail the whole chunk
+   * without being retried. Requests can not be broadcast, as they are created per peer.
+   *
+   * @param recipients enmeshed addresses of the recipients
+   * @param content Content of the message
+   * @param chunkSize Maximum number of recipients of a single message
+   * @param maxConcurrency Maximum number of chunks sent at the same time
+   * @param progressListener Called after every sent chunk, may be null
+   * @return Running operation with a {@link BroadcastResult} per chunk, use {@link
+   *     BroadcastResult#combine(List)} for the outcome of the whole broadcast
+   */
+  public BulkOperation<List<String>, BroadcastResult> broadcast(
+      List<String> recipients,
+      MessageContent content,
+      int chunkSize,
+      int maxConcurrency,
+      Consumer<BulkOperation.Progress> progressListener) {
+
+    return broadcast(recipients, content, chunkSize, maxConcurrency, null, progressListener);
+  }
+
+  /**
+   * Send the same content to many enmeshed wallets, sending the chunks on the given executor.
+   *
+   * @param executor Executor running the workers, a thread per worker if null
+   * @see #broadcast(List, MessageContent, int, int, Consumer)
+   */
+  public BulkOperation<List<String>, BroadcastResult> broadcast(
+      List<String> recipients,
+      MessageContent content,
+      int chunkSize,
+      int maxConcurrency,
+      Executor executor,
+      Consumer<BulkOperation.Progress> progressListener) {
+
+    if (content instanceof Request) {
+      throw new IllegalArgumentException("Requests can not be sent to multiple recipients");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+
+    List<String> distinctRecipients = List.copyOf(new LinkedHashSet<>(recipients));
+    List<List<String>> chunks = new ArrayList<>();
+    for (int from = 0; from < distinctRecipients.size(); from += chunkSize) {
+      chunks.add(
+          distinctRecipients.subList(from, Math.min(from + chunkSize, distinctRecipients.size())));
+    }
+
+    return BulkOperation.start(
+        chunks,
+        chunk -> {
+          List<Message> messages = new ArrayList<>();
+          Map<String, Exception> failures = new LinkedHashMap<>();
+          sendToChunk(chunk, content, messages, failures);
+          return new BroadcastResult(messages, failures);
+        },
+        maxConcurrency,
+        executor,
+        progressListener);
+  }
+
+  private void sendToChunk(
+      List<String> recipients,
+      MessageContent content,
+      List<Message> messages,
+      Map<String, Exception> failures) {
+
+    try {
+      messages.add(
+          enmeshedClient
+              .sendMessage(SendMessage.builder().recipients(recipients).content(content).build())
+              .getResult());
+    } catch (FeignException e) {
+      ConnectorError error = ConnectorError.of(e);
+      List<String> named =
+          error == null
+              ? List.of()
+              : recipients.stream().filter(recipient -> error.names(recipient)).toList();
+
+      if (!isRecipientRejection(e) || error == null) {
+        recipients.forEach(recipient -> failures.put(recipient, e));
+      } else if (!named.isEmpty()) {
+        // The connector names the rejected recipients, send to the others right away
+        named.forEach(recipient -> failures.put(recipient, e));
+        List<String> others = recipients.stream().filter(r -> !named.contains(r)).toList();
+        if (!others.isEmpty()) {
+          sendToChunk(others, content, messages, failures);
+        }
+      } else if (recipients.size() > 1 && RECIPIENT_ERROR_CODES.contains(error.code())) {
+        int half = recipients.size() / 2;
+        sendToChunk(recipients.subList(0, half), content, messages, failures);
+        sendToChunk(recipients.subList(half, recipients.size()), content, messages, failures);
+      } else {
+        recipients.forEach(recipient -> failures.put(recipient, e));
+      }
+    } catch (RuntimeException e) {
+      recipients.forEach(recipient -> failures.put(recipient, e));
+    }
+  }
+
+  /** Whether the status allows that the connector rejected a message because of its recipients. */
+  private static boolean isRecipientRejection(FeignException e) {
+
+    return e.status() == HTTP_BAD_REQUEST
+        || e.status() == HTTP_FORBIDDEN
+        || e.status() == HTTP_NOT_FOUND;
+  }
+
+  /** Code and message of the error body of the connector. */
+  private record ConnectorError(String code, String message) {
+
+    /** Returns the error of the response body of the exception, null if there is none. */
+    static ConnectorError of(FeignException e) {
+
+      if (e.content() == null || e.content().length == 0) {
+        return null;
+      }
+
+      try {
+        JsonNode error = EnmeshedObjectMapper.get().readTree(e.content()).path("error");
+        return error.isObject()
+            ? new ConnectorError(error.path("code").asText(), error.path("message").asText())
+            : null;
+      } catch (IOException ex) {
+        return null;
+      }
+    }
+
+    boolean names(String recipient) {
+
+      return message.contains(recipient);
+    }
+  }
+
+  /**
+   * Iterate over the messages created since the cursor position, in the order of their creation.
+   * The connector is synced before the first search.
+   *
+   * @param cursor Where to start, e.g. {@link MessageIterator.Cursor#startingAt(ZonedDateTime)} or
+   *     the cursor of a previous iteration
+   * @return Iterator which prefetches the next page on its own daemon thread
+   * @see MessageIterator
+   */
+  public MessageIterator iterateMessages(MessageIterator.Cursor cursor) {
+
+    return iterateMessages(cursor, MESSAGE_SCAN_OVERLAP, null);
+  }
+
+  /**
+   * Iterate over the messages created since the cursor position.
+   *
+   * @param overlap How long before the cursor position a resumed iteration searches again for
+   *     messages the connector synced late
+   * @param executor Executor fetching the pages, an own daemon thread if null
+   * @see #iterateMessages(MessageIterator.Cursor)
+   */
+  public MessageIterator iterateMessages(
+      MessageIterator.Cursor cursor, Duration overlap, Executor executor) {
+
+    return new MessageIterator(enmeshedClient, syncCoordinator::sync, cursor, overlap, executor);
+  }
+
+  /**
+   * Poll for messages created since the cursor position and report them as webhook events, for
+   * environments which can not receive webhooks. Polls every 2 seconds while messages arrive
+   * frequently, up to every minute while none arrive.
+   *
+   * @param cursor High-water mark to start at, e.g. the persisted cursor of a previous poller
+   * @param listener Called with a {@link WebhookTrigger#TRANSPORT__MESSAGE_RECEIVED} or {@link
+   *     WebhookTrigger#TRANSPORT__MESSAGE_SENT} event for every new message
+   * @return Started poller, to be closed when no longer needed
+   * @see MessageDeltaPoller
+   */
+  public MessageDeltaPoller pollMessages(
+      MessageIterator.Cursor cursor, Consumer<Webhook<?>> listener) {
+
+    return new MessageDeltaPoller(
+        this,
+        cursor,
+        listener,
+        MESSAGE_POLL_MIN_INTERVAL,
+        MESSAGE_POLL_MAX_INTERVAL,
+        MESSAGE_SCAN_OVERLAP);
+  }
+
   /**
    * Retrieve the Status of an AuthenticationRequest.
    *
@@ -123,22 +463,303 @@ public class EnmeshedMessagingService {
    */
   public AuthenticationStatus getAuthenticationStatus(String requestId) {
 
-    enmeshedClient.sync();
+    return getAuthenticationStatus(requestId, Duration.ZERO);
+  }
+
+  /**
+   * Retrieve the Status of an AuthenticationRequest without syncing inline if the connector was
+   * synced recently, e.g. by a {@link eu.enmeshed.sync.SyncScheduler}.
+   *
+   * @param requestId ID of the request returned previously by sendAuthenticationRequest()
+   * @param maxStaleness Accepted age of the last sync. {@link Duration#ZERO} always syncs.
+   * @return {@link AuthenticationStatus} containing information if the request exists, the receiver
+   *     has answered and how he has decided. Returns null if the request does not exist.
+   */
+  public AuthenticationStatus getAuthenticationStatus(String requestId, Duration maxStaleness) {
+
+    syncCoordinator.sync(maxStaleness);
 
     LocalRequest localRequest;
     try {
       localRequest = enmeshedClient.getOutgoingRequest(requestId).getResult();
     } catch (FeignException e) {
       if (e.status() == 404) {
+        syncCoordinator.removePendingWork(requestId);
         return new AuthenticationStatus(null, false, false, false, false);
       } else {
         return null;
       }
     }
 
+    return toAuthenticationStatus(requestId, localRequest);
+  }
+
+  /**
+   * Retrieve the Status of an AuthenticationRequest without using exceptions for unknown requests.
+   * Prefer this over {@link #getAuthenticationStatus(String)} when polling many request ids that
+   * may not exist (anymore).
+   *
+   * @param requestId ID of the request returned previously by sendAuthenticationRequest()
+   * @return {@link AuthenticationStatus} of the request or an empty Optional if the request does
+   *     not exist.
+   * @throws EnmeshedException if the connector responds with an unexpected status.
+   */
+  public Optional<AuthenticationStatus> findAuthenticationStatus(String requestId) {
+
+    return findAuthenticationStatus(requestId, Duration.ZERO);
+  }
+
+  /**
+   * Retrieve the Status of an AuthenticationRequest without using exceptions for unknown requests
+   * and without syncing inline if the connector was synced recently.
+   *
+   * @param requestId ID of the request returned previously by sendAuthenticationRequest()
+   * @param maxStaleness Accepted age of the last sync. {@link Duration#ZERO} always syncs.
+   * @return {@link AuthenticationStatus} of the request or an empty Optional if the request does
+   *     not exist.
+   * @throws EnmeshedException if the connector responds with an unexpected status.
+   */
+  public Optional<AuthenticationStatus> findAuthenticationStatus(
+      String requestId, Duration maxStaleness) {
+
+    syncCoordinator.sync(maxStaleness);
+
+    try (feign.Response response = enmeshedClient.findOutgoingRequest(requestId)) {
+      if (response.status() == HTTP_NOT_FOUND) {
+        syncCoordinator.removePendingWork(requestId);
+        return Optional.empty();
+      } else if (response.status() != HTTP_OK || response.body() == null) {
+        throw new EnmeshedException(
+            EnmeshedHttpStatus.builder()
+                .errorCode(response.status())
+                .message("Unexpected status when retrieving request " + requestId)
+                .build());
+      }
+
+      try (InputStream body = response.body().asInputStream()) {
+        ResultWrapper<LocalRequest> localRequest =
+            EnmeshedObjectMapper.get().readValue(body, LOCAL_REQUEST_RESULT_TYPE);
+
+        return Optional.of(toAuthenticationStatus(requestId, localRequest.getResult()));
+      }
+    } catch (IOException e) {
+      throw new EnmeshedException("Failed to read request " + requestId + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieve the Status of many AuthenticationRequests with one sync. The requests are listed in
+   * chunks of ids, so a few connector calls serve thousands of request ids.
+   *
+   * @param requestIds IDs of requests returned previously by sendAuthenticationRequest()
+   * @return {@link AuthenticationStatus} by request ID. Unknown requests are reported with
+   *     requestExists false, requests of chunks that could not be listed are not contained.
+   */
+  public Map<String, AuthenticationStatus> getAuthenticationStatuses(
+      Collection<String> requestIds) {
+
+    return getAuthenticationStatuses(requestIds, Duration.ZERO);
+  }
+
+  /**
+   * Retrieve the Status of many AuthenticationRequests without syncing inline if the connector was
+   * synced recently.
+   *
+   * @param requestIds IDs of requests returned previously by sendAuthenticationRequest()
+   * @param maxStaleness Accepted age of the last sync. {@link Duration#ZERO} always syncs.
+   * @return {@link AuthenticationStatus} by request ID. Unknown requests are reported with
+   *     requestExists false, requests of chunks that could not be listed are not contained.
+   */
+  public Map<String, AuthenticationStatus> getAuthenticationStatuses(
+      Collection<String> requestIds, Duration maxStaleness) {
+
+    if (requestIds.isEmpty()) {
+      return Map.of();
+    }
+
+    syncCoordinator.sync(maxStaleness);
+
+    List<String> distinctRequestIds = List.copyOf(new LinkedHashSet<>(requestIds));
+    List<List<String>> chunks = new ArrayList<>();
+    for (int start = 0; start < distinctRequestIds.size(); start += STATUS_QUERY_CHUNK_SIZE) {
+      chunks.add(
+          distinctRequestIds.subList(
+              start, Math.min(start + STATUS_QUERY_CHUNK_SIZE, distinctRequestIds.size())));
+    }
+
+    // A single chunk, the common case of pollers, is listed on the calling thread
+    List<BulkOperation.ItemResult<List<String>, List<LocalRequest>>> chunkResults =
+        BulkOperation.start(
+                chunks,
+                chunk -> enmeshedClient.searchOutgoingRequests(chunk).getResult(),
+                STATUS_QUERY_CONCURRENCY,
+                chunks.size() == 1 ? Runnable::run : statusQueryExecutor(),
+                null)
+            .getResults()
+            .join();
+
+    Map<String, AuthenticationStatus> authenticationStatuses = new HashMap<>();
+
+    for (BulkOperation.ItemResult<List<String>, List<LocalRequest>> chunkResult : chunkResults) {
+      if (!chunkResult.isSuccessful()) {
+        log.warn(
+            "Failed to list {} outgoing requests: {}",
+            chunkResult.input().size(),
+            chunkResult.failure().getMessage());
+        continue;
+      }
+
+      Map<String, LocalRequest> localRequestsById = new HashMap<>();
+      for (LocalRequest localRequest : chunkResult.result()) {
+        localRequestsById.put(localRequest.getId(), localRequest);
+      }
+
+      for (String requestId : chunkResult.input()) {
+        LocalRequest localRequest = localRequestsById.get(requestId);
+        if (localRequest == null) {
+          syncCoordinator.removePendingWork(requestId);
+          authenticationStatuses.put(
+              requestId, new AuthenticationStatus(null, false, false, false, false));
+        } else {
+          authenticationStatuses.put(requestId, toAuthenticationStatus(requestId, localRequest));
+        }
+      }
+    }
+
+    return authenticationStatuses;
+  }
+
+  /**
+   * Waits until the receiver answered an authentication request or it expired.
+   *
+   * @param requestId ID of the request returned previously by sendAuthenticationRequest()
+   * @param timeout Maximum time to wait
+   * @return Final {@link AuthenticationStatus} of the request
+   * @throws TimeoutException if the request is still open after the timeout
+   * @see #awaitAuthenticationStatusAsync(String, Duration)
+   */
+  public AuthenticationStatus awaitAuthenticationStatus(String requestId, Duration timeout)
+      throws TimeoutException, InterruptedException {
+
+    try {
+      return awaitAuthenticationStatusAsync(requestId, timeout).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TimeoutException timeoutException) {
+        throw timeoutException;
+      } else if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new EnmeshedException(
+          "Failed to await request " + requestId + ": " + e.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Waits asynchronously until the receiver answered an authentication request or it expired. All
+   * awaited requests of this service are polled together, with one sync and one batch lookup per
+   * round. Rounds start every {@value #AWAIT_MIN_INTERVAL_MILLIS} ms and back off to every {@value
+   * #AWAIT_MAX_INTERVAL_SECONDS} s while requests stay open.
+   *
+   * @param requestId ID of the request returned previously by sendAuthenticationRequest()
+   * @param timeout Maximum time to wait
+   * @return Future completed with the final {@link AuthenticationStatus}, or exceptionally with a
+   *     {@link TimeoutException} if the request is still open after the timeout.
+   */
+  public CompletableFuture<AuthenticationStatus> awaitAuthenticationStatusAsync(
+      String requestId, Duration timeout) {
+
+    checkNotClosed();
+
+    AuthenticationStatusPoller poller = authenticationStatusPoller;
+
+    if (poller == null) {
+      synchronized (this) {
+        poller = authenticationStatusPoller;
+        if (poller == null) {
+          checkNotClosed();
+          poller =
+              new AuthenticationStatusPoller(
+                  this,
+                  Duration.ofMillis(AWAIT_MIN_INTERVAL_MILLIS),
+                  Duration.ofSeconds(AWAIT_MAX_INTERVAL_SECONDS));
+          authenticationStatusPoller = poller;
+        }
+      }
+    }
+
+    return poller.await(requestId, timeout);
+  }
+
+  /**
+   * Stops the threads of the service: the poller of awaited requests, whose waiting futures are
+   * cancelled, and the pool of status queries. Services sharing the sync coordinator are not
+   * affected.
+   */
+  @Override
+  public void close() {
+
+    AuthenticationStatusPoller poller;
+    ExecutorService executor;
+
+    synchronized (this) {
+      closed = true;
+      poller = authenticationStatusPoller;
+      executor = statusQueryExecutor;
+    }
+
+    if (poller != null) {
+      poller.close();
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void checkNotClosed() {
+
+    if (closed) {
+      throw new IllegalStateException("The service is closed");
+    }
+  }
+
+  private ExecutorService statusQueryExecutor() {
+
+    ExecutorService executor = statusQueryExecutor;
+
+    if (executor == null) {
+      synchronized (this) {
+        executor = statusQueryExecutor;
+        if (executor == null) {
+          checkNotClosed();
+          executor =
+              Executors.newCachedThreadPool(
+                  runnable -> {
+                    Thread thread = new Thread(runnable, "enmeshed-status-query");
+                    thread.setDaemon(true);
+                    return thread;
+                  });
+          statusQueryExecutor = executor;
+        }
+      }
+    }
+
+    return executor;
+  }
+
+  /** Status of a request that expired without answer, detected locally from its expiry. */
+  AuthenticationStatus expiredAuthenticationStatus(String requestId) {
+
+    syncCoordinator.removePendingWork(requestId);
+    return new AuthenticationStatus(null, true, false, false, true);
+  }
+
+  AuthenticationStatus toAuthenticationStatus(String requestId, LocalRequest localRequest) {
+
     if (localRequest.getStatus() == LocalRequest.LocalRequestStatus.EXPIRED) {
+      syncCoordinator.removePendingWork(requestId);
       return new AuthenticationStatus(null, true, false, false, true);
     } else if (localRequest.getResponse() != null) {
+      syncCoordinator.removePendingWork(requestId);
       return new AuthenticationStatus(
           localRequest.getResponse().getCreatedAt(),
           true,
@@ -159,10 +780,56 @@ public class EnmeshedMessagingService {
     private final String Reason;
   }
 
+  /**
+   * Outcome of a broadcast chunk, or of a whole broadcast.
+   *
+   * @param messages Sent messages. A chunk is sent as more than one message if the connector
+   *     rejected some of its recipients.
+   * @param failures Recipients the content could not be sent to, with the cause
+   */
+  public record BroadcastResult(List<Message> messages, Map<String, Exception> failures) {
+
+    /**
+     * Combines the results of all chunks of a broadcast. Recipients of cancelled chunks are
+     * reported as failed with a {@link CancellationException}.
+     */
+    public static BroadcastResult combine(
+        List<BulkOperation.ItemResult<List<String>, BroadcastResult>> chunkResults) {
+
+      List<Message> messages = new ArrayList<>();
+      Map<String, Exception> failures = new LinkedHashMap<>();
+
+      for (BulkOperation.ItemResult<List<String>, BroadcastResult> chunkResult : chunkResults) {
+        if (chunkResult.result() != null) {
+          messages.addAll(chunkResult.result().messages());
+          failures.putAll(chunkResult.result().failures());
+        } else {
+          Exception failure =
+              chunkResult.cancelled()
+                  ? new CancellationException("The broadcast was cancelled")
+                  : chunkResult.failure();
+          chunkResult.input().forEach(recipient -> failures.put(recipient, failure));
+        }
+      }
+
+      return new BroadcastResult(messages, failures);
+    }
+
+    public boolean isSuccessful() {
+      return failures.isEmpty();
+    }
+  }
+
   public record AuthenticationStatus(
       ZonedDateTime respondedAt,
       boolean requestExists,
       boolean accepted,
       boolean rejected,
-      boolean expired) {}
+      boolean expired) {
+
+    /** Whether the status will not change anymore. */
+    public boolean isFinal() {
+      return !requestExists || accepted || rejected || expired;
+    }
+  }
 }
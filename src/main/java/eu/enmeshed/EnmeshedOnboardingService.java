@@ -3,7 +3,10 @@ package eu.enmeshed;
 import static java.util.List.of;
 import static java.util.Objects.isNull;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.util.RawValue;
 import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
 import eu.enmeshed.model.AttributeWrapper;
 import eu.enmeshed.model.ContentWrapper;
 import eu.enmeshed.model.IdentityInfo;
@@ -14,10 +17,9 @@ import eu.enmeshed.model.attributes.values.identity.DisplayName;
 import eu.enmeshed.model.qr.QrCode;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateContent;
-import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateCreation;
+import eu.enmeshed.model.relationshipTemplates.SerializedRelationshipTemplateCreation;
 import eu.enmeshed.model.relationships.Relationship;
 import eu.enmeshed.model.relationships.RelationshipChange;
-import eu.enmeshed.model.relationships.RelationshipChangeRequestContent;
 import eu.enmeshed.model.relationships.RelationshipCreationChangeRequestContent;
 import eu.enmeshed.model.requestItems.CreateAttributeRequestItem;
 import eu.enmeshed.model.requestItems.ReadAttributeRequestItem;
@@ -27,29 +29,62 @@ import eu.enmeshed.model.requestItems.ShareAttributeRequestItem;
 import eu.enmeshed.model.responseItems.ReadAttributeAcceptResponseItem;
 import eu.enmeshed.model.responseItems.ResponseItem;
 import eu.enmeshed.model.responseItems.ResponseItemGroup;
+import eu.enmeshed.qr.QrCodeRenderer;
+import eu.enmeshed.sync.SyncCoordinator;
 import feign.Response;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Predicate;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class EnmeshedOnboardingService {
 
-  private static final Long QR_CODE_VALIDITY_MINUTES_DEFAULT = 60L;
+  static final Long QR_CODE_VALIDITY_MINUTES_DEFAULT = 60L;
   private static final Integer QR_CODE_NUMBER_OF_ALLOCATIONS = 1;
+  private static final int SERIALIZED_TEMPLATE_CONTENTS_MAX = 64;
+
+  /**
+   * Runs the blocking connector calls of the overloads without an executor parameter. Idle threads
+   * of the cached pool end after a minute, so no shutdown is required.
+   */
+  private static final Executor CONNECTOR_CALL_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "enmeshed-onboarding");
+            thread.setDaemon(true);
+            return thread;
+          });
 
   private final EnmeshedClient enmeshedClient;
 
+  private final SyncCoordinator syncCoordinator;
+
+  private final Map<String, TemplateAllocations> allocationsByTemplateId =
+      new ConcurrentHashMap<>();
+
+  private final Map<TemplateContentKey, RawValue> serializedTemplateContents =
+      new ConcurrentHashMap<>();
+
   @Getter private final IdentityInfo identityInfo;
 
   @Getter private final AttributeWrapper connectorDisplayNameAttribute;
@@ -60,44 +95,149 @@ public class EnmeshedOnboardingService {
 
   private final List<Class<? extends RequestItem>> createAttributes;
 
+  /**
+   * If set, the QR codes of {@link #generateQrCodeForRegistrationAsJpg} are rendered locally from
+   * the template reference instead of being fetched from the connector.
+   */
+  @Setter private volatile QrCodeRenderer qrCodeRenderer;
+
   public EnmeshedOnboardingService(
       EnmeshedClient enmeshedClient,
       String connectorDisplayName,
       List<Class<? extends AttributeValue>> requiredAttributes,
       List<Class<? extends AttributeValue>> optionalAttributes) {
 
-    this.enmeshedClient = enmeshedClient;
-    this.requiredAttributes = requiredAttributes;
-    this.optionalAttributes = optionalAttributes;
-    this.createAttributes = of();
+    this(enmeshedClient, connectorDisplayName, requiredAttributes, optionalAttributes, of());
+  }
 
-    // Get IdentifyInfo
-    identityInfo = enmeshedClient.getIdentityInfo().getResult();
+  public EnmeshedOnboardingService(
+      EnmeshedClient enmeshedClient,
+      String connectorDisplayName,
+      List<Class<? extends AttributeValue>> requiredAttributes,
+      List<Class<? extends AttributeValue>> optionalAttributes,
+      List<Class<? extends RequestItem>> createAttributes) {
 
-    // Setup Connector's Display Name
-    connectorDisplayNameAttribute = setupConnectorDisplayName(connectorDisplayName);
+    this(
+        enmeshedClient,
+        connectorDisplayName,
+        requiredAttributes,
+        optionalAttributes,
+        createAttributes,
+        new SyncCoordinator(enmeshedClient));
   }
 
+  /**
+   * @param syncCoordinator Coordinator for the Account/Sync calls, may be shared with other
+   *     services using the same connector.
+   */
   public EnmeshedOnboardingService(
       EnmeshedClient enmeshedClient,
       String connectorDisplayName,
       List<Class<? extends AttributeValue>> requiredAttributes,
       List<Class<? extends AttributeValue>> optionalAttributes,
-      List<Class<? extends RequestItem>> createAttributes) {
+      List<Class<? extends RequestItem>> createAttributes,
+      SyncCoordinator syncCoordinator) {
+
+    this(
+        enmeshedClient,
+        requiredAttributes,
+        optionalAttributes,
+        createAttributes,
+        syncCoordinator,
+        await(resolveConnectorIdentity(enmeshedClient, connectorDisplayName, Runnable::run)));
+  }
+
+  private EnmeshedOnboardingService(
+      EnmeshedClient enmeshedClient,
+      List<Class<? extends AttributeValue>> requiredAttributes,
+      List<Class<? extends AttributeValue>> optionalAttributes,
+      List<Class<? extends RequestItem>> createAttributes,
+      SyncCoordinator syncCoordinator,
+      ConnectorIdentity connectorIdentity) {
 
     this.enmeshedClient = enmeshedClient;
+    this.syncCoordinator = syncCoordinator;
     this.requiredAttributes = requiredAttributes;
     this.optionalAttributes = optionalAttributes;
     this.createAttributes = createAttributes;
+    this.identityInfo = connectorIdentity.identityInfo();
+    this.connectorDisplayNameAttribute = connectorIdentity.connectorDisplayNameAttribute();
+  }
 
-    // Get IdentifyInfo
-    identityInfo = enmeshedClient.getIdentityInfo().getResult();
+  /**
+   * Creates the service on the given executor. The IdentityInfo and the display name attribute are
+   * cached per connector for the whole process, so only the first service of a connector waits for
+   * the connector round trips. Concurrent calls for the same connector share one lookup, so the
+   * display name attribute is created at most once.
+   */
+  public static CompletableFuture<EnmeshedOnboardingService> createAsync(
+      EnmeshedClient enmeshedClient,
+      String connectorDisplayName,
+      List<Class<? extends AttributeValue>> requiredAttributes,
+      List<Class<? extends AttributeValue>> optionalAttributes,
+      List<Class<? extends RequestItem>> createAttributes,
+      Executor executor) {
+
+    return resolveConnectorIdentity(enmeshedClient, connectorDisplayName, executor)
+        .thenApply(
+            connectorIdentity ->
+                new EnmeshedOnboardingService(
+                    enmeshedClient,
+                    requiredAttributes,
+                    optionalAttributes,
+                    createAttributes,
+                    new SyncCoordinator(enmeshedClient),
+                    connectorIdentity));
+  }
 
-    // Setup Connector's Display Name
-    connectorDisplayNameAttribute = setupConnectorDisplayName(connectorDisplayName);
+  public static CompletableFuture<EnmeshedOnboardingService> createAsync(
+      EnmeshedClient enmeshedClient,
+      String connectorDisplayName,
+      List<Class<? extends AttributeValue>> requiredAttributes,
+      List<Class<? extends AttributeValue>> optionalAttributes) {
+
+    return createAsync(
+        enmeshedClient,
+        connectorDisplayName,
+        requiredAttributes,
+        optionalAttributes,
+        of(),
+        CONNECTOR_CALL_EXECUTOR);
+  }
+
+  private static CompletableFuture<ConnectorIdentity> resolveConnectorIdentity(
+      EnmeshedClient enmeshedClient, String connectorDisplayName, Executor executor) {
+
+    return ConnectorIdentityCache.getIdentityInfo(enmeshedClient, executor)
+        .thenCompose(
+            identityInfo ->
+                ConnectorIdentityCache.getDisplayNameAttribute(
+                        enmeshedClient,
+                        connectorDisplayName,
+                        () ->
+                            setupConnectorDisplayName(
+                                enmeshedClient, identityInfo, connectorDisplayName),
+                        executor)
+                    .thenApply(
+                        displayNameAttribute ->
+                            new ConnectorIdentity(identityInfo, displayNameAttribute)));
+  }
+
+  /** Waits for a lookup, rethrowing its failure like a synchronous call would. */
+  private static <T> T await(CompletableFuture<T> future) {
+
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
   }
 
-  private AttributeWrapper setupConnectorDisplayName(String connectorDisplayName) {
+  private static AttributeWrapper setupConnectorDisplayName(
+      EnmeshedClient enmeshedClient, IdentityInfo identityInfo, String connectorDisplayName) {
 
     ResultWrapper<List<AttributeWrapper>> foundAttributes =
         enmeshedClient.searchAttributes(
@@ -153,12 +293,73 @@ public class EnmeshedOnboardingService {
       String displayTextCreateAttributes,
       Long qrCodeValidityMinutes) {
 
+    return generateQrCodeForRegistrationAsJpg(
+        displayTextRequestedAttributes,
+        displayTextSharedAttributes,
+        displayTextCreateAttributes,
+        qrCodeValidityMinutes,
+        null);
+  }
+
+  /**
+   * Same as {@link #generateQrCodeForRegistrationAsJpg(String, String, String, Long)}, but the
+   * RelationshipTemplate can be used by several clients, e.g. for a QR code printed on a poster.
+   * Use {@link #checkRegistrations(String, Predicate)} to process all registrations of the
+   * template.
+   *
+   * @param maxNumberOfAllocations Number of relationships that can be created from the template,
+   *     defaults to 1.
+   */
+  public RegistrationData generateQrCodeForRegistrationAsJpg(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes,
+      Long qrCodeValidityMinutes,
+      Integer maxNumberOfAllocations) {
+
+    return generateQrCodeForRegistrationAsJpg(
+        displayTextRequestedAttributes,
+        displayTextSharedAttributes,
+        displayTextCreateAttributes,
+        qrCodeValidityMinutes,
+        maxNumberOfAllocations,
+        true);
+  }
+
+  /**
+   * @param trackRegistration whether the template is reported as pending work to the
+   *     SyncCoordinator. Pooled templates are reported when they are handed out.
+   */
+  RegistrationData generateQrCodeForRegistrationAsJpg(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes,
+      Long qrCodeValidityMinutes,
+      Integer maxNumberOfAllocations,
+      boolean trackRegistration) {
+
     RelationshipTemplate relationshipTemplate =
         createOnboardingRelationshipTemplate(
             displayTextRequestedAttributes,
             displayTextSharedAttributes,
             displayTextCreateAttributes,
-            qrCodeValidityMinutes);
+            qrCodeValidityMinutes,
+            maxNumberOfAllocations,
+            trackRegistration);
+
+    QrCodeRenderer renderer = qrCodeRenderer;
+    if (renderer != null && relationshipTemplate.getTruncatedReference() != null) {
+      ByteArrayOutputStream qrCode = new ByteArrayOutputStream();
+      try {
+        renderer.writePng(relationshipTemplate.getTruncatedReference(), qrCode);
+        return new RegistrationData(
+            qrCode.toByteArray(),
+            relationshipTemplate.getId(),
+            relationshipTemplate.getExpiresAt());
+      } catch (IOException e) {
+        log.warn("Failed to render QR Code locally, fetching it: {}", e.getMessage());
+      }
+    }
 
     Response qrCodeResponse =
         enmeshedClient.getQrCodeForRelationshipTemplate(relationshipTemplate.getId());
@@ -185,10 +386,59 @@ public class EnmeshedOnboardingService {
       String displayTextCreateAttributes,
       Long qrCodeValidityMinutes) {
 
+    return generateQrCodeForRegistration(
+        displayTextRequestedAttributes,
+        displayTextSharedAttributes,
+        displayTextCreateAttributes,
+        qrCodeValidityMinutes,
+        null);
+  }
+
+  /**
+   * Same as {@link #generateQrCodeForRegistration(String, String, String, Long)}, but the
+   * RelationshipTemplate can be used by several clients, e.g. for a QR code printed on a poster.
+   * Use {@link #checkRegistrations(String, Predicate)} to process all registrations of the
+   * template.
+   *
+   * @param maxNumberOfAllocations Number of relationships that can be created from the template,
+   *     defaults to 1.
+   */
+  public QrCode generateQrCodeForRegistration(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes,
+      Long qrCodeValidityMinutes,
+      Integer maxNumberOfAllocations) {
+
+    return generateQrCodeForRegistration(
+        displayTextRequestedAttributes,
+        displayTextSharedAttributes,
+        displayTextCreateAttributes,
+        qrCodeValidityMinutes,
+        maxNumberOfAllocations,
+        true);
+  }
+
+  /**
+   * @param trackRegistration whether the template is reported as pending work to the
+   *     SyncCoordinator. Pooled templates are reported when they are handed out.
+   */
+  QrCode generateQrCodeForRegistration(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes,
+      Long qrCodeValidityMinutes,
+      Integer maxNumberOfAllocations,
+      boolean trackRegistration) {
+
     RelationshipTemplate relationshipTemplate =
         createOnboardingRelationshipTemplate(
-            displayTextRequestedAttributes, displayTextSharedAttributes,
-            displayTextCreateAttributes, qrCodeValidityMinutes);
+            displayTextRequestedAttributes,
+            displayTextSharedAttributes,
+            displayTextCreateAttributes,
+            qrCodeValidityMinutes,
+            maxNumberOfAllocations,
+            trackRegistration);
 
     return enmeshedClient.createRelationshipQrCode(relationshipTemplate.getId()).getResult();
   }
@@ -206,7 +456,26 @@ public class EnmeshedOnboardingService {
       String relationshipTemplateId,
       Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
 
-    enmeshedClient.sync();
+    return checkRegistrationState(relationshipTemplateId, acceptanceDecider, Duration.ZERO);
+  }
+
+  /**
+   * Checks the current state of a registration without syncing inline if the connector was synced
+   * recently, e.g. by a {@link eu.enmeshed.sync.SyncScheduler}. If registration is requested by
+   * client it will be accepted based on the passed acceptanceDecider.
+   *
+   * @param relationshipTemplateId ID of the RelationshipTemplate
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @param maxStaleness Accepted age of the last sync. {@link Duration#ZERO} always syncs.
+   * @return Registration Details and attributes shared by client during connecting.
+   */
+  public RegistrationResult checkRegistrationState(
+      String relationshipTemplateId,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider,
+      Duration maxStaleness) {
+
+    syncCoordinator.sync(maxStaleness);
 
     List<Relationship> relationships =
         enmeshedClient.searchRelationships(relationshipTemplateId, null, null).getResult();
@@ -215,71 +484,286 @@ public class EnmeshedOnboardingService {
       return null;
     }
 
-    Relationship relationship = relationships.get(0);
-    RelationshipChange relationshipChange = relationship.getChanges().get(0);
+    return advanceRegistration(relationshipTemplateId, relationships.get(0), acceptanceDecider);
+  }
 
-    RelationshipChangeRequestContent relationshipChangeRequestContent =
-        relationshipChange.getRequest().getContent();
+  /**
+   * Checks the current state of a registration. If registration is requested by client it will be
+   * accepted.
+   *
+   * @param relationshipTemplateId ID of the RelationshipTemplate
+   * @return Registration Details and attributes shared by client during connecting.
+   */
+  public RegistrationResult checkRegistrationState(String relationshipTemplateId) {
 
-    RelationshipCreationChangeRequestContent relationshipCreationChangeRequestContent =
-        (RelationshipCreationChangeRequestContent) relationshipChangeRequestContent;
+    return checkRegistrationState(relationshipTemplateId, registrationResult -> true);
+  }
 
-    Map<Class<? extends AttributeValue>, AttributeValue> attributes =
-        getSharedSimpleAttributesFromResponseItems(
-            relationshipCreationChangeRequestContent.getResponse().getItems());
+  /**
+   * Checks all registrations of a RelationshipTemplate with several allocations. Every relationship
+   * created from the template is processed once: pending registrations are accepted or rejected
+   * based on the passed acceptanceDecider, registrations handled by an earlier call are skipped.
+   *
+   * @param relationshipTemplateId ID of the RelationshipTemplate
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @return Registrations handled since the last call, empty if there are none.
+   */
+  public List<RegistrationResult> checkRegistrations(
+      String relationshipTemplateId,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
+
+    return checkRegistrations(relationshipTemplateId, acceptanceDecider, Duration.ZERO);
+  }
 
-    if (relationshipChange.getStatus() == RelationshipChange.Status.PENDING) {
-      boolean decision = acceptanceDecider.test(attributes);
-
-      if (decision) {
-        enmeshedClient.acceptRelationshipChange(
-            relationship.getId(),
-            relationshipChange.getId(),
-            ContentWrapper.containing(Collections.emptyMap()));
-      } else {
-        enmeshedClient.rejectRelationshipChange(
-            relationship.getId(),
-            relationshipChange.getId(),
-            ContentWrapper.containing(Collections.emptyMap()));
+  /**
+   * Checks all registrations of a RelationshipTemplate with several allocations without syncing
+   * inline if the connector was synced recently.
+   *
+   * @param relationshipTemplateId ID of the RelationshipTemplate
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @param maxStaleness Accepted age of the last sync. {@link Duration#ZERO} always syncs.
+   * @return Registrations handled since the last call, empty if there are none.
+   */
+  public List<RegistrationResult> checkRegistrations(
+      String relationshipTemplateId,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider,
+      Duration maxStaleness) {
+
+    syncCoordinator.sync(maxStaleness);
+
+    List<Relationship> relationships =
+        enmeshedClient.searchRelationships(relationshipTemplateId, null, null).getResult();
+
+    if (relationships.isEmpty()) {
+      return List.of();
+    }
+
+    // Templates created by another instance are not known yet, remember their handled
+    // relationships from now on
+    TemplateAllocations allocations =
+        allocationsByTemplateId.computeIfAbsent(
+            relationshipTemplateId,
+            templateId ->
+                new TemplateAllocations(
+                    Optional.ofNullable(relationships.get(0).getTemplate())
+                        .map(RelationshipTemplate::getMaxNumberOfAllocations)
+                        .orElse(Integer.MAX_VALUE),
+                    Optional.ofNullable(relationships.get(0).getTemplate())
+                        .map(RelationshipTemplate::getExpiresAt)
+                        .orElse(
+                            ZonedDateTime.now().plusMinutes(QR_CODE_VALIDITY_MINUTES_DEFAULT))));
+
+    List<RegistrationResult> registrationResults = new ArrayList<>();
+
+    for (Relationship relationship : relationships) {
+      if (allocations.handledRelationshipIds().contains(relationship.getId())) {
+        continue;
       }
 
-      return checkRegistrationState(relationshipTemplateId, registrationResult -> decision);
-    } else if (relationshipChange.getStatus() == RelationshipChange.Status.ACCEPTED) {
+      RegistrationResult registrationResult =
+          advanceRegistration(relationshipTemplateId, relationship, acceptanceDecider);
 
-      // Request was accepted by User and us - Get the send Attributes and return them
-      return new RegistrationResult(
-          attributes,
-          relationships.get(0).getPeerIdentity().getAddress(),
-          relationshipChange.getId(),
-          relationship.getId(),
-          true);
+      if (registrationResult != null) {
+        registrationResults.add(registrationResult);
+      }
+    }
 
-    } else if (relationshipChange.getStatus() == RelationshipChange.Status.REJECTED) {
+    return registrationResults;
+  }
 
-      // Request was accepted by User and us - Get the send Attributes and return them
-      return new RegistrationResult(
-          attributes,
-          relationships.get(0).getPeerIdentity().getAddress(),
-          relationshipChange.getId(),
-          relationship.getId(),
-          false);
-    } else {
+  /**
+   * Checks the current state of many registrations with one sync and one relationship search.
+   * Pending registrations are accepted or rejected based on the passed acceptanceDecider, the
+   * decisions run in parallel on a pool of daemon threads owned by this class.
+   *
+   * @param relationshipTemplateIds IDs of the RelationshipTemplates
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @return Registration details by RelationshipTemplate ID. Templates without registration, and
+   *     registrations that could not be accepted or rejected, are not contained.
+   */
+  public Map<String, RegistrationResult> checkRegistrationStates(
+      Collection<String> relationshipTemplateIds,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
 
-      // Unknown Relationship State - This shouldn't happen.
-      return null;
+    return checkRegistrationStates(
+        relationshipTemplateIds, acceptanceDecider, CONNECTOR_CALL_EXECUTOR);
+  }
+
+  /**
+   * Checks the current state of many registrations with one sync and one relationship search.
+   * Pending registrations are accepted or rejected based on the passed acceptanceDecider.
+   *
+   * @param relationshipTemplateIds IDs of the RelationshipTemplates
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @param executor Executor running the decisions and the accept/reject calls
+   * @return Registration details by RelationshipTemplate ID. Templates without registration, and
+   *     registrations that could not be accepted or rejected, are not contained.
+   */
+  public Map<String, RegistrationResult> checkRegistrationStates(
+      Collection<String> relationshipTemplateIds,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider,
+      Executor executor) {
+
+    Map<String, Predicate<Map<Class<? extends AttributeValue>, AttributeValue>>>
+        acceptanceDeciders = new HashMap<>();
+    relationshipTemplateIds.forEach(
+        templateId -> acceptanceDeciders.put(templateId, acceptanceDecider));
+
+    return checkRegistrationStates(acceptanceDeciders, executor);
+  }
+
+  /**
+   * Checks the current state of many registrations with one sync and one relationship search, using
+   * an individual acceptanceDecider per RelationshipTemplate. All relationships of a template are
+   * advanced one after another, the result of the first one that reached a final state is returned.
+   * Use {@link #checkRegistrations(String, Predicate)} to get the results of all registrations of a
+   * template with several allocations.
+   */
+  Map<String, RegistrationResult> checkRegistrationStates(
+      Map<String, Predicate<Map<Class<? extends AttributeValue>, AttributeValue>>>
+          acceptanceDeciders,
+      Executor executor) {
+
+    if (acceptanceDeciders.isEmpty()) {
+      return Map.of();
     }
+
+    syncCoordinator.sync();
+
+    // A single template can be filtered by the connector, otherwise one unfiltered search is
+    // partitioned locally
+    String templateIdFilter =
+        acceptanceDeciders.size() == 1 ? acceptanceDeciders.keySet().iterator().next() : null;
+
+    Map<String, List<Relationship>> relationshipsByTemplateId = new HashMap<>();
+    for (Relationship relationship :
+        enmeshedClient.searchRelationships(templateIdFilter, null, null).getResult()) {
+      if (relationship.getTemplate() != null
+          && acceptanceDeciders.containsKey(relationship.getTemplate().getId())) {
+        relationshipsByTemplateId
+            .computeIfAbsent(relationship.getTemplate().getId(), templateId -> new ArrayList<>())
+            .add(relationship);
+      }
+    }
+
+    Map<String, CompletableFuture<RegistrationResult>> pendingResults = new HashMap<>();
+    relationshipsByTemplateId.forEach(
+        (templateId, relationships) ->
+            pendingResults.put(
+                templateId,
+                CompletableFuture.supplyAsync(
+                    () ->
+                        advanceRegistrations(
+                            templateId, relationships, acceptanceDeciders.get(templateId)),
+                    executor)));
+
+    Map<String, RegistrationResult> registrationResults = new HashMap<>();
+    pendingResults.forEach(
+        (templateId, pendingResult) -> {
+          try {
+            RegistrationResult registrationResult = pendingResult.join();
+            if (registrationResult != null) {
+              registrationResults.put(templateId, registrationResult);
+            }
+          } catch (CompletionException e) {
+            log.warn(
+                "Failed to check registration state of RelationshipTemplate {}: {}",
+                templateId,
+                e.getCause().getMessage());
+          }
+        });
+
+    return registrationResults;
   }
 
   /**
-   * Checks the current state of a registration. If registration is requested by client it will be
-   * accepted.
+   * Drives all registrations of a template to a final state, so no pending registration is left
+   * behind, and returns the first result.
    *
-   * @param relationshipTemplateId ID of the RelationshipTemplate
-   * @return Registration Details and attributes shared by client during connecting.
+   * @return Result of the first accepted or rejected registration, null if there is none
    */
-  public RegistrationResult checkRegistrationState(String relationshipTemplateId) {
+  private RegistrationResult advanceRegistrations(
+      String relationshipTemplateId,
+      List<Relationship> relationships,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
 
-    return checkRegistrationState(relationshipTemplateId, registrationResult -> true);
+    RegistrationResult firstResult = null;
+
+    for (Relationship relationship : relationships) {
+      RegistrationResult registrationResult =
+          advanceRegistration(relationshipTemplateId, relationship, acceptanceDecider);
+
+      if (firstResult == null) {
+        firstResult = registrationResult;
+      }
+    }
+
+    return firstResult;
+  }
+
+  /**
+   * Drives a registration from its current state to a final state and returns its result. A pending
+   * registration is accepted or rejected, the next state is read from the Relationship returned by
+   * that call, so no further sync and search is required.
+   *
+   * @return Result of an accepted or rejected registration, null for an unknown state
+   */
+  RegistrationResult advanceRegistration(
+      String relationshipTemplateId,
+      Relationship relationship,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
+
+    RelationshipChange relationshipChange = relationship.getChanges().get(0);
+
+    RelationshipCreationChangeRequestContent relationshipCreationChangeRequestContent =
+        (RelationshipCreationChangeRequestContent) relationshipChange.getRequest().getContent();
+
+    Map<Class<? extends AttributeValue>, AttributeValue> attributes =
+        getSharedSimpleAttributesFromResponseItems(
+            relationshipCreationChangeRequestContent.getResponse().getItems());
+
+    RegistrationState state = RegistrationState.of(relationshipChange);
+
+    // The only transition: a pending change is decided once, which always yields a final state
+    if (state == RegistrationState.PENDING) {
+      state = decide(relationship, relationshipChange, acceptanceDecider.test(attributes));
+    }
+
+    if (state == RegistrationState.UNKNOWN) {
+      // Unknown Relationship State - This shouldn't happen.
+      return null;
+    }
+
+    registrationHandled(relationshipTemplateId, relationship.getId());
+
+    return new RegistrationResult(
+        attributes,
+        relationship.getPeerIdentity().getAddress(),
+        relationshipChange.getId(),
+        relationship.getId(),
+        state == RegistrationState.ACCEPTED);
+  }
+
+  /** Accepts or rejects a pending change and returns the resulting ACCEPTED or REJECTED state. */
+  private RegistrationState decide(
+      Relationship relationship, RelationshipChange relationshipChange, boolean decision) {
+
+    ResultWrapper<Relationship> decidedRelationship =
+        decision
+            ? enmeshedClient.acceptRelationshipChange(
+                relationship.getId(),
+                relationshipChange.getId(),
+                ContentWrapper.containing(Collections.emptyMap()))
+            : enmeshedClient.rejectRelationshipChange(
+                relationship.getId(),
+                relationshipChange.getId(),
+                ContentWrapper.containing(Collections.emptyMap()));
+
+    return RegistrationState.afterDecision(decidedRelationship, relationshipChange, decision);
   }
 
   private Map<Class<? extends AttributeValue>, AttributeValue>
@@ -300,22 +784,130 @@ public class EnmeshedOnboardingService {
     return attributes;
   }
 
+  /** Reports a registration as pending work, so a SyncScheduler syncs more often. */
+  void trackRegistration(String relationshipTemplateId, ZonedDateTime expiresAt) {
+
+    trackRegistration(relationshipTemplateId, expiresAt, QR_CODE_NUMBER_OF_ALLOCATIONS);
+  }
+
+  /**
+   * Reports a registration as pending work until all allocations of the RelationshipTemplate are
+   * handled or it expires.
+   */
+  void trackRegistration(
+      String relationshipTemplateId, ZonedDateTime expiresAt, int maxNumberOfAllocations) {
+
+    ZonedDateTime now = ZonedDateTime.now();
+    allocationsByTemplateId.values().removeIf(allocations -> allocations.isExpired(now));
+    allocationsByTemplateId.put(
+        relationshipTemplateId, new TemplateAllocations(maxNumberOfAllocations, expiresAt));
+
+    syncCoordinator.addPendingWork(relationshipTemplateId, expiresAt);
+  }
+
+  /**
+   * Records a relationship of the template as handled. The template stays pending work until all
+   * its allocations are handled.
+   */
+  private void registrationHandled(String relationshipTemplateId, String relationshipId) {
+
+    TemplateAllocations allocations = allocationsByTemplateId.get(relationshipTemplateId);
+
+    if (allocations == null) {
+      syncCoordinator.removePendingWork(relationshipTemplateId);
+      return;
+    }
+
+    allocations.handledRelationshipIds().add(relationshipId);
+
+    if (allocations.isExhausted()) {
+      syncCoordinator.removePendingWork(relationshipTemplateId);
+    }
+  }
+
   private RelationshipTemplate createOnboardingRelationshipTemplate(
       String displayTextRequestedAttributes,
       String displayTextSharedAttributes,
       String displayTextCreateAttributes,
-      Long qrCodeValidityMinutes) {
+      Long qrCodeValidityMinutes,
+      Integer maxNumberOfAllocations,
+      boolean trackRegistration) {
+
+    Long qrCodeValidityTime =
+        isNull(qrCodeValidityMinutes) ? QR_CODE_VALIDITY_MINUTES_DEFAULT : qrCodeValidityMinutes;
+
+    Integer numberOfAllocations =
+        isNull(maxNumberOfAllocations) ? QR_CODE_NUMBER_OF_ALLOCATIONS : maxNumberOfAllocations;
+
+    SerializedRelationshipTemplateCreation relationShipTemplateCreation =
+        SerializedRelationshipTemplateCreation.builder()
+            .expiresAt(ZonedDateTime.now().plusMinutes(qrCodeValidityTime))
+            .maxNumberOfAllocations(numberOfAllocations)
+            .content(
+                getSerializedOnboardingTemplateContent(
+                    new TemplateContentKey(
+                        displayTextRequestedAttributes,
+                        displayTextSharedAttributes,
+                        displayTextCreateAttributes)))
+            .build();
+
+    RelationshipTemplate relationshipTemplate =
+        enmeshedClient.createOwnRelationshipTemplate(relationShipTemplateCreation).getResult();
+
+    if (trackRegistration) {
+      trackRegistration(
+          relationshipTemplate.getId(),
+          relationShipTemplateCreation.getExpiresAt(),
+          numberOfAllocations);
+    }
+
+    return relationshipTemplate;
+  }
+
+  /**
+   * Returns the serialized template content for the display texts. The content only depends on the
+   * configuration of the service and the display texts, so it is built and serialized once.
+   */
+  private RawValue getSerializedOnboardingTemplateContent(TemplateContentKey templateContentKey) {
+
+    RawValue serializedContent = serializedTemplateContents.get(templateContentKey);
+
+    if (serializedContent != null) {
+      return serializedContent;
+    }
+
+    // Display texts are usually constant, but must not grow the cache without bound if they are not
+    if (serializedTemplateContents.size() >= SERIALIZED_TEMPLATE_CONTENTS_MAX) {
+      serializedTemplateContents.clear();
+    }
+
+    try {
+      serializedContent =
+          new RawValue(
+              EnmeshedObjectMapper.get()
+                  .writeValueAsString(createOnboardingTemplateContent(templateContentKey)));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize RelationshipTemplate content", e);
+    }
+
+    serializedTemplateContents.putIfAbsent(templateContentKey, serializedContent);
+
+    return serializedContent;
+  }
+
+  private RelationshipTemplateContent createOnboardingTemplateContent(
+      TemplateContentKey templateContentKey) {
 
     RequestItemGroup sharedAttributesGroup =
         RequestItemGroup.builder()
-            .title(displayTextSharedAttributes)
+            .title(templateContentKey.displayTextSharedAttributes())
             .mustBeAccepted(true)
             .items(of(ShareAttributeRequestItem.fromWrapper(connectorDisplayNameAttribute, true)))
             .build();
 
     RequestItemGroup requestedAttributesGroup =
         RequestItemGroup.builder()
-            .title(displayTextRequestedAttributes)
+            .title(templateContentKey.displayTextRequestedAttributes())
             .mustBeAccepted(true)
             .build();
 
@@ -329,7 +921,10 @@ public class EnmeshedOnboardingService {
     requestedAttributesGroup.setItems(readAttributeItems);
 
     RequestItemGroup createAttributeGroup =
-        RequestItemGroup.builder().title(displayTextCreateAttributes).mustBeAccepted(true).build();
+        RequestItemGroup.builder()
+            .title(templateContentKey.displayTextCreateAttributes())
+            .mustBeAccepted(true)
+            .build();
     List<RequestItem> createAttributeItems = new ArrayList<>();
     createAttributes.stream()
         .map(
@@ -345,24 +940,83 @@ public class EnmeshedOnboardingService {
       items.add(createAttributeGroup);
     }
 
-    RelationshipTemplateContent relationShipTemplateContent =
-        RelationshipTemplateContent.builder()
-            .onNewRelationship(RelationshipTemplateContent.ItemList.builder().items(items).build())
-            .build();
+    return RelationshipTemplateContent.builder()
+        .onNewRelationship(RelationshipTemplateContent.ItemList.builder().items(items).build())
+        .build();
+  }
 
-    Long qrCodeValidityTime =
-        isNull(qrCodeValidityMinutes) ? QR_CODE_VALIDITY_MINUTES_DEFAULT : qrCodeValidityMinutes;
+  private record TemplateContentKey(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes) {}
 
-    RelationshipTemplateCreation relationShipTemplateCreation =
-        RelationshipTemplateCreation.builder()
-            .expiresAt(ZonedDateTime.now().plusMinutes(qrCodeValidityTime))
-            .maxNumberOfAllocations(QR_CODE_NUMBER_OF_ALLOCATIONS)
-            .content(relationShipTemplateContent)
-            .build();
+  /** States of a registration, derived from the creation change of its Relationship. */
+  private enum RegistrationState {
+    PENDING,
+    ACCEPTED,
+    REJECTED,
+    UNKNOWN;
 
-    return enmeshedClient.createOwnRelationshipTemplate(relationShipTemplateCreation).getResult();
+    static RegistrationState of(RelationshipChange relationshipChange) {
+
+      if (relationshipChange == null || relationshipChange.getStatus() == null) {
+        return UNKNOWN;
+      }
+
+      return switch (relationshipChange.getStatus()) {
+        case PENDING -> PENDING;
+        case ACCEPTED -> ACCEPTED;
+        case REJECTED -> REJECTED;
+      };
+    }
+
+    /**
+     * Reads the state of the decided change from the Relationship returned by the accept/reject
+     * call. Falls back to the decision if the response does not contain the change in a final
+     * state, so a pending registration is decided at most once.
+     */
+    static RegistrationState afterDecision(
+        ResultWrapper<Relationship> decidedRelationship,
+        RelationshipChange decidedChange,
+        boolean decision) {
+
+      RegistrationState fallback = decision ? ACCEPTED : REJECTED;
+
+      if (decidedRelationship == null
+          || decidedRelationship.getResult() == null
+          || decidedRelationship.getResult().getChanges() == null) {
+        return fallback;
+      }
+
+      return decidedRelationship.getResult().getChanges().stream()
+          .filter(change -> decidedChange.getId().equals(change.getId()))
+          .findFirst()
+          .map(RegistrationState::of)
+          .filter(state -> state == ACCEPTED || state == REJECTED)
+          .orElse(fallback);
+    }
   }
 
+  /** Allocations of a tracked RelationshipTemplate and the relationships already handled. */
+  private record TemplateAllocations(
+      int maxNumberOfAllocations, ZonedDateTime expiresAt, Set<String> handledRelationshipIds) {
+
+    TemplateAllocations(int maxNumberOfAllocations, ZonedDateTime expiresAt) {
+      this(maxNumberOfAllocations, expiresAt, ConcurrentHashMap.newKeySet());
+    }
+
+    boolean isExhausted() {
+      return handledRelationshipIds.size() >= maxNumberOfAllocations;
+    }
+
+    boolean isExpired(ZonedDateTime now) {
+      return expiresAt != null && expiresAt.isBefore(now);
+    }
+  }
+
+  private record ConnectorIdentity(
+      IdentityInfo identityInfo, AttributeWrapper connectorDisplayNameAttribute) {}
+
   public record RegistrationData(
       byte[] qrCode, String relationshipTemplateId, ZonedDateTime expiresAt) {}
 
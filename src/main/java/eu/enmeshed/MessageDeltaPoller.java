@@ -0,0 +1,174 @@
+package eu.enmeshed;
+
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.messaging.Message;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the connector for new messages and reports them as the webhook events the connector would
+ * send, for environments which can not receive webhooks. Every poll only searches the messages
+ * created since a high-water mark, a {@link MessageIterator.Cursor} holding the creation time of
+ * the newest reported message and the ids of the messages reported around it, so the cost of a poll
+ * does not grow with the mailbox.
+ *
+ * <p>Received messages are reported as {@link WebhookTrigger#TRANSPORT__MESSAGE_RECEIVED}, own
+ * messages as {@link WebhookTrigger#TRANSPORT__MESSAGE_SENT}, so the listener can be the handler of
+ * the webhook endpoint. If the listener throws, the message is reported again with the next poll.
+ *
+ * <p>The poll interval follows the arrival rate of messages: it is about the expected time until
+ * the next message, between {@code minInterval} and {@code maxInterval}.
+ */
+@Slf4j
+public class MessageDeltaPoller implements AutoCloseable {
+
+  /** Weight of the latest poll in the estimated arrival rate. */
+  private static final double RATE_SMOOTHING = 0.3;
+
+  private final EnmeshedMessagingService messagingService;
+
+  private final Consumer<Webhook<?>> listener;
+
+  private final Duration overlap;
+
+  private final long minIntervalNanos;
+
+  private final long maxIntervalNanos;
+
+  private final ScheduledExecutorService scheduler;
+
+  private volatile MessageIterator.Cursor cursor;
+
+  private volatile long intervalNanos;
+
+  /** Estimated number of arriving messages per second, only used on the scheduler thread. */
+  private double arrivalRate;
+
+  private long lastPollNanos;
+
+  /**
+   * Creates and starts the poller. The first poll runs immediately.
+   *
+   * @param messagingService Service searching the messages, see {@link
+   *     EnmeshedMessagingService#iterateMessages(MessageIterator.Cursor, Duration,
+   *     java.util.concurrent.Executor)}
+   * @param cursor High-water mark to start at, e.g. the persisted {@link #getCursor()} of a
+   *     previous poller
+   * @param listener Called on the poller thread for every new message
+   * @param minInterval Interval while messages arrive frequently
+   * @param maxInterval Interval while no messages arrive
+   * @param overlap How long before the high-water mark polls search again for messages the
+   *     connector synced late
+   */
+  public MessageDeltaPoller(
+      EnmeshedMessagingService messagingService,
+      MessageIterator.Cursor cursor,
+      Consumer<Webhook<?>> listener,
+      Duration minInterval,
+      Duration maxInterval,
+      Duration overlap) {
+
+    if (minInterval.isNegative()
+        || minInterval.isZero()
+        || maxInterval.compareTo(minInterval) < 0) {
+      throw new IllegalArgumentException(
+          "Intervals must be positive and minInterval <= maxInterval");
+    }
+
+    this.messagingService = messagingService;
+    this.cursor = cursor;
+    this.listener = listener;
+    this.overlap = overlap;
+    this.minIntervalNanos = minInterval.toNanos();
+    this.maxIntervalNanos = maxInterval.toNanos();
+    this.intervalNanos = minIntervalNanos;
+    this.lastPollNanos = System.nanoTime();
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-message-poller");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    scheduler.execute(this::pollAndReschedule);
+  }
+
+  /** Returns the high-water mark after the last reported message, to be persisted for restarts. */
+  public MessageIterator.Cursor getCursor() {
+
+    return cursor;
+  }
+
+  public Duration getPollInterval() {
+
+    return Duration.ofNanos(intervalNanos);
+  }
+
+  @Override
+  public void close() {
+
+    scheduler.shutdownNow();
+  }
+
+  private void pollAndReschedule() {
+
+    try {
+      adaptInterval(poll());
+    } catch (RuntimeException e) {
+      log.warn("Polling for new messages failed: {}", e.getMessage());
+    }
+
+    if (!scheduler.isShutdown()) {
+      scheduler.schedule(this::pollAndReschedule, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Reports the messages created since the high-water mark and returns how many there were. */
+  private int poll() {
+
+    int reported = 0;
+
+    // The pages are fetched on this thread, a poll usually needs a single search
+    MessageIterator messages = messagingService.iterateMessages(cursor, overlap, Runnable::run);
+
+    while (messages.hasNext()) {
+      Message message = messages.next();
+      WebhookTrigger trigger =
+          Boolean.TRUE.equals(message.getIsOwn())
+              ? WebhookTrigger.TRANSPORT__MESSAGE_SENT
+              : WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED;
+
+      try {
+        listener.accept(new Webhook<>(message, trigger));
+      } catch (RuntimeException e) {
+        log.warn("Listener failed for message {}, retrying with the next poll", message.getId(), e);
+        break;
+      }
+
+      cursor = messages.getCursor();
+      reported++;
+    }
+
+    return reported;
+  }
+
+  private void adaptInterval(int arrivedMessages) {
+
+    long now = System.nanoTime();
+    double elapsedSeconds = Math.max(now - lastPollNanos, 1) / 1e9;
+    lastPollNanos = now;
+
+    arrivalRate =
+        RATE_SMOOTHING * (arrivedMessages / elapsedSeconds) + (1 - RATE_SMOOTHING) * arrivalRate;
+
+    long expectedNanos =
+        arrivalRate > 0 ? (long) Math.min(1e9 / arrivalRate, maxIntervalNanos) : maxIntervalNanos;
+    intervalNanos = Math.max(minIntervalNanos, expectedNanos);
+  }
+}
@@ -0,0 +1,251 @@
+package eu.enmeshed;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.messaging.Message;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Iterates over the messages of the connector in the order of their creation, starting at a {@link
+ * Cursor}. The messages are searched in windows of {@code createdAt}, whose length adapts to the
+ * number of messages found, so dense periods are split into small pages and empty periods are
+ * skipped quickly. The last window has no upper bound, the iteration ends with it.
+ *
+ * <p>The next window is fetched in the background while the caller processes the current one.
+ * {@link #getCursor()} returns the position after the last returned message, an iterator started at
+ * that cursor later continues with the messages not returned yet.
+ *
+ * <p>Messages are only seen once the connector synced them, which may be after later messages.
+ * Resumed scans therefore search again the {@code overlap} before the cursor position, the cursor
+ * remembers the messages returned within it, so they are not returned twice.
+ */
+@Slf4j
+public class MessageIterator implements Iterator<Message>, AutoCloseable {
+
+  private static final int PAGE_SIZE = 100;
+  private static final Duration WINDOW_INITIAL = Duration.ofDays(1);
+  private static final Duration WINDOW_MIN = Duration.ofSeconds(1);
+  private static final Duration WINDOW_MAX = Duration.ofDays(30);
+
+  /** Instant.toString() omits zero fractions and writes micros or nanos, the connector wants ms. */
+  private static final DateTimeFormatter BOUND_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+  private final EnmeshedClient enmeshedClient;
+
+  private final Duration overlap;
+
+  private final Executor executor;
+
+  /** Executor owned by the iterator, null if the executor was given. */
+  private final ExecutorService ownExecutor;
+
+  private final ArrayDeque<Message> buffer = new ArrayDeque<>();
+
+  private final Map<String, ZonedDateTime> recentMessages;
+
+  private ZonedDateTime position;
+
+  private CompletableFuture<Page> pending;
+
+  MessageIterator(
+      EnmeshedClient enmeshedClient,
+      Runnable beforeScan,
+      Cursor cursor,
+      Duration overlap,
+      Executor executor) {
+
+    this.enmeshedClient = enmeshedClient;
+    this.overlap = overlap;
+    this.position = cursor.position();
+    this.recentMessages = new HashMap<>(cursor.recentMessages());
+
+    if (executor == null) {
+      this.ownExecutor =
+          Executors.newSingleThreadExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "enmeshed-message-prefetch");
+                thread.setDaemon(true);
+                return thread;
+              });
+      this.executor = ownExecutor;
+    } else {
+      this.ownExecutor = null;
+      this.executor = executor;
+    }
+
+    ZonedDateTime start = recentMessages.isEmpty() ? position : position.minus(overlap);
+    this.pending =
+        CompletableFuture.runAsync(beforeScan, this.executor)
+            .thenApply(ignored -> fetch(start, WINDOW_INITIAL));
+  }
+
+  @Override
+  public boolean hasNext() {
+
+    while (buffer.isEmpty() && pending != null) {
+      Page page;
+      try {
+        page = pending.join();
+      } catch (CompletionException e) {
+        pending = null;
+        close();
+        throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+      }
+
+      // Prefetch the next window while the caller processes this one
+      pending =
+          page.nextStart() == null
+              ? null
+              : CompletableFuture.supplyAsync(
+                  () -> fetch(page.nextStart(), page.nextWindow()), executor);
+
+      for (Message message : page.messages()) {
+        if (!recentMessages.containsKey(message.getId())) {
+          buffer.add(message);
+        }
+      }
+    }
+
+    if (buffer.isEmpty()) {
+      close();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @throws RuntimeException thrown by the connector call of the window
+   */
+  @Override
+  public Message next() {
+
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    Message message = buffer.poll();
+    ZonedDateTime createdAt = message.getCreatedAt();
+
+    if (createdAt != null) {
+      if (createdAt.isAfter(position)) {
+        position = createdAt;
+      }
+      recentMessages.put(message.getId(), createdAt);
+      ZonedDateTime oldestRecent = position.minus(overlap);
+      recentMessages.values().removeIf(recent -> recent.isBefore(oldestRecent));
+    }
+
+    return message;
+  }
+
+  /** Returns the cursor after the last message returned by {@link #next()}. */
+  public Cursor getCursor() {
+
+    return new Cursor(position, Map.copyOf(recentMessages));
+  }
+
+  /** Stops prefetching. Only needed if the iteration is abandoned before its end. */
+  @Override
+  public void close() {
+
+    if (ownExecutor != null) {
+      ownExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Fetches the messages created in the window starting at {@code start} (inclusive) and adapts the
+   * length of the following window to the number of messages found. A window with more than {@value
+   * #PAGE_SIZE} messages is halved and fetched again, down to {@link #WINDOW_MIN}, so a page stays
+   * bounded.
+   */
+  private Page fetch(ZonedDateTime start, Duration window) {
+
+    boolean split = false;
+
+    while (true) {
+      ZonedDateTime now = ZonedDateTime.now();
+      ZonedDateTime end = start.plus(window);
+      boolean last = !end.isBefore(now);
+
+      List<Message> messages = search(start, last ? null : end);
+
+      log.debug("Found {} messages created from {} within {}", messages.size(), start, window);
+
+      // The last window is open-ended, only the time until now can be split
+      Duration searched = last ? Duration.between(start, now) : window;
+      if (messages.size() > PAGE_SIZE && searched.compareTo(WINDOW_MIN.multipliedBy(2)) >= 0) {
+        window = searched.dividedBy(2);
+        split = true;
+        continue;
+      }
+
+      if (last) {
+        return new Page(messages, null, null);
+      }
+
+      // After a split the dense period follows, the next window must not grow into it again
+      Duration nextWindow = window;
+      if (!split
+          && messages.size() < PAGE_SIZE / 4
+          && window.compareTo(WINDOW_MAX.dividedBy(2)) <= 0) {
+        nextWindow = window.multipliedBy(2);
+      }
+
+      return new Page(messages, end, nextWindow);
+    }
+  }
+
+  /** Searches the messages created from start (inclusive) until end (exclusive, open if null). */
+  private List<Message> search(ZonedDateTime start, ZonedDateTime end) {
+
+    // The connector compares exclusively and with millisecond precision
+    String after = ">" + BOUND_FORMATTER.format(start.minus(1, ChronoUnit.MILLIS));
+    Map<String, Object> query =
+        Map.of(
+            "createdAt",
+            end == null ? List.of(after) : List.of(after, "<" + BOUND_FORMATTER.format(end)));
+
+    return enmeshedClient.searchMessages(query).getResult().stream()
+        .sorted(
+            Comparator.comparing(
+                    Message::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Message::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+        .toList();
+  }
+
+  private record Page(List<Message> messages, ZonedDateTime nextStart, Duration nextWindow) {}
+
+  /**
+   * Position of a message iteration, can be persisted (e.g. as JSON) to resume the iteration.
+   *
+   * @param position Creation time of the newest returned message, or the start of the iteration
+   * @param recentMessages Ids and creation times of the returned messages within the overlap before
+   *     the position
+   */
+  public record Cursor(ZonedDateTime position, Map<String, ZonedDateTime> recentMessages) {
+
+    /** Cursor of an iteration which starts with the messages created at the given time. */
+    public static Cursor startingAt(ZonedDateTime start) {
+
+      return new Cursor(start, Map.of());
+    }
+  }
+}
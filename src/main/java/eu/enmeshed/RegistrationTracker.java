@@ -0,0 +1,363 @@
+package eu.enmeshed;
+
+import eu.enmeshed.EnmeshedOnboardingService.RegistrationResult;
+import eu.enmeshed.model.attributes.values.AttributeValue;
+import eu.enmeshed.model.event.RelationshipTemplateProcessedEventData;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.relationships.Relationship;
+import eu.enmeshed.timer.TimingWheel;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks registrations by consuming relationship webhooks instead of polling every template. As
+ * soon as a pending RelationshipChange for a tracked template arrives, the acceptance decider runs
+ * and the future of the template completes with its {@link RegistrationResult}. Templates that did
+ * not receive an event are checked in one batch every {@code fallbackPollInterval}. An event
+ * arriving while its template is checked triggers another check once the running one is done.
+ *
+ * <p>Webhooks have to be passed to {@link #onWebhook(Webhook)} by the application.
+ */
+@Slf4j
+public class RegistrationTracker implements AutoCloseable {
+
+  private static final Duration FALLBACK_POLL_INTERVAL_DEFAULT = Duration.ofMinutes(1);
+
+  private final EnmeshedOnboardingService onboardingService;
+
+  private final Executor executor;
+
+  private final boolean ownsExecutor;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final TimingWheel timingWheel;
+
+  private final boolean ownsTimingWheel;
+
+  private final Map<String, TrackedRegistration> trackedRegistrations = new ConcurrentHashMap<>();
+
+  public RegistrationTracker(EnmeshedOnboardingService onboardingService) {
+    this(onboardingService, FALLBACK_POLL_INTERVAL_DEFAULT, null);
+  }
+
+  /**
+   * @param onboardingService Service used to check and decide registrations
+   * @param fallbackPollInterval Interval of the batch check of templates without events
+   * @param executor Executor running the acceptance deciders and the accept/reject calls. A pool of
+   *     daemon threads of the tracker is created if null.
+   */
+  public RegistrationTracker(
+      EnmeshedOnboardingService onboardingService,
+      Duration fallbackPollInterval,
+      Executor executor) {
+
+    this(onboardingService, fallbackPollInterval, executor, null);
+  }
+
+  /**
+   * @param onboardingService Service used to check and decide registrations
+   * @param fallbackPollInterval Interval of the batch check of templates without events
+   * @param executor Executor running the acceptance deciders and the accept/reject calls. A pool of
+   *     daemon threads of the tracker is created if null.
+   * @param timingWheel Wheel running the expiry callbacks, may be shared with other trackers. A
+   *     wheel of the tracker is created if null.
+   */
+  public RegistrationTracker(
+      EnmeshedOnboardingService onboardingService,
+      Duration fallbackPollInterval,
+      Executor executor,
+      TimingWheel timingWheel) {
+
+    this.onboardingService = onboardingService;
+    this.ownsExecutor = executor == null;
+    this.executor =
+        ownsExecutor
+            ? Executors.newCachedThreadPool(
+                runnable -> {
+                  Thread thread = new Thread(runnable, "enmeshed-registration-check");
+                  thread.setDaemon(true);
+                  return thread;
+                })
+            : executor;
+    this.ownsTimingWheel = timingWheel == null;
+    this.timingWheel = ownsTimingWheel ? new TimingWheel() : timingWheel;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-registration-tracker");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    scheduler.scheduleWithFixedDelay(
+        this::poll,
+        fallbackPollInterval.toNanos(),
+        fallbackPollInterval.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Tracks the registration of a RelationshipTemplate, accepting every registration.
+   *
+   * @see #track(String, ZonedDateTime, Predicate)
+   */
+  public CompletableFuture<RegistrationResult> track(
+      String relationshipTemplateId, ZonedDateTime expiresAt) {
+
+    return track(relationshipTemplateId, expiresAt, attributes -> true);
+  }
+
+  /**
+   * Tracks the registration of a RelationshipTemplate.
+   *
+   * @param relationshipTemplateId ID of the RelationshipTemplate
+   * @param expiresAt Expiry of the RelationshipTemplate. The future completes exceptionally with a
+   *     {@link TimeoutException} if there is no registration until then.
+   * @param acceptanceDecider Functional Interface to decide whether the incoming request should be
+   *     accepted or not. The send attributes will be passed to the method call.
+   * @return Future completed with the result of the registration
+   */
+  public CompletableFuture<RegistrationResult> track(
+      String relationshipTemplateId,
+      ZonedDateTime expiresAt,
+      Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
+
+    TrackedRegistration trackedRegistration = new TrackedRegistration(acceptanceDecider);
+    TrackedRegistration existing =
+        trackedRegistrations.putIfAbsent(relationshipTemplateId, trackedRegistration);
+    if (existing != null) {
+      return existing.result;
+    }
+
+    // Scheduled after the registration is published, an expiry in the past runs right away
+    trackedRegistration.expiry =
+        timingWheel.schedule(expiresAt, () -> expire(relationshipTemplateId, trackedRegistration));
+    if (trackedRegistration.result.isDone()) {
+      trackedRegistration.expiry.cancel();
+    }
+    return trackedRegistration.result;
+  }
+
+  /** Returns the number of tracked registrations which are not completed yet. */
+  public int getTrackedCount() {
+
+    return trackedRegistrations.size();
+  }
+
+  /**
+   * Consumes a webhook received from the connector. Events not related to a tracked registration
+   * are ignored.
+   */
+  public void onWebhook(Webhook<?> webhook) {
+
+    if (webhook.getTrigger() == WebhookTrigger.TRANSPORT__RELATIONSHIP_CHANGED
+        && webhook.getData() instanceof Relationship relationship
+        && relationship.getTemplate() != null) {
+
+      String templateId = relationship.getTemplate().getId();
+      TrackedRegistration trackedRegistration = trackedRegistrations.get(templateId);
+      if (trackedRegistration != null && trackedRegistration.startCheck()) {
+        executor.execute(
+            () ->
+                complete(
+                    templateId,
+                    trackedRegistration,
+                    () ->
+                        onboardingService.advanceRegistration(
+                            templateId, relationship, trackedRegistration.acceptanceDecider)));
+      }
+
+    } else if (webhook.getTrigger() == WebhookTrigger.CONSUMPTION__RELATIONSHIP_TEMPLATE_PROCESSED
+        && webhook.getData() instanceof RelationshipTemplateProcessedEventData eventData
+        && eventData.getTemplate() != null) {
+
+      String templateId = eventData.getTemplate().getId();
+      TrackedRegistration trackedRegistration = trackedRegistrations.get(templateId);
+      if (trackedRegistration != null && trackedRegistration.startCheck()) {
+        executor.execute(
+            () ->
+                complete(
+                    templateId,
+                    trackedRegistration,
+                    () ->
+                        onboardingService.checkRegistrationState(
+                            templateId, trackedRegistration.acceptanceDecider)));
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+
+    scheduler.shutdownNow();
+    if (ownsExecutor && executor instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
+    if (ownsTimingWheel) {
+      timingWheel.close();
+    }
+  }
+
+  private void complete(
+      String templateId,
+      TrackedRegistration trackedRegistration,
+      Supplier<RegistrationResult> check) {
+
+    try {
+      RegistrationResult registrationResult = check.get();
+      if (registrationResult != null) {
+        finish(templateId, trackedRegistration, registrationResult);
+      }
+    } catch (RuntimeException e) {
+      log.warn(
+          "Failed to check registration of RelationshipTemplate {}: {}",
+          templateId,
+          e.getMessage());
+    } finally {
+      endCheck(templateId, trackedRegistration);
+    }
+  }
+
+  /** Ends a check, running another one if an event arrived in the meantime. */
+  private void endCheck(String templateId, TrackedRegistration trackedRegistration) {
+
+    if (trackedRegistration.endCheck() && !trackedRegistration.result.isDone()) {
+      executor.execute(
+          () ->
+              complete(
+                  templateId,
+                  trackedRegistration,
+                  () ->
+                      onboardingService.checkRegistrationState(
+                          templateId, trackedRegistration.acceptanceDecider)));
+    }
+  }
+
+  private void poll() {
+
+    try {
+      Map<String, Predicate<Map<Class<? extends AttributeValue>, AttributeValue>>>
+          acceptanceDeciders = new HashMap<>();
+      Map<String, TrackedRegistration> polledRegistrations = new HashMap<>();
+      trackedRegistrations.forEach(
+          (templateId, trackedRegistration) -> {
+            if (trackedRegistration.tryStartCheck()) {
+              acceptanceDeciders.put(templateId, trackedRegistration.acceptanceDecider);
+              polledRegistrations.put(templateId, trackedRegistration);
+            }
+          });
+
+      if (acceptanceDeciders.isEmpty()) {
+        return;
+      }
+
+      try {
+        onboardingService
+            .checkRegistrationStates(acceptanceDeciders, executor)
+            .forEach(
+                (templateId, registrationResult) -> {
+                  TrackedRegistration trackedRegistration = polledRegistrations.get(templateId);
+                  if (trackedRegistration != null) {
+                    finish(templateId, trackedRegistration, registrationResult);
+                  }
+                });
+      } finally {
+        polledRegistrations.forEach(this::endCheck);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Fallback poll of registrations failed: {}", e.getMessage());
+    }
+  }
+
+  private void finish(
+      String templateId,
+      TrackedRegistration trackedRegistration,
+      RegistrationResult registrationResult) {
+
+    trackedRegistrations.remove(templateId, trackedRegistration);
+    trackedRegistration.result.complete(registrationResult);
+    // Null if the registration completed before its expiry was scheduled, track() cancels it then
+    TimingWheel.Timeout expiry = trackedRegistration.expiry;
+    if (expiry != null) {
+      expiry.cancel();
+    }
+  }
+
+  private void expire(String templateId, TrackedRegistration trackedRegistration) {
+
+    if (trackedRegistrations.remove(templateId, trackedRegistration)) {
+      trackedRegistration.result.completeExceptionally(
+          new TimeoutException("RelationshipTemplate " + templateId + " expired"));
+    }
+  }
+
+  private static final class TrackedRegistration {
+
+    private final Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider;
+
+    private final CompletableFuture<RegistrationResult> result = new CompletableFuture<>();
+
+    private static final int IDLE = 0;
+    private static final int CHECKING = 1;
+    private static final int RECHECK_REQUESTED = 2;
+
+    /**
+     * Guards against deciding a registration from a webhook and the fallback poll at once, and
+     * remembers events arriving during a check.
+     */
+    private final AtomicInteger checkState = new AtomicInteger(IDLE);
+
+    private volatile TimingWheel.Timeout expiry;
+
+    private TrackedRegistration(
+        Predicate<Map<Class<? extends AttributeValue>, AttributeValue>> acceptanceDecider) {
+      this.acceptanceDecider = acceptanceDecider;
+    }
+
+    /** Starts a check for an event, or requests another one from the running check. */
+    private boolean startCheck() {
+
+      while (true) {
+        if (checkState.compareAndSet(IDLE, CHECKING)) {
+          return true;
+        }
+        if (checkState.compareAndSet(CHECKING, RECHECK_REQUESTED)
+            || checkState.get() == RECHECK_REQUESTED) {
+          return false;
+        }
+      }
+    }
+
+    /** Starts a check of the fallback poll, which does not wait for a running one. */
+    private boolean tryStartCheck() {
+
+      return checkState.compareAndSet(IDLE, CHECKING);
+    }
+
+    /**
+     * Ends a check. Returns true if another check was requested meanwhile, the caller keeps the
+     * check running then.
+     */
+    private boolean endCheck() {
+
+      return !checkState.compareAndSet(CHECKING, IDLE)
+          && checkState.compareAndSet(RECHECK_REQUESTED, CHECKING);
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package eu.enmeshed;
+
+import static java.util.Objects.isNull;
+
+import eu.enmeshed.EnmeshedOnboardingService.RegistrationData;
+import eu.enmeshed.model.qr.QrCode;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a pool of pre-created onboarding RelationshipTemplates and their QR codes per
+ * configuration, so handing out a QR code does not wait for the connector. Entries are refilled in
+ * the background after every take. Entries that expire within {@code minRemainingValidity} are
+ * never handed out and are discarded.
+ *
+ * <p>If a pool is empty, the QR code is generated on the calling thread like without a pool.
+ */
+@Slf4j
+public class RelationshipTemplatePool implements AutoCloseable {
+
+  private static final int SIZE_DEFAULT = 5;
+  private static final Duration MIN_REMAINING_VALIDITY_DEFAULT = Duration.ofMinutes(10);
+  private static final Duration MAINTENANCE_INTERVAL = Duration.ofMinutes(1);
+
+  private final EnmeshedOnboardingService onboardingService;
+
+  private final int size;
+
+  private final Duration minRemainingValidity;
+
+  private final Executor executor;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final Map<PoolKey, Pool<?>> pools = new ConcurrentHashMap<>();
+
+  public RelationshipTemplatePool(EnmeshedOnboardingService onboardingService) {
+    this(onboardingService, SIZE_DEFAULT, MIN_REMAINING_VALIDITY_DEFAULT);
+  }
+
+  /**
+   * @param onboardingService Service used to create the templates
+   * @param size Number of templates kept per configuration
+   * @param minRemainingValidity Minimum validity a template must have left when handed out. Has to
+   *     be shorter than the validity of the configurations, configurations with a validity not
+   *     longer than it are rejected.
+   */
+  public RelationshipTemplatePool(
+      EnmeshedOnboardingService onboardingService, int size, Duration minRemainingValidity) {
+
+    this(onboardingService, size, minRemainingValidity, null);
+  }
+
+  /**
+   * @param onboardingService Service used to create the templates
+   * @param size Number of templates kept per configuration
+   * @param minRemainingValidity Minimum validity a template must have left when handed out
+   * @param executor Executor creating the templates, the pool's own thread if null
+   */
+  public RelationshipTemplatePool(
+      EnmeshedOnboardingService onboardingService,
+      int size,
+      Duration minRemainingValidity,
+      Executor executor) {
+
+    if (size < 1) {
+      throw new IllegalArgumentException("size must be positive");
+    }
+    if (minRemainingValidity.isNegative()) {
+      throw new IllegalArgumentException("minRemainingValidity must not be negative");
+    }
+
+    this.onboardingService = onboardingService;
+    this.size = size;
+    this.minRemainingValidity = minRemainingValidity;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-template-pool");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor = isNull(executor) ? scheduler : executor;
+
+    scheduler.scheduleWithFixedDelay(
+        this::maintain,
+        MAINTENANCE_INTERVAL.toNanos(),
+        MAINTENANCE_INTERVAL.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  /** Starts filling the pool of PNG QR codes for a configuration before the first take. */
+  public void prepareRegistrationData(Configuration configuration) {
+
+    registrationDataPool(configuration).refill();
+  }
+
+  /** Starts filling the pool of QR code models for a configuration before the first take. */
+  public void prepareQrCode(Configuration configuration) {
+
+    qrCodePool(configuration).refill();
+  }
+
+  /**
+   * Takes a pre-created QR code (PNG) like {@link
+   * EnmeshedOnboardingService#generateQrCodeForRegistrationAsJpg}.
+   */
+  public RegistrationData takeRegistrationData(Configuration configuration) {
+
+    return registrationDataPool(configuration).take();
+  }
+
+  /**
+   * Takes a pre-created QR code model like {@link
+   * EnmeshedOnboardingService#generateQrCodeForRegistration}.
+   */
+  public QrCode takeQrCode(Configuration configuration) {
+
+    return qrCodePool(configuration).take();
+  }
+
+  /** Returns the number of pooled entries of a configuration, including expired ones. */
+  public int getPooledCount(Configuration configuration) {
+
+    return pools.entrySet().stream()
+        .filter(entry -> entry.getKey().configuration().equals(configuration))
+        .mapToInt(entry -> entry.getValue().entries.size())
+        .sum();
+  }
+
+  @Override
+  public void close() {
+
+    scheduler.shutdownNow();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Pool<RegistrationData> registrationDataPool(Configuration configuration) {
+
+    checkValidity(configuration);
+    return (Pool<RegistrationData>)
+        pools.computeIfAbsent(
+            new PoolKey(configuration, RegistrationData.class),
+            key ->
+                new Pool<>(
+                    configuration,
+                    trackRegistration ->
+                        onboardingService.generateQrCodeForRegistrationAsJpg(
+                            configuration.displayTextRequestedAttributes(),
+                            configuration.displayTextSharedAttributes(),
+                            configuration.displayTextCreateAttributes(),
+                            configuration.qrCodeValidityMinutes(),
+                            null,
+                            trackRegistration),
+                    RegistrationData::relationshipTemplateId,
+                    RegistrationData::expiresAt));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Pool<QrCode> qrCodePool(Configuration configuration) {
+
+    checkValidity(configuration);
+    return (Pool<QrCode>)
+        pools.computeIfAbsent(
+            new PoolKey(configuration, QrCode.class),
+            key ->
+                new Pool<>(
+                    configuration,
+                    trackRegistration ->
+                        onboardingService.generateQrCodeForRegistration(
+                            configuration.displayTextRequestedAttributes(),
+                            configuration.displayTextSharedAttributes(),
+                            configuration.displayTextCreateAttributes(),
+                            configuration.qrCodeValidityMinutes(),
+                            null,
+                            trackRegistration),
+                    QrCode::getId,
+                    qrCode ->
+                        isNull(qrCode.getExpiresAt())
+                            ? null
+                            : ZonedDateTime.parse(qrCode.getExpiresAt())));
+  }
+
+  /**
+   * Rejects configurations whose templates would be discarded right after their creation, which
+   * would recreate them without end.
+   */
+  private void checkValidity(Configuration configuration) {
+
+    if (validity(configuration).compareTo(minRemainingValidity) <= 0) {
+      throw new IllegalArgumentException(
+          "The validity of "
+              + configuration
+              + " is not longer than the minimum remaining validity "
+              + minRemainingValidity);
+    }
+  }
+
+  private static Duration validity(Configuration configuration) {
+
+    return Duration.ofMinutes(
+        isNull(configuration.qrCodeValidityMinutes())
+            ? EnmeshedOnboardingService.QR_CODE_VALIDITY_MINUTES_DEFAULT
+            : configuration.qrCodeValidityMinutes());
+  }
+
+  private void maintain() {
+
+    pools.values().forEach(Pool::refill);
+  }
+
+  /**
+   * Texts and validity of the onboarding RelationshipTemplates, see {@link
+   * EnmeshedOnboardingService#generateQrCodeForRegistration}.
+   */
+  public record Configuration(
+      String displayTextRequestedAttributes,
+      String displayTextSharedAttributes,
+      String displayTextCreateAttributes,
+      Long qrCodeValidityMinutes) {}
+
+  private record PoolKey(Configuration configuration, Class<?> type) {}
+
+  private record Entry<T>(T value, ZonedDateTime expiresAt) {}
+
+  private final class Pool<T> {
+
+    private final Configuration configuration;
+
+    private final Function<Boolean, T> generator;
+
+    private final Function<T, String> templateId;
+
+    private final Function<T, ZonedDateTime> expiresAt;
+
+    private final Deque<Entry<T>> entries = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger creating = new AtomicInteger();
+
+    private Pool(
+        Configuration configuration,
+        Function<Boolean, T> generator,
+        Function<T, String> templateId,
+        Function<T, ZonedDateTime> expiresAt) {
+      this.configuration = configuration;
+      this.generator = generator;
+      this.templateId = templateId;
+      this.expiresAt = expiresAt;
+    }
+
+    private T take() {
+
+      try {
+        for (Entry<T> entry = entries.pollFirst(); entry != null; entry = entries.pollFirst()) {
+          if (isUsable(entry)) {
+            onboardingService.trackRegistration(templateId.apply(entry.value()), entry.expiresAt());
+            return entry.value();
+          }
+        }
+      } finally {
+        refill();
+      }
+
+      log.debug("Template pool of {} is empty, generating QR code inline", configuration);
+      return generator.apply(true);
+    }
+
+    private void refill() {
+
+      entries.removeIf(entry -> !isUsable(entry));
+
+      while (entries.size() + creating.get() < size) {
+        creating.incrementAndGet();
+        try {
+          executor.execute(this::create);
+        } catch (RuntimeException e) {
+          creating.decrementAndGet();
+          log.warn("Failed to schedule template creation: {}", e.getMessage());
+          return;
+        }
+      }
+    }
+
+    private void create() {
+
+      try {
+        ZonedDateTime createdAt = ZonedDateTime.now();
+        T value = generator.apply(false);
+        if (value != null) {
+          ZonedDateTime valueExpiresAt = expiresAt.apply(value);
+          entries.addLast(
+              new Entry<>(
+                  value,
+                  isNull(valueExpiresAt)
+                      ? createdAt.plus(validity(configuration))
+                      : valueExpiresAt));
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to pre-create RelationshipTemplate: {}", e.getMessage());
+      } finally {
+        creating.decrementAndGet();
+      }
+    }
+
+    private boolean isUsable(Entry<T> entry) {
+
+      return entry.expiresAt().isAfter(ZonedDateTime.now().plus(minRemainingValidity));
+    }
+  }
+}
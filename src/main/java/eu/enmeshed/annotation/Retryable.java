@@ -1,28 +1,59 @@
 package eu.enmeshed.annotation;
 
-import static java.util.Objects.nonNull;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_CLIENT_TIMEOUT;
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 
+import feign.MethodMetadata;
 import feign.RetryableException;
 import feign.Retryer;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.AllArgsConstructor;
 
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Retryable {
+
+  /**
+   * Whether client errors (4xx, except 408 and 429) are retried. Disable it for calls whose client
+   * errors can not be fixed by repeating the call, e.g. a rejected message.
+   */
+  boolean clientErrors() default true;
+
   @AllArgsConstructor
   class AnnotationRetryer implements Retryer {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // Annotation lookups are done once per client method instead of once per failed request
+    private static final Map<String, Optional<Retryable>> RETRYABLE_METHODS =
+        new ConcurrentHashMap<>();
+
     private final Retryer delegate;
 
     @Override
     public void continueOrPropagate(RetryableException e) {
-      if (isAnnotated(e)) delegate.continueOrPropagate(e);
+      Optional<Retryable> retryable = annotation(e);
+      if (retryable.isPresent() && (retryable.get().clientErrors() || !isClientError(e)))
+        delegate.continueOrPropagate(e);
       else throw e;
     }
 
-    private boolean isAnnotated(RetryableException e) {
-      return nonNull(
-          e.request().requestTemplate().methodMetadata().method().getAnnotation(Retryable.class));
+    private Optional<Retryable> annotation(RetryableException e) {
+      MethodMetadata methodMetadata = e.request().requestTemplate().methodMetadata();
+      return RETRYABLE_METHODS.computeIfAbsent(
+          methodMetadata.configKey(),
+          configKey -> Optional.ofNullable(methodMetadata.method().getAnnotation(Retryable.class)));
+    }
+
+    private static boolean isClientError(RetryableException e) {
+      return e.status() >= HTTP_BAD_REQUEST
+          && e.status() < HTTP_INTERNAL_ERROR
+          && e.status() != HTTP_CLIENT_TIMEOUT
+          && e.status() != HTTP_TOO_MANY_REQUESTS;
     }
 
     @Override
@@ -0,0 +1,218 @@
+package eu.enmeshed.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a task for many inputs with a bounded number of concurrent workers. Every worker takes the
+ * next input as soon as its previous one is done, so the connector calls of different inputs
+ * overlap while at most {@code maxConcurrency} inputs are in flight.
+ *
+ * <p>The results are reported per input in the order of the inputs, a failing input does not stop
+ * the others. The operation can be cancelled, inputs that were not started yet are then reported as
+ * cancelled.
+ *
+ * @param <I> Type of the inputs
+ * @param <R> Type of the results
+ */
+@Slf4j
+public class BulkOperation<I, R> {
+
+  private final List<I> inputs;
+
+  private final Task<I, R> task;
+
+  private final Consumer<Progress> progressListener;
+
+  private final AtomicReferenceArray<ItemResult<I, R>> itemResults;
+
+  private final AtomicInteger nextIndex = new AtomicInteger();
+
+  private final AtomicInteger completed = new AtomicInteger();
+
+  private final AtomicInteger failed = new AtomicInteger();
+
+  private final AtomicInteger activeWorkers = new AtomicInteger();
+
+  private final CompletableFuture<List<ItemResult<I, R>>> results = new CompletableFuture<>();
+
+  private volatile boolean cancelled;
+
+  private BulkOperation(List<I> inputs, Task<I, R> task, Consumer<Progress> progressListener) {
+
+    this.inputs = List.copyOf(inputs);
+    this.task = task;
+    this.progressListener = progressListener;
+    this.itemResults = new AtomicReferenceArray<>(inputs.size());
+  }
+
+  /**
+   * Starts the operation.
+   *
+   * @param inputs Inputs to run the task for
+   * @param task Task run for every input
+   * @param maxConcurrency Maximum number of inputs in flight
+   * @param executor Executor running the workers. If null, every worker gets its own daemon thread,
+   *     which suits tasks blocking on connector calls.
+   * @param progressListener Called after every finished input, may be null
+   */
+  public static <I, R> BulkOperation<I, R> start(
+      List<I> inputs,
+      Task<I, R> task,
+      int maxConcurrency,
+      Executor executor,
+      Consumer<Progress> progressListener) {
+
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive");
+    }
+
+    BulkOperation<I, R> operation = new BulkOperation<>(inputs, task, progressListener);
+
+    int workers = Math.min(maxConcurrency, inputs.size());
+    if (workers == 0) {
+      operation.complete();
+      return operation;
+    }
+
+    operation.activeWorkers.set(workers);
+    for (int worker = 0; worker < workers; worker++) {
+      Runnable runnable = operation::work;
+      try {
+        if (executor == null) {
+          Thread thread = new Thread(runnable, "enmeshed-bulk-" + worker);
+          thread.setDaemon(true);
+          thread.start();
+        } else {
+          executor.execute(runnable);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to start bulk worker: {}", e.getMessage());
+        operation.workerDone();
+      }
+    }
+
+    return operation;
+  }
+
+  /** Completes with the results of all inputs once every input is finished or cancelled. */
+  public CompletableFuture<List<ItemResult<I, R>>> getResults() {
+
+    return results;
+  }
+
+  public Progress getProgress() {
+
+    return new Progress(inputs.size(), completed.get(), failed.get(), cancelled);
+  }
+
+  /**
+   * Stops starting further inputs. Inputs in flight are finished, the remaining ones are reported
+   * as cancelled.
+   */
+  public void cancel() {
+
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+
+    return cancelled;
+  }
+
+  private void work() {
+
+    try {
+      int index;
+      while (!cancelled && (index = nextIndex.getAndIncrement()) < inputs.size()) {
+        I input = inputs.get(index);
+        ItemResult<I, R> itemResult;
+
+        try {
+          itemResult = new ItemResult<>(input, task.run(input), null, false);
+        } catch (Exception e) {
+          itemResult = new ItemResult<>(input, null, e, false);
+          failed.incrementAndGet();
+        }
+
+        itemResults.set(index, itemResult);
+        completed.incrementAndGet();
+        notifyProgress();
+      }
+    } finally {
+      workerDone();
+    }
+  }
+
+  private void notifyProgress() {
+
+    if (progressListener == null) {
+      return;
+    }
+
+    try {
+      progressListener.accept(getProgress());
+    } catch (RuntimeException e) {
+      log.warn("Progress listener failed: {}", e.getMessage());
+    }
+  }
+
+  private void workerDone() {
+
+    if (activeWorkers.decrementAndGet() == 0) {
+      complete();
+    }
+  }
+
+  private void complete() {
+
+    List<ItemResult<I, R>> resultList = new ArrayList<>(inputs.size());
+    for (int index = 0; index < inputs.size(); index++) {
+      ItemResult<I, R> itemResult = itemResults.get(index);
+      resultList.add(
+          itemResult == null ? new ItemResult<>(inputs.get(index), null, null, true) : itemResult);
+    }
+
+    results.complete(resultList);
+  }
+
+  /** Work done for a single input. */
+  @FunctionalInterface
+  public interface Task<I, R> {
+
+    R run(I input) throws Exception;
+  }
+
+  /**
+   * Outcome of a single input.
+   *
+   * @param result Result of the task, null if it failed or was cancelled
+   * @param failure Exception thrown by the task, null if it succeeded or was cancelled
+   * @param cancelled Whether the input was not started because the operation was cancelled
+   */
+  public record ItemResult<I, R>(I input, R result, Exception failure, boolean cancelled) {
+
+    public boolean isSuccessful() {
+      return failure == null && !cancelled;
+    }
+  }
+
+  /**
+   * @param total Number of inputs
+   * @param completed Number of finished inputs, including failed ones
+   * @param failed Number of failed inputs
+   * @param cancelled Whether the operation was cancelled
+   */
+  public record Progress(int total, int completed, int failed, boolean cancelled) {
+
+    public boolean isDone() {
+      return completed == total;
+    }
+  }
+}
@@ -1,12 +1,9 @@
 package eu.enmeshed.client;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.util.StdDateFormat;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import eu.enmeshed.annotation.Retryable;
 import eu.enmeshed.exception.decoder.EnmeshedErrorDecoder;
+import eu.enmeshed.idempotency.IdempotencyKeyInterceptor;
+import eu.enmeshed.idempotency.IdempotentClient;
 import eu.enmeshed.model.AttributeWrapper;
 import eu.enmeshed.model.ContentWrapper;
 import eu.enmeshed.model.IdentityInfo;
@@ -20,9 +17,11 @@ import eu.enmeshed.model.messaging.SendMessage;
 import eu.enmeshed.model.qr.QrCode;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateCreation;
+import eu.enmeshed.model.relationshipTemplates.SerializedRelationshipTemplateCreation;
 import eu.enmeshed.model.relationships.Relationship;
 import eu.enmeshed.model.request.LocalRequest;
 import eu.enmeshed.retryer.CustomRetryer;
+import feign.Client;
 import feign.Feign;
 import feign.Headers;
 import feign.Logger;
@@ -32,20 +31,11 @@ import feign.Request;
 import feign.RequestLine;
 import feign.Response;
 import feign.form.FormEncoder;
-import feign.jackson.JacksonDecoder;
-import feign.jackson.JacksonEncoder;
 import java.util.List;
+import java.util.Map;
 
 public interface EnmeshedClient {
 
-  ObjectMapper objectMapper =
-      new ObjectMapper()
-          .registerModule(new JavaTimeModule())
-          .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
-          .disable(SerializationFeature.INDENT_OUTPUT)
-          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-          .setDateFormat(new StdDateFormat().withColonInTimeZone(true));
-
   static EnmeshedClient configure(String url, String apiKey) {
 
     return configure(url, apiKey, new Request.Options(), Logger.Level.NONE);
@@ -54,10 +44,14 @@ public interface EnmeshedClient {
   static EnmeshedClient configure(
       String url, String apiKey, Request.Options options, Logger.Level loggerLevel) {
 
+    LazyJacksonCodec jacksonCodec = new LazyJacksonCodec();
+
     return Feign.builder()
-        .decoder(new JacksonDecoder(objectMapper))
-        .encoder(new FormEncoder(new JacksonEncoder(objectMapper)))
+        .client(new IdempotentClient(new Client.Default(null, null)))
+        .decoder(jacksonCodec)
+        .encoder(new FormEncoder(jacksonCodec))
         .requestInterceptor(request -> request.header("X-API-KEY", apiKey))
+        .requestInterceptor(new IdempotencyKeyInterceptor())
         .logLevel(loggerLevel)
         .options(options)
         .errorDecoder(new EnmeshedErrorDecoder())
@@ -95,6 +89,11 @@ public interface EnmeshedClient {
   ResultWrapper<RelationshipTemplate> createOwnRelationshipTemplate(
       RelationshipTemplateCreation relationshipTemplate);
 
+  @RequestLine("POST /api/v2/RelationshipTemplates/Own")
+  @Headers("Content-Type: application/json")
+  ResultWrapper<RelationshipTemplate> createOwnRelationshipTemplate(
+      SerializedRelationshipTemplateCreation relationshipTemplate);
+
   @RequestLine("GET /api/v2/RelationshipTemplates/{0}")
   @Headers("Accept: image/png")
   Response getQrCodeForRelationshipTemplate(@Param("0") String relationshipTemplateId);
@@ -128,14 +127,40 @@ public interface EnmeshedClient {
   /*
    Messages
   */
-  @Retryable
+  @Retryable(clientErrors = false)
   @RequestLine("POST /api/v2/Messages")
   @Headers("Content-Type: application/json")
   ResultWrapper<Message> sendMessage(SendMessage message);
 
+  /**
+   * Same as {@link #sendMessage(SendMessage)}, but with an idempotency key chosen by the caller, so
+   * calls repeated by the application are deduplicated as well.
+   */
+  @Retryable(clientErrors = false)
+  @RequestLine("POST /api/v2/Messages")
+  @Headers({"Content-Type: application/json", "Idempotency-Key: {idempotencyKey}"})
+  ResultWrapper<Message> sendMessage(
+      @Param("idempotencyKey") String idempotencyKey, SendMessage message);
+
+  /**
+   * Same as {@link #sendMessage(SendMessage)}, but without retries, for callers which retry on
+   * their own.
+   */
+  @RequestLine("POST /api/v2/Messages")
+  @Headers("Content-Type: application/json")
+  ResultWrapper<Message> sendMessageWithoutRetry(SendMessage message);
+
   @RequestLine("GET /api/v2/Messages")
   ResultWrapper<List<Message>> searchMessages(@QueryMap MessageSearchQuery searchQuery);
 
+  /**
+   * Same as {@link #searchMessages(MessageSearchQuery)}, but with arbitrary query parameters. A
+   * collection value is sent as repeated parameter, e.g. {@code createdAt=>2024-01-01T00:00:00Z
+   * &createdAt=<2024-02-01T00:00:00Z} for a range.
+   */
+  @RequestLine("GET /api/v2/Messages")
+  ResultWrapper<List<Message>> searchMessages(@QueryMap Map<String, Object> query);
+
   @RequestLine("GET /api/v2/Messages/{0}")
   ResultWrapper<Message> getMessageById(@Param("0") String id);
 
@@ -146,9 +171,25 @@ public interface EnmeshedClient {
   @Headers("Content-Type: application/json")
   ResultWrapper<LocalRequest> createOutgoingRequest(LocalRequest request);
 
+  @RequestLine("POST /api/v2/Requests/Outgoing")
+  @Headers({"Content-Type: application/json", "Idempotency-Key: {idempotencyKey}"})
+  ResultWrapper<LocalRequest> createOutgoingRequest(
+      @Param("idempotencyKey") String idempotencyKey, LocalRequest request);
+
   @RequestLine("GET /api/v2/Requests/Outgoing/{0}")
   ResultWrapper<LocalRequest> getOutgoingRequest(@Param("0") String requestId);
 
+  /** Lists the outgoing requests with the given ids, unknown ids are not contained. */
+  @RequestLine("GET /api/v2/Requests/Outgoing?id={ids}")
+  ResultWrapper<List<LocalRequest>> searchOutgoingRequests(@Param("ids") List<String> ids);
+
+  /**
+   * Same as {@link #getOutgoingRequest(String)}, but returns the raw response for every status
+   * instead of throwing, so callers can handle an unknown request id without an exception.
+   */
+  @RequestLine("GET /api/v2/Requests/Outgoing/{0}")
+  Response findOutgoingRequest(@Param("0") String requestId);
+
   @Retryable
   @RequestLine("GET /api/v2/Requests/Incoming/{requestId}")
   @Headers("Content-Type: application/json")
@@ -168,6 +209,16 @@ public interface EnmeshedClient {
   @Headers({"Content-Type:  multipart/form-data", "accept: application/json"})
   ResultWrapper<FileMetaData> uploadNewOwnFile(FileUploadRequest fileUploadRequest);
 
+  @Retryable
+  @RequestLine("POST /api/v2/Files/Own")
+  @Headers({
+    "Content-Type:  multipart/form-data",
+    "accept: application/json",
+    "Idempotency-Key: {idempotencyKey}"
+  })
+  ResultWrapper<FileMetaData> uploadNewOwnFile(
+      @Param("idempotencyKey") String idempotencyKey, FileUploadRequest fileUploadRequest);
+
   @Retryable
   @RequestLine("GET /api/v2/Files/{fileId}/Download")
   @Headers("Accept: application/json")
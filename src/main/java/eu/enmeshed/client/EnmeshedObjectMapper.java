@@ -0,0 +1,185 @@
+package eu.enmeshed.client;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClassResolver;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.enmeshed.codec.EnmeshedModelModule;
+import eu.enmeshed.model.AttributeWrapper;
+import eu.enmeshed.model.ContentWrapper;
+import eu.enmeshed.model.IdentityInfo;
+import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.attributes.Attribute;
+import eu.enmeshed.model.attributes.values.AttributeValue;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.file.FileMetaData;
+import eu.enmeshed.model.messaging.Message;
+import eu.enmeshed.model.messaging.MessageContent;
+import eu.enmeshed.model.messaging.SendMessage;
+import eu.enmeshed.model.qr.QrCode;
+import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
+import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateCreation;
+import eu.enmeshed.model.relationshipTemplates.SerializedRelationshipTemplateCreation;
+import eu.enmeshed.model.relationships.Relationship;
+import eu.enmeshed.model.relationships.RelationshipChangeRequestContent;
+import eu.enmeshed.model.request.LocalRequest;
+import eu.enmeshed.model.requestItems.RequestItem;
+import eu.enmeshed.model.responseItems.ResponseItem;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Provides the ObjectMapper shared by the SDK. The instance is built on first access, so loading
+ * the SDK classes does not pay for the Jackson setup.
+ *
+ * <p>Replaces the former constant {@code EnmeshedClient.objectMapper}. It can not be kept as alias:
+ * Feign initializes the client interface when a client is configured, which would build the mapper.
+ */
+@Slf4j
+@NoArgsConstructor(access = PRIVATE)
+public final class EnmeshedObjectMapper {
+
+  private static final int WARMUP_ITERATIONS_DEFAULT = 100;
+
+  private static final List<Class<?>> POLYMORPHIC_MODEL_TYPES =
+      List.of(
+          Attribute.class,
+          AttributeValue.class,
+          MessageContent.class,
+          RelationshipChangeRequestContent.class,
+          RequestItem.class,
+          ResponseItem.class);
+
+  public static ObjectMapper get() {
+
+    return Holder.OBJECT_MAPPER;
+  }
+
+  /**
+   * Exercises the (de)serialization of every model type, so serializers are created and the JIT
+   * compiler has seen the codec paths before real traffic arrives. Can be called on a background
+   * thread during application startup.
+   */
+  public static void warmup() {
+
+    warmup(WARMUP_ITERATIONS_DEFAULT);
+  }
+
+  /**
+   * Exercises the (de)serialization of every model type.
+   *
+   * @param iterations Number of times every model type is serialized and deserialized.
+   */
+  public static void warmup(int iterations) {
+
+    ObjectMapper objectMapper = get();
+    List<String> samples = new ArrayList<>();
+    List<JavaType> sampleTypes = new ArrayList<>();
+
+    collectPolymorphicSamples(objectMapper, samples, sampleTypes);
+    collectWebhookSamples(objectMapper, samples, sampleTypes);
+    prepareClientTypes(objectMapper);
+
+    for (int iteration = 0; iteration < iterations; iteration++) {
+      for (int i = 0; i < samples.size(); i++) {
+        try {
+          Object value = objectMapper.readerFor(sampleTypes.get(i)).readValue(samples.get(i));
+          objectMapper.writerFor(sampleTypes.get(i)).writeValueAsBytes(value);
+        } catch (IOException e) {
+          log.warn("Warmup of {} failed: {}", sampleTypes.get(i), e.getMessage());
+        }
+      }
+    }
+  }
+
+  private static void collectPolymorphicSamples(
+      ObjectMapper objectMapper, List<String> samples, List<JavaType> sampleTypes) {
+
+    DeserializationConfig config = objectMapper.getDeserializationConfig();
+
+    for (Class<?> baseType : POLYMORPHIC_MODEL_TYPES) {
+      for (NamedType subType :
+          objectMapper
+              .getSubtypeResolver()
+              .collectAndResolveSubtypesByTypeId(
+                  config, AnnotatedClassResolver.resolveWithoutSuperTypes(config, baseType))) {
+
+        if (subType.hasName()) {
+          samples.add("{\"@type\":\"" + subType.getName() + "\"}");
+          sampleTypes.add(objectMapper.constructType(baseType));
+        }
+      }
+    }
+  }
+
+  private static void collectWebhookSamples(
+      ObjectMapper objectMapper, List<String> samples, List<JavaType> sampleTypes) {
+
+    for (WebhookTrigger trigger : WebhookTrigger.values()) {
+      samples.add("{\"trigger\":\"" + trigger + "\",\"data\":{}}");
+      sampleTypes.add(objectMapper.constructType(Webhook.class));
+    }
+  }
+
+  private static void prepareClientTypes(ObjectMapper objectMapper) {
+
+    TypeFactory typeFactory = objectMapper.getTypeFactory();
+
+    for (Class<?> resultType :
+        List.of(
+            IdentityInfo.class,
+            AttributeWrapper.class,
+            RelationshipTemplate.class,
+            QrCode.class,
+            Relationship.class,
+            Message.class,
+            LocalRequest.class,
+            FileMetaData.class)) {
+
+      JavaType single = typeFactory.constructParametricType(ResultWrapper.class, resultType);
+      JavaType list =
+          typeFactory.constructParametricType(
+              ResultWrapper.class, typeFactory.constructCollectionType(List.class, resultType));
+
+      // Creating the readers resolves and caches the root deserializers
+      objectMapper.readerFor(single);
+      objectMapper.readerFor(list);
+    }
+
+    for (JavaType requestType :
+        List.of(
+            typeFactory.constructParametricType(ContentWrapper.class, Attribute.class),
+            typeFactory.constructType(RelationshipTemplateCreation.class),
+            typeFactory.constructType(SerializedRelationshipTemplateCreation.class),
+            typeFactory.constructType(SendMessage.class),
+            typeFactory.constructType(LocalRequest.class))) {
+
+      // Creating the writers resolves and caches the root serializers
+      objectMapper.writerFor(requestType);
+    }
+  }
+
+  private static final class Holder {
+
+    private static final ObjectMapper OBJECT_MAPPER =
+        new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(new EnmeshedModelModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .disable(SerializationFeature.INDENT_OUTPUT)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .setDateFormat(new StdDateFormat().withColonInTimeZone(true));
+  }
+}
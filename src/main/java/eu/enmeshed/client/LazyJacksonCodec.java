@@ -0,0 +1,36 @@
+package eu.enmeshed.client;
+
+import feign.RequestTemplate;
+import feign.Response;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson encoder and decoder bound to {@link EnmeshedObjectMapper}. The mapper is resolved on the
+ * first request instead of when the client is configured.
+ */
+final class LazyJacksonCodec implements Encoder, Decoder {
+
+  @Override
+  public Object decode(Response response, Type type) throws IOException {
+
+    return Holder.DECODER.decode(response, type);
+  }
+
+  @Override
+  public void encode(Object object, Type bodyType, RequestTemplate template) {
+
+    Holder.ENCODER.encode(object, bodyType, template);
+  }
+
+  private static final class Holder {
+
+    private static final Decoder DECODER = new JacksonDecoder(EnmeshedObjectMapper.get());
+
+    private static final Encoder ENCODER = new JacksonEncoder(EnmeshedObjectMapper.get());
+  }
+}
@@ -0,0 +1,140 @@
+package eu.enmeshed.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import eu.enmeshed.model.attributes.values.SimpleNumberAttributeValue;
+import eu.enmeshed.model.attributes.values.SimpleStringAttributeValue;
+import eu.enmeshed.model.attributes.values.identity.AffiliationOrganization;
+import eu.enmeshed.model.attributes.values.identity.AffiliationRole;
+import eu.enmeshed.model.attributes.values.identity.AffiliationUnit;
+import eu.enmeshed.model.attributes.values.identity.BirthCity;
+import eu.enmeshed.model.attributes.values.identity.BirthCountry;
+import eu.enmeshed.model.attributes.values.identity.BirthDay;
+import eu.enmeshed.model.attributes.values.identity.BirthMonth;
+import eu.enmeshed.model.attributes.values.identity.BirthName;
+import eu.enmeshed.model.attributes.values.identity.BirthState;
+import eu.enmeshed.model.attributes.values.identity.BirthYear;
+import eu.enmeshed.model.attributes.values.identity.Citizenship;
+import eu.enmeshed.model.attributes.values.identity.City;
+import eu.enmeshed.model.attributes.values.identity.CommunicationLanguage;
+import eu.enmeshed.model.attributes.values.identity.Country;
+import eu.enmeshed.model.attributes.values.identity.DisplayName;
+import eu.enmeshed.model.attributes.values.identity.EMailAddress;
+import eu.enmeshed.model.attributes.values.identity.FaxNumber;
+import eu.enmeshed.model.attributes.values.identity.GivenName;
+import eu.enmeshed.model.attributes.values.identity.HonoricPrefix;
+import eu.enmeshed.model.attributes.values.identity.HonoricSuffix;
+import eu.enmeshed.model.attributes.values.identity.HouseNumber;
+import eu.enmeshed.model.attributes.values.identity.IdentityFileReference;
+import eu.enmeshed.model.attributes.values.identity.JobTitle;
+import eu.enmeshed.model.attributes.values.identity.MiddleName;
+import eu.enmeshed.model.attributes.values.identity.Nationality;
+import eu.enmeshed.model.attributes.values.identity.PhoneNumber;
+import eu.enmeshed.model.attributes.values.identity.Pseudonym;
+import eu.enmeshed.model.attributes.values.identity.Sex;
+import eu.enmeshed.model.attributes.values.identity.State;
+import eu.enmeshed.model.attributes.values.identity.Street;
+import eu.enmeshed.model.attributes.values.identity.Surname;
+import eu.enmeshed.model.attributes.values.identity.Website;
+import eu.enmeshed.model.attributes.values.identity.ZipCode;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Jackson module registering streaming serializers and deserializers for the attribute values of
+ * the model package that consist of a single {@code value} property. These make up the majority of
+ * the model classes, so registering them avoids reflective bean introspection for every value type
+ * that is seen for the first time. All other model classes are still handled by Jackson's bean
+ * serializers.
+ */
+public class EnmeshedModelModule extends SimpleModule {
+
+  public EnmeshedModelModule() {
+
+    super(EnmeshedModelModule.class.getSimpleName());
+
+    // Simple String Attribute Values
+    addStringAttributeValue(AffiliationOrganization.class, AffiliationOrganization::new);
+    addStringAttributeValue(AffiliationRole.class, AffiliationRole::new);
+    addStringAttributeValue(AffiliationUnit.class, AffiliationUnit::new);
+    addStringAttributeValue(BirthCity.class, BirthCity::new);
+    addStringAttributeValue(BirthCountry.class, BirthCountry::new);
+    addStringAttributeValue(BirthName.class, BirthName::new);
+    addStringAttributeValue(BirthState.class, BirthState::new);
+    addStringAttributeValue(Citizenship.class, Citizenship::new);
+    addStringAttributeValue(City.class, City::new);
+    addStringAttributeValue(CommunicationLanguage.class, CommunicationLanguage::new);
+    addStringAttributeValue(Country.class, Country::new);
+    addStringAttributeValue(DisplayName.class, DisplayName::new);
+    addStringAttributeValue(EMailAddress.class, EMailAddress::new);
+    addStringAttributeValue(FaxNumber.class, FaxNumber::new);
+    addStringAttributeValue(GivenName.class, GivenName::new);
+    addStringAttributeValue(HonoricPrefix.class, HonoricPrefix::new);
+    addStringAttributeValue(HonoricSuffix.class, HonoricSuffix::new);
+    addStringAttributeValue(HouseNumber.class, HouseNumber::new);
+    addStringAttributeValue(IdentityFileReference.class, IdentityFileReference::new);
+    addStringAttributeValue(JobTitle.class, JobTitle::new);
+    addStringAttributeValue(MiddleName.class, MiddleName::new);
+    addStringAttributeValue(Nationality.class, Nationality::new);
+    addStringAttributeValue(PhoneNumber.class, PhoneNumber::new);
+    addStringAttributeValue(Pseudonym.class, Pseudonym::new);
+    addStringAttributeValue(Sex.class, Sex::new);
+    addStringAttributeValue(State.class, State::new);
+    addStringAttributeValue(Street.class, Street::new);
+    addStringAttributeValue(Surname.class, Surname::new);
+    addStringAttributeValue(Website.class, Website::new);
+    addStringAttributeValue(ZipCode.class, ZipCode::new);
+
+    // Simple Number Attribute Values
+    addNumberAttributeValue(BirthDay.class, BirthDay::new);
+    addNumberAttributeValue(BirthMonth.class, BirthMonth::new);
+    addNumberAttributeValue(BirthYear.class, BirthYear::new);
+  }
+
+  private <T extends SimpleStringAttributeValue> void addStringAttributeValue(
+      Class<T> type, Supplier<T> factory) {
+
+    addSerializer(
+        type,
+        new SingleValueSerializer<>(
+            type, SimpleStringAttributeValue::getValue, JsonGenerator::writeString));
+    addDeserializer(
+        type,
+        new SingleValueDeserializer<>(
+            type, factory, SimpleStringAttributeValue::setValue, EnmeshedModelModule::readString));
+  }
+
+  private <T extends SimpleNumberAttributeValue> void addNumberAttributeValue(
+      Class<T> type, Supplier<T> factory) {
+
+    addSerializer(
+        type,
+        new SingleValueSerializer<>(
+            type, SimpleNumberAttributeValue::getValue, JsonGenerator::writeNumber));
+    addDeserializer(
+        type,
+        new SingleValueDeserializer<>(
+            type, factory, SimpleNumberAttributeValue::setValue, EnmeshedModelModule::readInteger));
+  }
+
+  private static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+    return switch (p.currentToken()) {
+      case VALUE_STRING -> p.getText();
+      case VALUE_NULL -> null;
+      default -> ctxt.readValue(p, String.class);
+    };
+  }
+
+  private static Integer readInteger(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+    if (p.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+      return p.getIntValue();
+    }
+
+    return p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Integer.class);
+  }
+}
@@ -0,0 +1,61 @@
+package eu.enmeshed.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Streaming deserializer for attribute values consisting of a single {@code value} property.
+ * Instances are created through a constructor reference instead of reflective bean introspection.
+ * The type id has already been consumed by the polymorphic type handling of the base class.
+ */
+final class SingleValueDeserializer<T, V> extends StdDeserializer<T> {
+
+  private final transient Supplier<T> factory;
+
+  private final transient BiConsumer<T, V> setter;
+
+  private final transient ValueReader<V> valueReader;
+
+  SingleValueDeserializer(
+      Class<T> type, Supplier<T> factory, BiConsumer<T, V> setter, ValueReader<V> valueReader) {
+    super(type);
+    this.factory = factory;
+    this.setter = setter;
+    this.valueReader = valueReader;
+  }
+
+  @Override
+  public T deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+    T attributeValue = factory.get();
+
+    JsonToken token = p.currentToken();
+    if (token == JsonToken.START_OBJECT) {
+      token = p.nextToken();
+    }
+
+    for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+      String propertyName = p.currentName();
+      p.nextToken();
+
+      if (SingleValueSerializer.VALUE_PROPERTY.equals(propertyName)) {
+        setter.accept(attributeValue, valueReader.read(p, ctxt));
+      } else {
+        ctxt.handleUnknownProperty(p, this, attributeValue, propertyName);
+      }
+    }
+
+    return attributeValue;
+  }
+
+  @FunctionalInterface
+  interface ValueReader<V> {
+
+    V read(JsonParser p, DeserializationContext ctxt) throws IOException;
+  }
+}
@@ -0,0 +1,77 @@
+package eu.enmeshed.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Streaming serializer for attribute values consisting of a single {@code value} property. Writes
+ * the same JSON as the reflective bean serializer without introspecting the class.
+ */
+final class SingleValueSerializer<T, V> extends StdSerializer<T> {
+
+  static final String VALUE_PROPERTY = "value";
+
+  private final transient Function<T, V> getter;
+
+  private final transient ValueWriter<V> valueWriter;
+
+  SingleValueSerializer(Class<T> type, Function<T, V> getter, ValueWriter<V> valueWriter) {
+    super(type);
+    this.getter = getter;
+    this.valueWriter = valueWriter;
+  }
+
+  @Override
+  public void serialize(T attributeValue, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+
+    gen.writeStartObject(attributeValue);
+    writeProperties(attributeValue, gen, provider);
+    gen.writeEndObject();
+  }
+
+  @Override
+  public void serializeWithType(
+      T attributeValue, JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+      throws IOException {
+
+    WritableTypeId typeId =
+        typeSer.writeTypePrefix(gen, typeSer.typeId(attributeValue, JsonToken.START_OBJECT));
+    writeProperties(attributeValue, gen, provider);
+    typeSer.writeTypeSuffix(gen, typeId);
+  }
+
+  private void writeProperties(T attributeValue, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+
+    V value = getter.apply(attributeValue);
+
+    if (value != null) {
+      gen.writeFieldName(VALUE_PROPERTY);
+      valueWriter.write(gen, value);
+    } else if (includesNulls(provider)) {
+      gen.writeNullField(VALUE_PROPERTY);
+    }
+  }
+
+  private boolean includesNulls(SerializerProvider provider) {
+
+    JsonInclude.Include inclusion =
+        provider.getConfig().getDefaultPropertyInclusion(handledType()).getValueInclusion();
+
+    return inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS;
+  }
+
+  @FunctionalInterface
+  interface ValueWriter<V> {
+
+    void write(JsonGenerator gen, V value) throws IOException;
+  }
+}
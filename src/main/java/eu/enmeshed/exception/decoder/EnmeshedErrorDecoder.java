@@ -1,31 +1,84 @@
 package eu.enmeshed.exception.decoder;
 
-import feign.Request;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+
 import feign.Response;
 import feign.RetryableException;
+import feign.Util;
 import feign.codec.ErrorDecoder;
+import java.io.IOException;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class EnmeshedErrorDecoder implements ErrorDecoder {
 
+  private static final Long RETRY_AFTER_MILLIS = 1000L;
+
+  private final Set<Integer> expectedStatuses;
+
+  public EnmeshedErrorDecoder() {
+    this(Set.of(HTTP_NOT_FOUND));
+  }
+
+  /**
+   * @param expectedStatuses Statuses that are an expected outcome of a call. They are decoded to a
+   *     {@link StacklessRetryableException} and only logged at debug level.
+   */
+  public EnmeshedErrorDecoder(Set<Integer> expectedStatuses) {
+    this.expectedStatuses = Set.copyOf(expectedStatuses);
+  }
+
   @Override
   public Exception decode(String methodKey, Response response) {
-    log.info("Response error with status {} and reason {}", response.status(), response.reason());
 
     int responseStatus = response.status();
     String responseReason = response.reason();
+
+    if (expectedStatuses.contains(responseStatus)) {
+      log.debug(
+          "Throw the StacklessRetryableException from a response error with status {} and reason {}",
+          responseStatus,
+          responseReason);
+
+      return new StacklessRetryableException(
+          responseStatus,
+          responseReason,
+          response.request().httpMethod(),
+          RETRY_AFTER_MILLIS,
+          response.request());
+    }
+
     log.info(
         "Throw the RetryableException from a response error with status {} and reason {}",
         responseStatus,
         responseReason);
 
+    // Kept in the exception, so callers can tell from the connector error what was rejected. The
+    // body of expected statuses is not read, they are answered by thousands for unknown ids.
+    byte[] responseBody = readBody(response);
+
     return new RetryableException(
         responseStatus,
         responseReason,
-        Request.HttpMethod.valueOf(response.request().httpMethod().name()),
-        null,
-        1000L,
-        response.request());
+        response.request().httpMethod(),
+        RETRY_AFTER_MILLIS,
+        response.request(),
+        responseBody,
+        response.headers());
+  }
+
+  private static byte[] readBody(Response response) {
+
+    if (response.body() == null) {
+      return null;
+    }
+
+    try {
+      return Util.toByteArray(response.body().asInputStream());
+    } catch (IOException e) {
+      log.debug("Could not read the body of the error response", e);
+      return null;
+    }
   }
 }
@@ -0,0 +1,22 @@
+package eu.enmeshed.exception.decoder;
+
+import feign.Request;
+import feign.RetryableException;
+
+/**
+ * RetryableException for error responses that are an expected outcome of a call (e.g. 404 for an
+ * unknown id). The stack trace is not captured, since it only points into the Feign proxy and
+ * filling it in dominates the cost of the exception.
+ */
+public class StacklessRetryableException extends RetryableException {
+
+  public StacklessRetryableException(
+      int status, String message, Request.HttpMethod httpMethod, Long retryAfter, Request request) {
+    super(status, message, httpMethod, retryAfter, request);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
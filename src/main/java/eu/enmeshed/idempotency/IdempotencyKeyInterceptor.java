@@ -0,0 +1,34 @@
+package eu.enmeshed.idempotency;
+
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import java.util.UUID;
+
+/**
+ * Adds a random idempotency key to every POST request which does not carry one yet. Feign applies
+ * the interceptors to the same request template for every retry of a call, so all attempts of a
+ * call carry the same key. Generated keys start with {@value #GENERATED_KEY_PREFIX}, so they can be
+ * told apart from keys chosen by the application.
+ */
+public class IdempotencyKeyInterceptor implements RequestInterceptor {
+
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+  static final String GENERATED_KEY_PREFIX = "enmeshed-sdk-";
+
+  @Override
+  public void apply(RequestTemplate template) {
+
+    if (Request.HttpMethod.POST.name().equals(template.method())
+        && !template.headers().containsKey(IDEMPOTENCY_KEY_HEADER)) {
+      template.header(IDEMPOTENCY_KEY_HEADER, GENERATED_KEY_PREFIX + UUID.randomUUID());
+    }
+  }
+
+  /** Returns whether the key was generated for a single call instead of chosen by the caller. */
+  static boolean isGenerated(String idempotencyKey) {
+
+    return idempotencyKey.startsWith(GENERATED_KEY_PREFIX);
+  }
+}
@@ -0,0 +1,279 @@
+package eu.enmeshed.idempotency;
+
+import static eu.enmeshed.idempotency.IdempotencyKeyInterceptor.IDEMPOTENCY_KEY_HEADER;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client which deduplicates requests by their idempotency key. The successful responses of recently
+ * completed keys are kept in a bounded table, a request with a completed key gets the stored
+ * response instead of being sent again. A request whose key is in flight waits for the running
+ * request and shares its response, so hedged duplicates are sent once.
+ *
+ * <p>Failed and unsuccessful requests are not stored, a later attempt with the same key is sent
+ * again and carries the same {@value IdempotencyKeyInterceptor#IDEMPOTENCY_KEY_HEADER} header.
+ * Whether an attempt whose response was lost (e.g. a read timeout) is applied twice then depends on
+ * the connector, or a proxy in front of it, honoring the header.
+ *
+ * <p>Keys are scoped to the method and URL of the request. Reusing a key for another body of the
+ * same endpoint fails with an {@link IllegalArgumentException} instead of returning the response of
+ * the other request.
+ *
+ * <p>Requests without idempotency key, or with a key generated by the {@link
+ * IdempotencyKeyInterceptor}, are passed through: a generated key is only repeated by the retries
+ * of one call, which are sent after the previous attempt failed, so there is nothing to share.
+ */
+@Slf4j
+public class IdempotentClient implements Client {
+
+  private static final int CAPACITY_DEFAULT = 1024;
+  private static final Duration RETENTION_DEFAULT = Duration.ofMinutes(10);
+
+  private final Client delegate;
+
+  private final int capacity;
+
+  private final long retentionNanos;
+
+  private final Map<RequestKey, InFlight> inFlight = new ConcurrentHashMap<>();
+
+  /** Completed keys in the order of their completion, guarded by itself. */
+  private final LinkedHashMap<RequestKey, StoredResponse> completed = new LinkedHashMap<>();
+
+  public IdempotentClient(Client delegate) {
+    this(delegate, CAPACITY_DEFAULT, RETENTION_DEFAULT);
+  }
+
+  /**
+   * @param delegate Client sending the requests
+   * @param capacity Maximum number of completed keys kept, the oldest are evicted first
+   * @param retention How long the response of a completed key is kept
+   */
+  public IdempotentClient(Client delegate, int capacity, Duration retention) {
+
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+
+    this.delegate = delegate;
+    this.capacity = capacity;
+    this.retentionNanos = retention.toNanos();
+  }
+
+  @Override
+  public Response execute(Request request, Request.Options options) throws IOException {
+
+    String idempotencyKey = idempotencyKey(request);
+    if (idempotencyKey == null || IdempotencyKeyInterceptor.isGenerated(idempotencyKey)) {
+      return delegate.execute(request, options);
+    }
+
+    RequestKey key = new RequestKey(request.httpMethod(), request.url(), idempotencyKey);
+    byte[] bodyHash = bodyHash(request);
+
+    while (true) {
+      StoredResponse stored = lookup(key);
+      if (stored != null) {
+        checkSameBody(key, stored.bodyHash(), bodyHash);
+        log.debug(
+            "Answering request with idempotency key {} from the completed requests",
+            idempotencyKey);
+        return stored.toResponse(request);
+      }
+
+      InFlight own = new InFlight(bodyHash, new CompletableFuture<>());
+      InFlight running = inFlight.putIfAbsent(key, own);
+      if (running == null) {
+        return send(key, own, request, options);
+      }
+
+      checkSameBody(key, running.bodyHash(), bodyHash);
+
+      // Wait for the running request, if it does not succeed, this request is sent on its own
+      StoredResponse shared = running.response().handle((response, e) -> response).join();
+      if (shared != null) {
+        return shared.toResponse(request);
+      }
+    }
+  }
+
+  /** Returns the number of completed keys in the table. */
+  public int size() {
+
+    synchronized (completed) {
+      evictExpired(System.nanoTime());
+      return completed.size();
+    }
+  }
+
+  private Response send(RequestKey key, InFlight own, Request request, Request.Options options)
+      throws IOException {
+
+    try {
+      Response response = delegate.execute(request, options);
+
+      if (response.status() < 200 || response.status() >= 300) {
+        own.response().complete(null);
+        return response;
+      }
+
+      StoredResponse stored = StoredResponse.of(response, own.bodyHash());
+      store(key, stored);
+      own.response().complete(stored);
+      return stored.toResponse(request);
+    } catch (IOException | RuntimeException e) {
+      own.response().completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  private StoredResponse lookup(RequestKey key) {
+
+    synchronized (completed) {
+      evictExpired(System.nanoTime());
+      return completed.get(key);
+    }
+  }
+
+  private void store(RequestKey key, StoredResponse stored) {
+
+    synchronized (completed) {
+      completed.remove(key);
+      completed.put(key, stored);
+      if (completed.size() > capacity) {
+        Iterator<RequestKey> eldest = completed.keySet().iterator();
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+
+  private void evictExpired(long now) {
+
+    Iterator<StoredResponse> iterator = completed.values().iterator();
+    while (iterator.hasNext() && now - iterator.next().completedAtNanos() > retentionNanos) {
+      iterator.remove();
+    }
+  }
+
+  private static String idempotencyKey(Request request) {
+
+    for (Map.Entry<String, Collection<String>> header : request.headers().entrySet()) {
+      if (IDEMPOTENCY_KEY_HEADER.equalsIgnoreCase(header.getKey())
+          && !header.getValue().isEmpty()) {
+        return header.getValue().iterator().next();
+      }
+    }
+    return null;
+  }
+
+  private static void checkSameBody(RequestKey key, byte[] bodyHash, byte[] otherBodyHash) {
+
+    if (!MessageDigest.isEqual(bodyHash, otherBodyHash)) {
+      throw new IllegalArgumentException(
+          "Idempotency key "
+              + key.idempotencyKey()
+              + " was already used for another request to "
+              + key.url());
+    }
+  }
+
+  /**
+   * Hashes the body of a request. The random boundary of multipart bodies is left out, so repeated
+   * uploads of the same file match.
+   */
+  private static byte[] bodyHash(Request request) {
+
+    byte[] body = request.body() == null ? new byte[0] : request.body();
+    String boundary = multipartBoundary(request);
+    if (boundary != null) {
+      body =
+          new String(body, StandardCharsets.ISO_8859_1)
+              .replace(boundary, "")
+              .getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(body);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static String multipartBoundary(Request request) {
+
+    for (Map.Entry<String, Collection<String>> header : request.headers().entrySet()) {
+      if ("Content-Type".equalsIgnoreCase(header.getKey())) {
+        for (String contentType : header.getValue()) {
+          int boundary = contentType.indexOf("boundary=");
+          if (boundary >= 0) {
+            return contentType.substring(boundary + "boundary=".length());
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Idempotency keys are scoped to the endpoint they are sent to. */
+  private record RequestKey(Request.HttpMethod method, String url, String idempotencyKey) {}
+
+  private record InFlight(byte[] bodyHash, CompletableFuture<StoredResponse> response) {}
+
+  private record StoredResponse(
+      int status,
+      String reason,
+      Map<String, Collection<String>> headers,
+      byte[] body,
+      byte[] bodyHash,
+      long completedAtNanos) {
+
+    private static StoredResponse of(Response response, byte[] bodyHash) throws IOException {
+
+      try (response) {
+        byte[] body = new byte[0];
+        if (response.body() != null) {
+          try (InputStream inputStream = response.body().asInputStream()) {
+            body = Util.toByteArray(inputStream);
+          }
+        }
+        return new StoredResponse(
+            response.status(),
+            response.reason(),
+            response.headers(),
+            body,
+            bodyHash,
+            System.nanoTime());
+      }
+    }
+
+    private Response toResponse(Request request) {
+
+      return Response.builder()
+          .status(status)
+          .reason(reason)
+          .headers(headers)
+          .body(body)
+          .request(request)
+          .build();
+    }
+  }
+}
@@ -1,67 +1,120 @@
 package eu.enmeshed.model.event;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-
+import eu.enmeshed.model.attributes.LocalAttribute;
+import eu.enmeshed.model.messaging.Message;
+import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
+import eu.enmeshed.model.relationships.Relationship;
+import eu.enmeshed.model.request.LocalRequest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+@Getter
 public enum WebhookTrigger {
   @JsonProperty(WebhookTriggerNames.Consumption.ATTRIBUTE_CREATED)
-  CONSUMPTION__ATTRIBUTE_CREATED,
+  CONSUMPTION__ATTRIBUTE_CREATED(
+      WebhookTriggerNames.Consumption.ATTRIBUTE_CREATED, LocalAttribute.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.ATTRIBUTE_DELETED)
-  CONSUMPTION__ATTRIBUTE_DELETED,
+  CONSUMPTION__ATTRIBUTE_DELETED(
+      WebhookTriggerNames.Consumption.ATTRIBUTE_DELETED, LocalAttribute.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.ATTRIBUTE_SUCCEEDED)
-  CONSUMPTION__ATTRIBUTE_SUCCEEDED,
+  CONSUMPTION__ATTRIBUTE_SUCCEEDED(
+      WebhookTriggerNames.Consumption.ATTRIBUTE_SUCCEEDED, LocalAttribute.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.ATTRIBUTE_UPDATED)
-  CONSUMPTION__ATTRIBUTE_UPDATED,
+  CONSUMPTION__ATTRIBUTE_UPDATED(
+      WebhookTriggerNames.Consumption.ATTRIBUTE_UPDATED, LocalAttribute.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.INCOMING_REQUEST_RECEIVED)
-  CONSUMPTION__INCOMING_REQUEST_RECEIVED,
+  CONSUMPTION__INCOMING_REQUEST_RECEIVED(
+      WebhookTriggerNames.Consumption.INCOMING_REQUEST_RECEIVED, LocalRequest.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.INCOMING_REQUEST_STATUS_CHANGED)
-  CONSUMPTION__INCOMING_REQUEST_STATUS_CHANGED,
+  CONSUMPTION__INCOMING_REQUEST_STATUS_CHANGED(
+      WebhookTriggerNames.Consumption.INCOMING_REQUEST_STATUS_CHANGED,
+      RequestStatusChangedEventData.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.MESSAGE_PROCESSED)
-  CONSUMPTION__MESSAGE_PROCESSED,
+  CONSUMPTION__MESSAGE_PROCESSED(
+      WebhookTriggerNames.Consumption.MESSAGE_PROCESSED, MessageProcessedEventData.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.OUTGOING_REQUEST_CREATED)
-  CONSUMPTION__OUTGOING_REQUEST_CREATED,
+  CONSUMPTION__OUTGOING_REQUEST_CREATED(
+      WebhookTriggerNames.Consumption.OUTGOING_REQUEST_CREATED, LocalRequest.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.OUTGOING_REQUEST_CREATED_AND_COMPLETED)
-  CONSUMPTION__OUTGOING_REQUEST_CREATED_AND_COMPLETED,
+  CONSUMPTION__OUTGOING_REQUEST_CREATED_AND_COMPLETED(
+      WebhookTriggerNames.Consumption.OUTGOING_REQUEST_CREATED_AND_COMPLETED, LocalRequest.class),
 
   @JsonProperty(
       WebhookTriggerNames.Consumption
           .OUTGOING_REQUEST_FROM_RELATIONSHIP_CREATION_CHANGE_CREATED_AND_COMPLETED)
-  CONSUMPTION__OUTGOING_REQUEST_FROM_RELATIONSHIP_CREATION_CHANGE_CREATED_AND_COMPLETED,
+  CONSUMPTION__OUTGOING_REQUEST_FROM_RELATIONSHIP_CREATION_CHANGE_CREATED_AND_COMPLETED(
+      WebhookTriggerNames.Consumption
+          .OUTGOING_REQUEST_FROM_RELATIONSHIP_CREATION_CHANGE_CREATED_AND_COMPLETED,
+      LocalRequest.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.OUTGOING_REQUEST_STATUS_CHANGED)
-  CONSUMPTION__OUTGOING_REQUEST_STATUS_CHANGED,
+  CONSUMPTION__OUTGOING_REQUEST_STATUS_CHANGED(
+      WebhookTriggerNames.Consumption.OUTGOING_REQUEST_STATUS_CHANGED,
+      RequestStatusChangedEventData.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.RELATIONSHIP_TEMPLATE_PROCESSED)
-  CONSUMPTION__RELATIONSHIP_TEMPLATE_PROCESSED,
+  CONSUMPTION__RELATIONSHIP_TEMPLATE_PROCESSED(
+      WebhookTriggerNames.Consumption.RELATIONSHIP_TEMPLATE_PROCESSED,
+      RelationshipTemplateProcessedEventData.class),
 
   @JsonProperty(WebhookTriggerNames.Consumption.SHARED_ATTRIBUTE_COPY_CREATED)
-  CONSUMPTION__SHARED_ATTRIBUTE_COPY_CREATED,
+  CONSUMPTION__SHARED_ATTRIBUTE_COPY_CREATED(
+      WebhookTriggerNames.Consumption.SHARED_ATTRIBUTE_COPY_CREATED, LocalAttribute.class),
 
   @JsonProperty(WebhookTriggerNames.Transport.MESSAGE_RECEIVED)
-  TRANSPORT__MESSAGE_RECEIVED,
+  TRANSPORT__MESSAGE_RECEIVED(WebhookTriggerNames.Transport.MESSAGE_RECEIVED, Message.class),
 
   @JsonProperty(WebhookTriggerNames.Transport.MESSAGE_SENT)
-  TRANSPORT__MESSAGE_SENT,
+  TRANSPORT__MESSAGE_SENT(WebhookTriggerNames.Transport.MESSAGE_SENT, Message.class),
 
   @JsonProperty(WebhookTriggerNames.Transport.PEER_RELATIONSHIP_TEMPLATE_LOADED)
-  TRANSPORT__PEER_RELATIONSHIP_TEMPLATE_LOADED,
+  TRANSPORT__PEER_RELATIONSHIP_TEMPLATE_LOADED(
+      WebhookTriggerNames.Transport.PEER_RELATIONSHIP_TEMPLATE_LOADED, RelationshipTemplate.class),
 
   @JsonProperty(WebhookTriggerNames.Transport.RELATIONSHIP_CHANGED)
-  TRANSPORT__RELATIONSHIP_CHANGED;
+  TRANSPORT__RELATIONSHIP_CHANGED(
+      WebhookTriggerNames.Transport.RELATIONSHIP_CHANGED, Relationship.class);
+
+  private static final Map<String, WebhookTrigger> TRIGGERS_BY_VALUE =
+      Arrays.stream(values())
+          .collect(Collectors.toUnmodifiableMap(WebhookTrigger::getValue, Function.identity()));
+
+  /** Trigger name as sent by the connector, e.g. {@code consumption.attributeCreated}. */
+  private final String value;
+
+  /** Type of {@link Webhook#getData()} for this trigger. */
+  private final Class<? extends WebhookData> dataType;
+
+  WebhookTrigger(String value, Class<? extends WebhookData> dataType) {
+    this.value = value;
+    this.dataType = dataType;
+  }
+
+  /**
+   * Looks up the trigger for the trigger name sent by the connector.
+   *
+   * @param value Trigger name, e.g. {@code consumption.attributeCreated}
+   * @return the trigger or an empty Optional if the name is unknown
+   */
+  public static Optional<WebhookTrigger> fromValue(String value) {
+    return Optional.ofNullable(value).map(TRIGGERS_BY_VALUE::get);
+  }
 
   @Override
   public String toString() {
-    try {
-      return WebhookTrigger.class.getField(this.name()).getAnnotation(JsonProperty.class).value();
-    } catch (NoSuchFieldException e) {
-      return null;
-    }
+    return value;
   }
 }
@@ -0,0 +1,27 @@
+package eu.enmeshed.model.relationshipTemplates;
+
+import com.fasterxml.jackson.databind.util.RawValue;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Same as {@link RelationshipTemplateCreation}, but with content that is already serialized to
+ * JSON. The content is written as is, so it can be serialized once and reused for many templates.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class SerializedRelationshipTemplateCreation {
+
+  private RawValue content;
+
+  private Integer maxNumberOfAllocations;
+
+  private ZonedDateTime expiresAt;
+}
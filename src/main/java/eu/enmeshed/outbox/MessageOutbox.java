@@ -0,0 +1,373 @@
+package eu.enmeshed.outbox;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.model.messaging.Message;
+import eu.enmeshed.model.messaging.SendMessage;
+import eu.enmeshed.model.request.LocalRequest;
+import eu.enmeshed.model.request.Request;
+import eu.enmeshed.outbox.OutboxJournal.Entry;
+import eu.enmeshed.outbox.OutboxJournal.RecordType;
+import feign.FeignException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable outbox for messages and requests. {@link #send(SendMessage)} and {@link
+ * #sendRequest(LocalRequest)} only append the payload to a local journal and return a {@link
+ * Delivery} handle, a background worker then delivers the entries to the connector and retries
+ * failed deliveries with an exponential backoff. Entries which were not delivered when the process
+ * stopped are delivered by the next outbox opened on the same journal file.
+ *
+ * <p>Delivery is at least once: an entry delivered right before a crash, whose delivered record was
+ * not yet written, is delivered again. A request is created before it is sent, the created request
+ * is journaled in between, so a retry does not create a second request.
+ *
+ * <p>The worker delivers one entry at a time. It uses the client calls without retries and retries
+ * on its own, so an attempt blocks the worker no longer than one connector call. With {@link
+ * FsyncPolicy#INTERVAL} the journal is forced on a thread of its own, independent of deliveries.
+ */
+@Slf4j
+public class MessageOutbox implements AutoCloseable {
+
+  private static final Duration FSYNC_INTERVAL_DEFAULT = Duration.ofSeconds(1);
+  private static final int MAX_ATTEMPTS_DEFAULT = 10;
+  private static final Duration INITIAL_BACKOFF_DEFAULT = Duration.ofSeconds(1);
+  private static final long MAX_BACKOFF_MILLIS = Duration.ofMinutes(5).toMillis();
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+  private final EnmeshedClient enmeshedClient;
+
+  private final OutboxJournal journal;
+
+  private final FsyncPolicy fsyncPolicy;
+
+  private final int maxAttempts;
+
+  private final long initialBackoffMillis;
+
+  private final ScheduledExecutorService worker;
+
+  /** Forces the journal with {@link FsyncPolicy#INTERVAL}, null with the other policies. */
+  private final ScheduledExecutorService fsyncScheduler;
+
+  private final Map<Long, Delivery> deliveries = new ConcurrentHashMap<>();
+
+  private volatile boolean closed;
+
+  public MessageOutbox(EnmeshedClient enmeshedClient, Path journalFile) throws IOException {
+    this(
+        enmeshedClient,
+        journalFile,
+        FsyncPolicy.INTERVAL,
+        FSYNC_INTERVAL_DEFAULT,
+        MAX_ATTEMPTS_DEFAULT,
+        INITIAL_BACKOFF_DEFAULT);
+  }
+
+  /**
+   * Opens the outbox and starts delivering the entries left in the journal by a previous outbox.
+   *
+   * @param journalFile File of the journal, created if it does not exist. A journal file must not
+   *     be used by two outboxes at the same time.
+   * @param fsyncPolicy When appended entries are forced to the storage device
+   * @param fsyncInterval Interval of {@link FsyncPolicy#INTERVAL}, ignored by the other policies
+   * @param maxAttempts Number of delivery attempts of an entry before its delivery fails
+   * @param initialBackoff Delay before the second attempt, doubled for every further attempt up to
+   *     5 minutes
+   */
+  public MessageOutbox(
+      EnmeshedClient enmeshedClient,
+      Path journalFile,
+      FsyncPolicy fsyncPolicy,
+      Duration fsyncInterval,
+      int maxAttempts,
+      Duration initialBackoff)
+      throws IOException {
+
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be positive");
+    }
+
+    this.enmeshedClient = enmeshedClient;
+    this.fsyncPolicy = fsyncPolicy;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMillis = initialBackoff.toMillis();
+    this.journal = OutboxJournal.open(journalFile);
+
+    this.worker = newDaemonScheduler("enmeshed-outbox");
+
+    if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+      this.fsyncScheduler = newDaemonScheduler("enmeshed-outbox-fsync");
+      fsyncScheduler.scheduleWithFixedDelay(
+          journal::force,
+          fsyncInterval.toMillis(),
+          fsyncInterval.toMillis(),
+          TimeUnit.MILLISECONDS);
+    } else {
+      this.fsyncScheduler = null;
+    }
+
+    List<Entry> entries = journal.entries();
+    if (!entries.isEmpty()) {
+      log.info("Delivering {} entries left in the outbox journal {}", entries.size(), journalFile);
+    }
+    for (Entry entry : entries) {
+      submit(entry);
+    }
+  }
+
+  /**
+   * Journals a message for delivery.
+   *
+   * @return Handle completed with the sent message
+   * @throws IOException if the message could not be journaled
+   */
+  public Delivery send(SendMessage message) throws IOException {
+
+    return enqueue(RecordType.MESSAGE, message);
+  }
+
+  /**
+   * Journals a request for delivery. The request is created as outgoing request and then sent to
+   * its peer in a message.
+   *
+   * @param request Request with the peer it is sent to
+   * @return Handle completed with the sent message, its content is the created request
+   * @throws IOException if the request could not be journaled
+   */
+  public Delivery sendRequest(LocalRequest request) throws IOException {
+
+    if (request.getPeer() == null) {
+      throw new IllegalArgumentException("The request has no peer to send it to");
+    }
+
+    return enqueue(RecordType.REQUEST, request);
+  }
+
+  /** Returns the handles of the entries which are not delivered yet, including replayed ones. */
+  public List<Delivery> getPendingDeliveries() {
+
+    return new ArrayList<>(deliveries.values());
+  }
+
+  /** Returns the number of journaled entries which are not delivered yet. */
+  public int getPendingCount() {
+
+    return journal.size();
+  }
+
+  /**
+   * Stops the worker and closes the journal. Entries which are not delivered stay in the journal,
+   * their handles are cancelled.
+   */
+  @Override
+  public void close() {
+
+    closed = true;
+    worker.shutdownNow();
+    if (fsyncScheduler != null) {
+      fsyncScheduler.shutdownNow();
+    }
+
+    try {
+      if (!worker.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("The outbox worker did not stop within {} s", CLOSE_TIMEOUT_SECONDS);
+      }
+      if (fsyncScheduler != null
+          && !fsyncScheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("The outbox fsync did not stop within {} s", CLOSE_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      journal.close();
+    } catch (IOException e) {
+      log.warn("Closing the outbox journal failed: {}", e.getMessage());
+    }
+
+    deliveries.values().forEach(delivery -> delivery.result().cancel(false));
+    deliveries.clear();
+  }
+
+  private Delivery enqueue(RecordType type, Object payload) throws IOException {
+
+    if (closed) {
+      throw new IllegalStateException("The outbox is closed");
+    }
+
+    byte[] bytes = EnmeshedObjectMapper.get().writeValueAsBytes(payload);
+    long sequence = journal.append(type, bytes);
+
+    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+      journal.force();
+    }
+
+    return submit(new Entry(sequence, type, bytes));
+  }
+
+  private Delivery submit(Entry entry) {
+
+    Delivery delivery = new Delivery(entry.sequence(), new CompletableFuture<>());
+    deliveries.put(entry.sequence(), delivery);
+    worker.execute(() -> deliver(entry, 1));
+    return delivery;
+  }
+
+  private void deliver(Entry entry, int attempt) {
+
+    Delivery delivery = deliveries.get(entry.sequence());
+    if (delivery == null) {
+      return;
+    }
+
+    Entry current = entry;
+    Message message;
+
+    try {
+      if (current.type() == RecordType.REQUEST) {
+        current = createRequest(current);
+      }
+
+      message =
+          switch (current.type()) {
+            case MESSAGE ->
+                enmeshedClient
+                    .sendMessageWithoutRetry(read(current.payload(), SendMessage.class))
+                    .getResult();
+            case CREATED_REQUEST -> sendCreatedRequest(read(current.payload(), LocalRequest.class));
+            default -> throw new IllegalStateException("Unexpected entry " + current.type());
+          };
+    } catch (Exception e) {
+      retryOrFail(current, attempt, e);
+      return;
+    }
+
+    try {
+      journal.remove(entry.sequence(), RecordType.DELIVERED);
+    } catch (IOException e) {
+      log.error(
+          "Journaling the delivery of outbox entry {} failed, it is delivered again after a restart",
+          entry.sequence(),
+          e);
+    }
+
+    deliveries.remove(entry.sequence());
+    delivery.result().complete(message);
+  }
+
+  private Entry createRequest(Entry entry) throws IOException {
+
+    LocalRequest request = read(entry.payload(), LocalRequest.class);
+    Request createdRequest = enmeshedClient.createOutgoingRequest(request).getResult().getContent();
+
+    byte[] payload =
+        EnmeshedObjectMapper.get()
+            .writeValueAsBytes(
+                LocalRequest.builder().peer(request.getPeer()).content(createdRequest).build());
+    journal.update(entry.sequence(), RecordType.CREATED_REQUEST, payload);
+
+    return new Entry(entry.sequence(), RecordType.CREATED_REQUEST, payload);
+  }
+
+  private Message sendCreatedRequest(LocalRequest createdRequest) {
+
+    return enmeshedClient
+        .sendMessageWithoutRetry(
+            SendMessage.builder()
+                .recipients(List.of(createdRequest.getPeer()))
+                .content(createdRequest.getContent())
+                .build())
+        .getResult();
+  }
+
+  private void retryOrFail(Entry entry, int attempt, Exception e) {
+
+    if (closed) {
+      return;
+    }
+
+    if (isRetryable(e) && attempt < maxAttempts) {
+      long backoffMillis =
+          Math.min(initialBackoffMillis << Math.min(attempt - 1, 30), MAX_BACKOFF_MILLIS);
+      log.info(
+          "Delivery of outbox entry {} failed in attempt {}, retrying in {} ms: {}",
+          entry.sequence(),
+          attempt,
+          backoffMillis,
+          e.getMessage());
+      worker.schedule(() -> deliver(entry, attempt + 1), backoffMillis, TimeUnit.MILLISECONDS);
+      return;
+    }
+
+    log.warn("Delivery of outbox entry {} failed in attempt {}", entry.sequence(), attempt, e);
+
+    try {
+      journal.remove(entry.sequence(), RecordType.FAILED);
+    } catch (IOException journalException) {
+      log.error("Journaling the failed outbox entry {} failed", entry.sequence(), journalException);
+    }
+
+    Delivery delivery = deliveries.remove(entry.sequence());
+    if (delivery != null) {
+      delivery.result().completeExceptionally(e);
+    }
+  }
+
+  /** Connection failures, server errors, timeouts and throttling may succeed on a later attempt. */
+  private static boolean isRetryable(Exception e) {
+
+    if (!(e instanceof FeignException feignException)) {
+      return false;
+    }
+
+    int status = feignException.status();
+    return status < 400 || status >= 500 || status == 408 || status == 429;
+  }
+
+  private static ScheduledExecutorService newDaemonScheduler(String threadName) {
+
+    return Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, threadName);
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private static <T> T read(byte[] payload, Class<T> type) throws IOException {
+
+    return EnmeshedObjectMapper.get().readValue(payload, type);
+  }
+
+  /** When appended entries are forced from the page cache to the storage device. */
+  public enum FsyncPolicy {
+    /** Before {@code send} returns. Survives a crash of the machine, but costs a sync per entry. */
+    ALWAYS,
+    /** Periodically in the background. A crash of the machine loses up to one interval. */
+    INTERVAL,
+    /** Left to the operating system. Survives a crash of the process, but not of the machine. */
+    NEVER
+  }
+
+  /**
+   * Handle of a journaled entry.
+   *
+   * @param sequence Sequence of the entry in the journal
+   * @param result Completed with the sent message, or exceptionally once the delivery finally
+   *     failed
+   */
+  public record Delivery(long sequence, CompletableFuture<Message> result) {}
+}
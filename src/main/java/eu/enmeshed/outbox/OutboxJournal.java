@@ -0,0 +1,313 @@
+package eu.enmeshed.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of the outbox, written through a memory-mapped file. Every record is {@code
+ * [int bodyLength][int crc32][byte type][long sequence][payload]}, a body length of 0 marks the end
+ * of the journal. Entries are added with a payload record and removed by a later delivered or
+ * failed record of the same sequence.
+ *
+ * <p>Records are visible to a restarted process as soon as they are written, a crash of the machine
+ * only keeps what was forced. Replaying stops at the first torn record. Once most of the journal is
+ * taken by removed entries, the live entries are copied to a new file which replaces the journal.
+ */
+@Slf4j
+final class OutboxJournal implements Closeable {
+
+  private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+  private static final int BODY_HEADER_SIZE = Byte.BYTES + Long.BYTES;
+  private static final int INITIAL_CAPACITY = 1 << 20;
+  private static final int COMPACTION_MIN_BYTES = 1 << 20;
+
+  private final Path file;
+
+  private FileChannel channel;
+
+  private MappedByteBuffer buffer;
+
+  /** Write position, everything before it is forced up to {@link #forcedPosition}. */
+  private int position;
+
+  private int forcedPosition;
+
+  private long nextSequence;
+
+  /** Live entries in the order their current record was written. */
+  private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+  private long liveBytes;
+
+  private OutboxJournal(Path file) {
+    this.file = file;
+  }
+
+  /** Opens the journal at the given file, creating it if needed, and replays its entries. */
+  static OutboxJournal open(Path file) throws IOException {
+
+    OutboxJournal journal = new OutboxJournal(file);
+    journal.map(INITIAL_CAPACITY);
+    journal.replay();
+    return journal;
+  }
+
+  /** Returns the live entries in the order their current record was written. */
+  synchronized List<Entry> entries() {
+
+    return new ArrayList<>(entries.values());
+  }
+
+  synchronized int size() {
+
+    return entries.size();
+  }
+
+  /**
+   * Appends a new entry.
+   *
+   * @return Sequence of the entry
+   */
+  synchronized long append(RecordType type, byte[] payload) throws IOException {
+
+    long sequence = nextSequence++;
+    write(type, sequence, payload);
+    track(new Entry(sequence, type, payload));
+    return sequence;
+  }
+
+  /** Replaces the type and payload of a live entry, e.g. once its first delivery step is done. */
+  synchronized void update(long sequence, RecordType type, byte[] payload) throws IOException {
+
+    if (entries.containsKey(sequence)) {
+      write(type, sequence, payload);
+      untrack(sequence);
+      track(new Entry(sequence, type, payload));
+    }
+  }
+
+  /** Removes a live entry by appending the given delivered or failed record. */
+  synchronized void remove(long sequence, RecordType type) throws IOException {
+
+    if (entries.containsKey(sequence)) {
+      write(type, sequence, new byte[0]);
+      untrack(sequence);
+
+      if (position >= COMPACTION_MIN_BYTES && liveBytes * 2 < position) {
+        compact();
+      }
+    }
+  }
+
+  /** Forces the records written since the last call to the storage device. */
+  synchronized void force() {
+
+    if (buffer != null && forcedPosition < position) {
+      buffer.force(forcedPosition, position - forcedPosition);
+      forcedPosition = position;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+
+    force();
+    buffer = null;
+    channel.close();
+  }
+
+  private void track(Entry entry) {
+
+    entries.put(entry.sequence(), entry);
+    liveBytes += recordSize(entry.payload());
+  }
+
+  private void untrack(long sequence) {
+
+    Entry entry = entries.remove(sequence);
+    liveBytes -= recordSize(entry.payload());
+  }
+
+  private void write(RecordType type, long sequence, byte[] payload) throws IOException {
+
+    if (buffer == null) {
+      throw new IOException("Outbox journal " + file + " is closed");
+    }
+
+    int size = recordSize(payload);
+    if ((long) position + size + RECORD_HEADER_SIZE > buffer.capacity()) {
+      map(Math.max((long) buffer.capacity() * 2, (long) position + size + RECORD_HEADER_SIZE));
+    }
+
+    byte[] body = body(type, sequence, payload);
+
+    // The length is written last, so a torn record is never read as complete
+    buffer.put(position + RECORD_HEADER_SIZE, body);
+    buffer.putInt(position + Integer.BYTES, checksum(body));
+    buffer.putInt(position, body.length);
+    position += size;
+  }
+
+  private void replay() {
+
+    while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      int bodyLength = buffer.getInt(position);
+      if (bodyLength < BODY_HEADER_SIZE
+          || (long) position + RECORD_HEADER_SIZE + bodyLength > buffer.capacity()) {
+        break;
+      }
+
+      byte[] body = new byte[bodyLength];
+      buffer.get(position + RECORD_HEADER_SIZE, body);
+      if (checksum(body) != buffer.getInt(position + Integer.BYTES)) {
+        log.warn("Outbox journal {} ends with a torn record at {}", file, position);
+        break;
+      }
+
+      ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+      RecordType type = RecordType.of(bodyBuffer.get());
+      long sequence = bodyBuffer.getLong();
+      byte[] payload = new byte[bodyBuffer.remaining()];
+      bodyBuffer.get(payload);
+
+      if (type == null) {
+        log.warn("Outbox journal {} contains an unknown record at {}", file, position);
+      } else {
+        if (entries.containsKey(sequence)) {
+          untrack(sequence);
+        }
+        if (!type.isRemoval()) {
+          track(new Entry(sequence, type, payload));
+        }
+      }
+
+      nextSequence = Math.max(nextSequence, sequence + 1);
+      position += RECORD_HEADER_SIZE + bodyLength;
+    }
+
+    forcedPosition = position;
+  }
+
+  /** Writes the live entries to a new file, which then atomically replaces the journal. */
+  private void compact() throws IOException {
+
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+
+    try (FileChannel target =
+        FileChannel.open(
+            compacted,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+
+      for (Entry entry : entries.values()) {
+        byte[] body = body(entry.type(), entry.sequence(), entry.payload());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        record.putInt(body.length).putInt(checksum(body)).put(body).flip();
+        while (record.hasRemaining()) {
+          target.write(record);
+        }
+      }
+      target.force(true);
+    }
+
+    Files.move(
+        compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+    log.debug("Compacted outbox journal {} from {} to {} bytes", file, position, liveBytes);
+
+    channel.close();
+    buffer = null;
+    map(INITIAL_CAPACITY);
+    position = (int) liveBytes;
+    forcedPosition = position;
+  }
+
+  private void map(long capacity) throws IOException {
+
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IOException("Outbox journal " + file + " exceeds the maximum size");
+    }
+
+    if (channel == null || !channel.isOpen()) {
+      channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    long mappedCapacity = Math.max(capacity, channel.size());
+    if (buffer != null) {
+      // Records of the previous mapping are still in the page cache and visible to the new one
+      force();
+    }
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedCapacity);
+  }
+
+  private static byte[] body(RecordType type, long sequence, byte[] payload) {
+
+    return ByteBuffer.allocate(BODY_HEADER_SIZE + payload.length)
+        .put(type.code)
+        .putLong(sequence)
+        .put(payload)
+        .array();
+  }
+
+  private static int checksum(byte[] body) {
+
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    return (int) crc.getValue();
+  }
+
+  private static int recordSize(byte[] payload) {
+
+    return RECORD_HEADER_SIZE + BODY_HEADER_SIZE + payload.length;
+  }
+
+  enum RecordType {
+    /** Payload is a {@code SendMessage}. */
+    MESSAGE(1),
+    /** Payload is a {@code LocalRequest} which still has to be created. */
+    REQUEST(2),
+    /** Payload is a {@code LocalRequest} with the created request, which still has to be sent. */
+    CREATED_REQUEST(3),
+    DELIVERED(4),
+    FAILED(5);
+
+    private final byte code;
+
+    RecordType(int code) {
+      this.code = (byte) code;
+    }
+
+    boolean isRemoval() {
+
+      return this == DELIVERED || this == FAILED;
+    }
+
+    private static RecordType of(byte code) {
+
+      for (RecordType type : values()) {
+        if (type.code == code) {
+          return type;
+        }
+      }
+      return null;
+    }
+  }
+
+  record Entry(long sequence, RecordType type, byte[] payload) {}
+}
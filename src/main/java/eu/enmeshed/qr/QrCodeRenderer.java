@@ -0,0 +1,135 @@
+package eu.enmeshed.qr;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Renders the QR code of a RelationshipTemplate locally from its truncated reference, so no QR code
+ * has to be fetched from the connector.
+ *
+ * <pre>{@code
+ * QrCodeRenderer renderer = QrCodeRenderer.builder().size(400).build();
+ * renderer.writePng(relationshipTemplate.getTruncatedReference(), outputStream);
+ * }</pre>
+ */
+@Getter
+@Builder
+public class QrCodeRenderer {
+
+  public static final String REFERENCE_PREFIX_DEFAULT = "nmshd://tr#";
+
+  /** Width and height of the PNG in pixels, and of the SVG in user units. */
+  @Builder.Default private final int size = 300;
+
+  /** Quiet zone around the QR code in modules. */
+  @Builder.Default private final int margin = 2;
+
+  @Builder.Default private final ErrorCorrectionLevel errorCorrectionLevel = ErrorCorrectionLevel.M;
+
+  /** Prefix of the truncated reference in the QR code content. */
+  @Builder.Default private final String referencePrefix = REFERENCE_PREFIX_DEFAULT;
+
+  public static QrCodeRenderer withDefaults() {
+
+    return builder().build();
+  }
+
+  /** Returns the text encoded in the QR code of a truncated reference. */
+  public String content(String truncatedReference) {
+
+    return referencePrefix + truncatedReference;
+  }
+
+  /** Writes the QR code as PNG. The stream is not closed. */
+  public void writePng(String truncatedReference, OutputStream outputStream) throws IOException {
+
+    ByteMatrix modules = encode(truncatedReference);
+    int modulesWithMargin = modules.getWidth() + 2 * margin;
+    // Whole pixels per module keep the modules sharp, the remainder is added to the quiet zone
+    int moduleSize = Math.max(1, size / modulesWithMargin);
+    int imageSize = Math.max(size, modulesWithMargin * moduleSize);
+    int offset = (imageSize - modules.getWidth() * moduleSize) / 2;
+
+    BufferedImage image = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_BYTE_BINARY);
+    int[] row = new int[imageSize];
+
+    for (int y = 0; y < imageSize; y++) {
+      int moduleY = (y - offset) / moduleSize;
+      boolean insideY = y >= offset && moduleY < modules.getHeight();
+
+      for (int x = 0; x < imageSize; x++) {
+        int moduleX = (x - offset) / moduleSize;
+        boolean dark =
+            insideY
+                && x >= offset
+                && moduleX < modules.getWidth()
+                && modules.get(moduleX, moduleY) == 1;
+        row[x] = dark ? 0xFF000000 : 0xFFFFFFFF;
+      }
+      image.setRGB(0, y, imageSize, 1, row, 0, imageSize);
+    }
+
+    ImageIO.write(image, "png", outputStream);
+  }
+
+  /** Writes the QR code as SVG, scalable without loss. The stream is not closed. */
+  public void writeSvg(String truncatedReference, OutputStream outputStream) throws IOException {
+
+    ByteMatrix modules = encode(truncatedReference);
+    int modulesWithMargin = modules.getWidth() + 2 * margin;
+
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" shape-rendering=\"crispEdges\"");
+    writer.write(" width=\"" + size + "\" height=\"" + size + "\"");
+    writer.write(" viewBox=\"0 0 " + modulesWithMargin + " " + modulesWithMargin + "\">");
+    writer.write("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+
+    // One horizontal segment per run of dark modules keeps the path short
+    for (int y = 0; y < modules.getHeight(); y++) {
+      int x = 0;
+      while (x < modules.getWidth()) {
+        if (modules.get(x, y) != 1) {
+          x++;
+          continue;
+        }
+        int start = x;
+        while (x < modules.getWidth() && modules.get(x, y) == 1) {
+          x++;
+        }
+        writer.write(
+            "M"
+                + (start + margin)
+                + " "
+                + (y + margin)
+                + "h"
+                + (x - start)
+                + "v1h-"
+                + (x - start)
+                + "z");
+      }
+    }
+
+    writer.write("\"/></svg>");
+    writer.flush();
+  }
+
+  private ByteMatrix encode(String truncatedReference) throws IOException {
+
+    try {
+      return Encoder.encode(content(truncatedReference), errorCorrectionLevel).getMatrix();
+    } catch (WriterException e) {
+      throw new IOException("Failed to encode QR code: " + e.getMessage(), e);
+    }
+  }
+}
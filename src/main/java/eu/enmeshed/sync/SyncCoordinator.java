@@ -0,0 +1,249 @@
+package eu.enmeshed.sync;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.exception.EnmeshedException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces concurrent Account/Sync calls. At most one sync runs at a time. Callers that arrive
+ * while a sync is running cannot rely on it (it may have started before their change happened), so
+ * they wait for the next sync, which is shared by all of them. Optionally, a sync that started
+ * within a freshness window is reused without syncing again.
+ *
+ * <p>A coordinator can be shared by several services using the same connector. Services report
+ * pending work (registrations and requests waiting for an answer) and webhook activity to it, which
+ * a {@link SyncScheduler} uses to adapt its sync interval.
+ */
+@Slf4j
+public class SyncCoordinator {
+
+  private final EnmeshedClient enmeshedClient;
+
+  private final Object lock = new Object();
+
+  /** Pending work by key with its expiry in epoch millis. */
+  private final Map<String, Long> pendingWork = new ConcurrentHashMap<>();
+
+  private final List<Runnable> signalListeners = new CopyOnWriteArrayList<>();
+
+  private volatile long lastActivityNanos;
+
+  private volatile boolean activity;
+
+  private Round inFlight;
+
+  private Round queued;
+
+  private long lastSyncStartedNanos;
+
+  private boolean synced;
+
+  private long requested;
+
+  private long performed;
+
+  private long reused;
+
+  public SyncCoordinator(EnmeshedClient enmeshedClient) {
+    this.enmeshedClient = enmeshedClient;
+  }
+
+  /** Syncs the connector with the backbone, sharing the sync with concurrent callers. */
+  public void sync() {
+
+    sync(Duration.ZERO);
+  }
+
+  /**
+   * Syncs the connector with the backbone unless a sync started within {@code maxStaleness}.
+   *
+   * @param maxStaleness Age of the last successful sync (measured from its start) that is still
+   *     acceptable for the caller. {@link Duration#ZERO} always waits for a sync starting after the
+   *     call.
+   */
+  public void sync(Duration maxStaleness) {
+
+    Round round;
+    boolean leader;
+
+    synchronized (lock) {
+      requested++;
+
+      if (isFresh(maxStaleness)) {
+        reused++;
+        return;
+      }
+
+      if (inFlight == null) {
+        inFlight = new Round();
+        round = inFlight;
+        leader = true;
+      } else {
+        if (queued == null) {
+          queued = new Round();
+        }
+        round = queued;
+        leader = awaitTurn(round);
+      }
+    }
+
+    if (leader) {
+      execute(round);
+    } else {
+      await(round);
+    }
+  }
+
+  /**
+   * Registers work that is waiting for a change on the backbone, e.g. a RelationshipTemplate
+   * waiting for a registration or a request waiting for an answer.
+   *
+   * @param key ID of the waiting object
+   * @param expiresAt Time after which the work is not pending anymore, even if it is not removed
+   */
+  public void addPendingWork(String key, ZonedDateTime expiresAt) {
+
+    pendingWork.put(key, expiresAt.toInstant().toEpochMilli());
+    signalListeners.forEach(Runnable::run);
+  }
+
+  public void removePendingWork(String key) {
+
+    pendingWork.remove(key);
+  }
+
+  /** Returns the number of pending work items that have not expired yet. */
+  public int getPendingWorkCount() {
+
+    long now = System.currentTimeMillis();
+    pendingWork.values().removeIf(expiresAt -> expiresAt < now);
+    return pendingWork.size();
+  }
+
+  /** Records activity on the connector, e.g. a received webhook. */
+  public void recordActivity() {
+
+    lastActivityNanos = System.nanoTime();
+    activity = true;
+    signalListeners.forEach(Runnable::run);
+  }
+
+  public boolean hadActivityWithin(Duration window) {
+
+    return activity && System.nanoTime() - lastActivityNanos <= window.toNanos();
+  }
+
+  /** Registers a listener called when pending work is added or activity is recorded. */
+  void addSignalListener(Runnable listener) {
+
+    signalListeners.add(listener);
+  }
+
+  void removeSignalListener(Runnable listener) {
+
+    signalListeners.remove(listener);
+  }
+
+  public SyncMetrics getMetrics() {
+
+    synchronized (lock) {
+      return new SyncMetrics(requested, performed, reused);
+    }
+  }
+
+  private boolean isFresh(Duration maxStaleness) {
+
+    return synced
+        && !maxStaleness.isZero()
+        && System.nanoTime() - lastSyncStartedNanos <= maxStaleness.toNanos();
+  }
+
+  /** Waits until the running round is done. Returns whether the caller has to run its round. */
+  private boolean awaitTurn(Round round) {
+
+    while (inFlight != null && inFlight != round) {
+      try {
+        lock.wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new EnmeshedException("Interrupted while waiting for sync");
+      }
+    }
+
+    if (inFlight == null && queued == round) {
+      inFlight = round;
+      queued = null;
+      return true;
+    }
+    return false;
+  }
+
+  private void execute(Round round) {
+
+    long startedNanos = System.nanoTime();
+    RuntimeException failure = null;
+
+    try {
+      enmeshedClient.sync();
+    } catch (RuntimeException e) {
+      log.warn("Sync failed: {}", e.getMessage());
+      failure = e;
+    }
+
+    synchronized (lock) {
+      performed++;
+      if (failure == null) {
+        synced = true;
+        lastSyncStartedNanos = startedNanos;
+      }
+      inFlight = null;
+      lock.notifyAll();
+    }
+
+    if (failure != null) {
+      round.result.completeExceptionally(failure);
+      throw failure;
+    }
+    round.result.complete(null);
+  }
+
+  private void await(Round round) {
+
+    try {
+      round.result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Counters of a {@link SyncCoordinator}.
+   *
+   * @param requested Number of sync calls
+   * @param performed Number of syncs sent to the connector
+   * @param reused Number of sync calls answered by a sync within the freshness window
+   */
+  public record SyncMetrics(long requested, long performed, long reused) {
+
+    /** Number of sync calls per sync sent to the connector. */
+    public double coalescingRatio() {
+      return performed == 0 ? 0 : (double) requested / performed;
+    }
+  }
+
+  private static final class Round {
+
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+  }
+}
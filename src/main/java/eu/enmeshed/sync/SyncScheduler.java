@@ -0,0 +1,152 @@
+package eu.enmeshed.sync;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Syncs the connector periodically in the background, so services can read with a max staleness
+ * instead of syncing inline. While there is pending work or recent activity on the {@link
+ * SyncCoordinator}, the scheduler syncs every {@code minInterval}. Otherwise the interval doubles
+ * after every sync up to {@code maxInterval}. New pending work or activity resets the interval.
+ */
+@Slf4j
+public class SyncScheduler implements AutoCloseable {
+
+  private static final Duration MIN_INTERVAL_DEFAULT = Duration.ofSeconds(2);
+  private static final Duration MAX_INTERVAL_DEFAULT = Duration.ofMinutes(1);
+
+  private final SyncCoordinator syncCoordinator;
+
+  private final Duration minInterval;
+
+  private final Duration maxInterval;
+
+  private final ScheduledExecutorService executor;
+
+  private final Runnable signalListener = this::onSignal;
+
+  private final Object lock = new Object();
+
+  private Duration interval;
+
+  private ScheduledFuture<?> nextSync;
+
+  private long nextSyncNanos;
+
+  private boolean syncing;
+
+  private boolean closed;
+
+  public SyncScheduler(SyncCoordinator syncCoordinator) {
+    this(syncCoordinator, MIN_INTERVAL_DEFAULT, MAX_INTERVAL_DEFAULT);
+  }
+
+  /**
+   * Creates and starts the scheduler. The first sync runs immediately.
+   *
+   * @param syncCoordinator Coordinator shared with the services reading the synced state
+   * @param minInterval Interval while there is pending work or recent activity
+   * @param maxInterval Upper bound of the interval while the connector is idle
+   */
+  public SyncScheduler(
+      SyncCoordinator syncCoordinator, Duration minInterval, Duration maxInterval) {
+
+    if (minInterval.isNegative()
+        || minInterval.isZero()
+        || maxInterval.compareTo(minInterval) < 0) {
+      throw new IllegalArgumentException(
+          "Intervals must be positive and minInterval <= maxInterval");
+    }
+
+    this.syncCoordinator = syncCoordinator;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.interval = minInterval;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-sync-scheduler");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    syncCoordinator.addSignalListener(signalListener);
+    synchronized (lock) {
+      schedule(Duration.ZERO);
+    }
+  }
+
+  /** Returns the interval until the next sync that is currently applied. */
+  public Duration getInterval() {
+
+    synchronized (lock) {
+      return interval;
+    }
+  }
+
+  @Override
+  public void close() {
+
+    syncCoordinator.removeSignalListener(signalListener);
+    synchronized (lock) {
+      closed = true;
+    }
+    executor.shutdownNow();
+  }
+
+  private void runSync() {
+
+    synchronized (lock) {
+      syncing = true;
+    }
+
+    try {
+      syncCoordinator.sync();
+    } catch (RuntimeException e) {
+      log.warn("Background sync failed: {}", e.getMessage());
+    }
+
+    boolean busy =
+        syncCoordinator.getPendingWorkCount() > 0 || syncCoordinator.hadActivityWithin(maxInterval);
+
+    synchronized (lock) {
+      syncing = false;
+      interval = busy ? minInterval : min(interval.multipliedBy(2), maxInterval);
+      schedule(interval);
+    }
+  }
+
+  private void onSignal() {
+
+    synchronized (lock) {
+      interval = minInterval;
+
+      // A running sync schedules the next one with the reset interval when it completes
+      if (syncing || nextSync == null) {
+        return;
+      }
+
+      if (nextSyncNanos - System.nanoTime() > minInterval.toNanos() && nextSync.cancel(false)) {
+        schedule(minInterval);
+      }
+    }
+  }
+
+  private void schedule(Duration delay) {
+
+    if (closed) {
+      return;
+    }
+    nextSyncNanos = System.nanoTime() + delay.toNanos();
+    nextSync = executor.schedule(this::runSync, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private static Duration min(Duration a, Duration b) {
+
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+}
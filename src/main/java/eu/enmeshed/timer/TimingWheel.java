@@ -0,0 +1,303 @@
+package eu.enmeshed.timer;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hierarchical timing wheel for expiry callbacks of many tracked objects. Scheduling and cancelling
+ * a callback takes constant time and no task per callback, a single thread advances the wheel every
+ * tick and runs the due callbacks.
+ *
+ * <p>The wheel has {@value #LEVELS} levels of {@value #WHEEL_SIZE} buckets. A bucket of level 0
+ * spans one tick, a bucket of every further level spans a whole turn of the level below. Callbacks
+ * due in a higher level are moved down once their bucket is reached, so each callback is moved at
+ * most {@value #LEVELS} times. Callbacks run at most one tick late.
+ *
+ * <p>Callbacks run on the thread of the wheel and must not block.
+ */
+@Slf4j
+public class TimingWheel implements AutoCloseable {
+
+  private static final int WHEEL_SIZE = 256;
+  private static final int LEVELS = 4;
+  private static final int WHEEL_BITS = Integer.numberOfTrailingZeros(WHEEL_SIZE);
+  private static final Duration TICK_DEFAULT = Duration.ofMillis(100);
+
+  private final long tickNanos;
+
+  private final long startNanos;
+
+  private final Bucket[][] buckets = new Bucket[LEVELS][WHEEL_SIZE];
+
+  private final ScheduledExecutorService ticker;
+
+  private final Object lock = new Object();
+
+  /** Ticks processed so far, guarded by {@link #lock}. */
+  private long currentTick;
+
+  private int size;
+
+  public TimingWheel() {
+    this(TICK_DEFAULT);
+  }
+
+  /**
+   * Creates and starts the wheel.
+   *
+   * @param tick Resolution of the wheel. With {@value #WHEEL_SIZE} buckets per level, the highest
+   *     level spans {@code tick * 2^32}, callbacks due later are moved down repeatedly.
+   */
+  public TimingWheel(Duration tick) {
+
+    if (tick.isNegative() || tick.isZero()) {
+      throw new IllegalArgumentException("tick must be positive");
+    }
+
+    this.tickNanos = tick.toNanos();
+    this.startNanos = System.nanoTime();
+
+    for (int level = 0; level < LEVELS; level++) {
+      for (int index = 0; index < WHEEL_SIZE; index++) {
+        buckets[level][index] = new Bucket();
+      }
+    }
+
+    this.ticker =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "enmeshed-timing-wheel");
+              thread.setDaemon(true);
+              return thread;
+            });
+    ticker.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Schedules a callback for the given point in time. A point in time in the past runs the callback
+   * with the next tick.
+   *
+   * @return Handle to cancel the callback
+   */
+  public Timeout schedule(ZonedDateTime deadline, Runnable callback) {
+
+    return schedule(Duration.between(ZonedDateTime.now(), deadline), callback);
+  }
+
+  /** Schedules a callback after the given delay. */
+  public Timeout schedule(Duration delay, Runnable callback) {
+
+    long delayNanos = Math.max(0, saturatedNanos(delay));
+    long deadlineTick = Math.addExact(ticksOf(System.nanoTime() - startNanos), 1L);
+    deadlineTick = saturatedAdd(deadlineTick, (delayNanos + tickNanos - 1) / tickNanos);
+
+    Timeout timeout = new Timeout(deadlineTick, callback);
+
+    synchronized (lock) {
+      insert(timeout);
+      size++;
+    }
+
+    return timeout;
+  }
+
+  /** Returns the number of scheduled callbacks which did not run and were not cancelled. */
+  public int size() {
+
+    synchronized (lock) {
+      return size;
+    }
+  }
+
+  @Override
+  public void close() {
+
+    ticker.shutdownNow();
+  }
+
+  private void advance() {
+
+    long targetTick = ticksOf(System.nanoTime() - startNanos);
+    List<Timeout> due = new ArrayList<>();
+
+    synchronized (lock) {
+      while (currentTick < targetTick) {
+        currentTick++;
+
+        // Move callbacks of higher levels down once the turn of their bucket starts, top first so
+        // they can reach level 0 within the same tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+          long levelTick = currentTick >>> (WHEEL_BITS * level);
+          if (currentTick == levelTick << (WHEEL_BITS * level)) {
+            Bucket bucket = buckets[level][(int) (levelTick & (WHEEL_SIZE - 1))];
+            for (Timeout timeout = bucket.removeAll(); timeout != null; ) {
+              Timeout next = timeout.next;
+              timeout.next = null;
+              insert(timeout);
+              timeout = next;
+            }
+          }
+        }
+
+        Bucket bucket = buckets[0][(int) (currentTick & (WHEEL_SIZE - 1))];
+        for (Timeout timeout = bucket.removeAll(); timeout != null; ) {
+          Timeout next = timeout.next;
+          timeout.next = null;
+          timeout.expired = true;
+          size--;
+          due.add(timeout);
+          timeout = next;
+        }
+      }
+    }
+
+    for (Timeout timeout : due) {
+      try {
+        timeout.callback.run();
+      } catch (RuntimeException e) {
+        log.warn("Expiry callback failed: {}", e.getMessage());
+      }
+    }
+  }
+
+  /** Puts a callback in the bucket of the lowest level covering its deadline. */
+  private void insert(Timeout timeout) {
+
+    long remainingTicks = timeout.deadlineTick - currentTick;
+
+    if (remainingTicks <= 0) {
+      // Only happens while moving callbacks down, the current bucket of level 0 is processed next
+      buckets[0][(int) (currentTick & (WHEEL_SIZE - 1))].add(timeout);
+      return;
+    }
+
+    for (int level = 0; level < LEVELS; level++) {
+      if (remainingTicks < 1L << (WHEEL_BITS * (level + 1)) || level == LEVELS - 1) {
+        long levelTick = timeout.deadlineTick >>> (WHEEL_BITS * level);
+        long currentLevelTick = currentTick >>> (WHEEL_BITS * level);
+        // Deadlines beyond the highest level wait in its last bucket and are moved again later
+        long index = Math.min(levelTick, currentLevelTick + WHEEL_SIZE - 1);
+        buckets[level][(int) (index & (WHEEL_SIZE - 1))].add(timeout);
+        return;
+      }
+    }
+  }
+
+  private long ticksOf(long nanos) {
+
+    return nanos / tickNanos;
+  }
+
+  private static long saturatedNanos(Duration duration) {
+
+    try {
+      return duration.toNanos();
+    } catch (ArithmeticException e) {
+      return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  private static long saturatedAdd(long a, long b) {
+
+    long sum = a + b;
+    return sum < a ? Long.MAX_VALUE : sum;
+  }
+
+  /** Handle of a scheduled callback. */
+  public final class Timeout {
+
+    private final long deadlineTick;
+
+    private final Runnable callback;
+
+    private Bucket bucket;
+
+    private Timeout previous;
+
+    private Timeout next;
+
+    private boolean expired;
+
+    private boolean cancelled;
+
+    private Timeout(long deadlineTick, Runnable callback) {
+      this.deadlineTick = deadlineTick;
+      this.callback = callback;
+    }
+
+    /**
+     * Cancels the callback.
+     *
+     * @return false if the callback already ran or was cancelled before
+     */
+    public boolean cancel() {
+
+      synchronized (lock) {
+        if (expired || cancelled) {
+          return false;
+        }
+        cancelled = true;
+        bucket.remove(this);
+        size--;
+        return true;
+      }
+    }
+
+    public boolean isExpired() {
+
+      synchronized (lock) {
+        return expired;
+      }
+    }
+  }
+
+  /** Doubly linked list of callbacks, so a cancelled callback is unlinked in constant time. */
+  private static final class Bucket {
+
+    private Timeout head;
+
+    private void add(Timeout timeout) {
+
+      timeout.bucket = this;
+      timeout.previous = null;
+      timeout.next = head;
+      if (head != null) {
+        head.previous = timeout;
+      }
+      head = timeout;
+    }
+
+    private void remove(Timeout timeout) {
+
+      if (timeout.previous != null) {
+        timeout.previous.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.previous = timeout.previous;
+      }
+      timeout.bucket = null;
+      timeout.previous = null;
+      timeout.next = null;
+    }
+
+    /** Detaches all callbacks and returns the first one, linked by {@code next}. */
+    private Timeout removeAll() {
+
+      Timeout first = head;
+      head = null;
+      for (Timeout timeout = first; timeout != null; timeout = timeout.next) {
+        timeout.bucket = null;
+        timeout.previous = null;
+      }
+      return first;
+    }
+  }
+}
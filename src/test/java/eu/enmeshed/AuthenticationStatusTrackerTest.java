@@ -0,0 +1,132 @@
+package eu.enmeshed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.EnmeshedMessagingService.AuthenticationStatus;
+import eu.enmeshed.model.event.RequestStatusChangedEventData;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.request.LocalRequest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticationStatusTrackerTest {
+
+  private static final String REQUEST_ID = "REQ_XXX";
+
+  @Mock EnmeshedMessagingService messagingServiceMock;
+
+  AuthenticationStatusTracker authenticationStatusTracker;
+
+  @AfterEach
+  void tearDown() {
+
+    authenticationStatusTracker.close();
+  }
+
+  @Test
+  void itShouldCompleteTheStatusFromARequestWebhook() throws Exception {
+
+    authenticationStatusTracker = new AuthenticationStatusTracker(messagingServiceMock, null);
+
+    LocalRequest openRequest =
+        LocalRequest.builder().id(REQUEST_ID).status(LocalRequest.LocalRequestStatus.OPEN).build();
+    LocalRequest completedRequest =
+        LocalRequest.builder()
+            .id(REQUEST_ID)
+            .status(LocalRequest.LocalRequestStatus.COMPLETED)
+            .build();
+    AuthenticationStatus accepted =
+        new AuthenticationStatus(ZonedDateTime.now(), true, true, false, false);
+    when(messagingServiceMock.toAuthenticationStatus(REQUEST_ID, openRequest))
+        .thenReturn(new AuthenticationStatus(null, true, false, false, false));
+    when(messagingServiceMock.toAuthenticationStatus(REQUEST_ID, completedRequest))
+        .thenReturn(accepted);
+
+    CompletableFuture<AuthenticationStatus> status =
+        authenticationStatusTracker.track(REQUEST_ID, ZonedDateTime.now().plusHours(1));
+
+    authenticationStatusTracker.onWebhook(statusChanged(openRequest));
+    Assertions.assertFalse(status.isDone());
+
+    authenticationStatusTracker.onWebhook(statusChanged(completedRequest));
+
+    Assertions.assertSame(accepted, status.get(1, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, authenticationStatusTracker.getTrackedCount());
+    verify(messagingServiceMock, never()).expiredAuthenticationStatus(any());
+  }
+
+  @Test
+  void itShouldDetectExpiryLocally() throws Exception {
+
+    authenticationStatusTracker =
+        new AuthenticationStatusTracker(messagingServiceMock, Duration.ofHours(1));
+
+    AuthenticationStatus expired = new AuthenticationStatus(null, true, false, false, true);
+    when(messagingServiceMock.expiredAuthenticationStatus(REQUEST_ID)).thenReturn(expired);
+
+    CompletableFuture<AuthenticationStatus> status =
+        authenticationStatusTracker.track(REQUEST_ID, ZonedDateTime.now().plusNanos(50_000_000));
+
+    Assertions.assertSame(expired, status.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, authenticationStatusTracker.getTrackedCount());
+    verify(messagingServiceMock, never()).getAuthenticationStatuses(any());
+  }
+
+  @Test
+  void itShouldLookUpAnAnswerThatArrivedBeforeTheRequestWasTracked() throws Exception {
+
+    authenticationStatusTracker = new AuthenticationStatusTracker(messagingServiceMock, null);
+
+    LocalRequest completedRequest =
+        LocalRequest.builder()
+            .id(REQUEST_ID)
+            .status(LocalRequest.LocalRequestStatus.COMPLETED)
+            .build();
+    AuthenticationStatus accepted =
+        new AuthenticationStatus(ZonedDateTime.now(), true, true, false, false);
+    when(messagingServiceMock.sendAuthenticationRequest(
+            any(), any(), any(), anyBoolean(), any(), any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              // The webhook of the answer is consumed while the request is still being sent
+              authenticationStatusTracker.onWebhook(statusChanged(completedRequest));
+              return REQUEST_ID;
+            });
+    when(messagingServiceMock.findAuthenticationStatus(eq(REQUEST_ID), any()))
+        .thenReturn(Optional.of(accepted));
+
+    CompletableFuture<AuthenticationStatus> status =
+        authenticationStatusTracker.sendAndTrack(
+            "ADDR_XXX", "Title", "Text", true, Duration.ofHours(1), Map.of());
+
+    Assertions.assertSame(accepted, status.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, authenticationStatusTracker.getTrackedCount());
+  }
+
+  private static Webhook<RequestStatusChangedEventData> statusChanged(LocalRequest request) {
+
+    return new Webhook<>(
+        RequestStatusChangedEventData.builder()
+            .request(request)
+            .newStatus(request.getStatus())
+            .build(),
+        WebhookTrigger.CONSUMPTION__OUTGOING_REQUEST_STATUS_CHANGED);
+  }
+}
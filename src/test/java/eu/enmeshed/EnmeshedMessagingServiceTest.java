@@ -1,13 +1,20 @@
 package eu.enmeshed;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import eu.enmeshed.annotation.Retryable;
+import eu.enmeshed.bulk.BulkOperation;
 import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.exception.EnmeshedException;
+import eu.enmeshed.exception.decoder.EnmeshedErrorDecoder;
 import eu.enmeshed.model.Response;
 import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.messaging.Mail;
 import eu.enmeshed.model.messaging.Message;
 import eu.enmeshed.model.messaging.SendMessage;
 import eu.enmeshed.model.request.LocalRequest;
@@ -18,14 +25,31 @@ import eu.enmeshed.model.request.RequestResponseSource;
 import eu.enmeshed.model.requestItems.AuthenticationRequestItem;
 import eu.enmeshed.model.responseItems.AcceptResponseItem;
 import eu.enmeshed.model.responseItems.RejectResponseItem;
+import eu.enmeshed.retryer.CustomRetryer;
+import feign.Feign;
 import feign.FeignException;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -57,6 +81,12 @@ public class EnmeshedMessagingServiceTest {
     enmeshedMessagingService = new EnmeshedMessagingService(enmeshedClientMock);
   }
 
+  @AfterEach
+  void tearDown() {
+
+    enmeshedMessagingService.close();
+  }
+
   @Test
   void testSendMessage() throws EnmeshedMessagingService.SendMessageFailedException {
 
@@ -505,4 +535,418 @@ public class EnmeshedMessagingServiceTest {
 
     Assertions.assertNull(authenticationStatus);
   }
+
+  @Test
+  void testFindAuthenticationStatusAccepted() {
+
+    when(enmeshedClientMock.findOutgoingRequest(TEST_REQUEST_ID))
+        .thenReturn(
+            rawResponse(
+                200,
+                "{\"result\":{\"id\":\""
+                    + TEST_REQUEST_ID
+                    + "\",\"status\":\"Decided\",\"response\":{\"createdAt\":\"2023-01-01T10:00:00Z\","
+                    + "\"content\":{\"@type\":\"Response\",\"result\":\"Accepted\",\"items\":[]}}}}"));
+
+    Optional<EnmeshedMessagingService.AuthenticationStatus> authenticationStatus =
+        enmeshedMessagingService.findAuthenticationStatus(TEST_REQUEST_ID);
+
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock, never()).getOutgoingRequest(any());
+
+    Assertions.assertTrue(authenticationStatus.isPresent());
+    Assertions.assertTrue(authenticationStatus.get().requestExists());
+    Assertions.assertTrue(authenticationStatus.get().accepted());
+    Assertions.assertEquals(
+        ZonedDateTime.parse("2023-01-01T10:00:00Z").toInstant(),
+        authenticationStatus.get().respondedAt().toInstant());
+  }
+
+  @Test
+  void testFindAuthenticationStatusOfUnknownRequest() {
+
+    when(enmeshedClientMock.findOutgoingRequest(TEST_REQUEST_ID))
+        .thenReturn(rawResponse(404, "{\"error\":{}}"));
+
+    Assertions.assertTrue(
+        enmeshedMessagingService.findAuthenticationStatus(TEST_REQUEST_ID).isEmpty());
+  }
+
+  @Test
+  void testFindAuthenticationStatusUnexpectedError() {
+
+    when(enmeshedClientMock.findOutgoingRequest(TEST_REQUEST_ID)).thenReturn(rawResponse(500, ""));
+
+    EnmeshedException exception =
+        Assertions.assertThrows(
+            EnmeshedException.class,
+            () -> enmeshedMessagingService.findAuthenticationStatus(TEST_REQUEST_ID));
+
+    Assertions.assertEquals(500, exception.getErrorCode());
+  }
+
+  @Test
+  void itShouldReportTheResultOfEveryReceiverOfABulkSend() {
+
+    when(enmeshedClientMock.createOutgoingRequest(any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              LocalRequest passedRequest = invocationOnMock.getArgument(0, LocalRequest.class);
+              if ("UNKNOWN".equals(passedRequest.getPeer())) {
+                throw new FeignException.FeignClientException(
+                    404,
+                    "",
+                    feign.Request.create(
+                        feign.Request.HttpMethod.POST,
+                        "",
+                        Collections.emptyMap(),
+                        new byte[0],
+                        null,
+                        null),
+                    new byte[0],
+                    null);
+              }
+              return ResultWrapper.containing(
+                  LocalRequest.builder()
+                      .content(
+                          Request.builder()
+                              .id("REQ_" + passedRequest.getPeer())
+                              .expiresAt(passedRequest.getContent().getExpiresAt())
+                              .build())
+                      .build());
+            });
+    List<BulkOperation.Progress> progress = Collections.synchronizedList(new ArrayList<>());
+
+    List<BulkOperation.ItemResult<String, String>> results =
+        enmeshedMessagingService
+            .sendAuthenticationRequests(
+                List.of("ADDR_1", "UNKNOWN", "ADDR_2"),
+                TEST_AUTH_TITLE,
+                TEST_AUTH_TEXT,
+                true,
+                Duration.ofHours(1),
+                TEST_METADATA,
+                2,
+                progress::add)
+            .getResults()
+            .join();
+
+    Assertions.assertEquals("REQ_ADDR_1", results.get(0).result());
+    Assertions.assertEquals("REQ_ADDR_2", results.get(2).result());
+    Assertions.assertFalse(results.get(1).isSuccessful());
+    Assertions.assertEquals(
+        404,
+        ((EnmeshedMessagingService.SendMessageFailedException) results.get(1).failure())
+            .getHttpStatus());
+    Assertions.assertEquals(3, progress.size());
+    Assertions.assertEquals(1, progress.get(2).failed());
+    verify(enmeshedClientMock, Mockito.times(2)).sendMessage(any());
+  }
+
+  @Test
+  void itShouldLookUpManyAuthenticationStatusesWithOneSyncAndChunkedQueries() {
+
+    List<String> requestIds = IntStream.range(0, 120).mapToObj(i -> "REQ_" + i).toList();
+    when(enmeshedClientMock.searchOutgoingRequests(any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              List<String> chunk = invocationOnMock.getArgument(0);
+              return ResultWrapper.containing(
+                  chunk.stream()
+                      .filter(requestId -> !requestId.equals("REQ_7"))
+                      .map(
+                          requestId ->
+                              LocalRequest.builder()
+                                  .id(requestId)
+                                  .status(
+                                      requestId.equals("REQ_100")
+                                          ? LocalRequest.LocalRequestStatus.EXPIRED
+                                          : LocalRequest.LocalRequestStatus.OPEN)
+                                  .build())
+                      .toList());
+            });
+
+    Map<String, EnmeshedMessagingService.AuthenticationStatus> authenticationStatuses =
+        enmeshedMessagingService.getAuthenticationStatuses(requestIds);
+
+    Assertions.assertEquals(120, authenticationStatuses.size());
+    Assertions.assertTrue(authenticationStatuses.get("REQ_0").requestExists());
+    Assertions.assertFalse(authenticationStatuses.get("REQ_7").requestExists());
+    Assertions.assertTrue(authenticationStatuses.get("REQ_100").expired());
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock, Mockito.times(3)).searchOutgoingRequests(any());
+    verify(enmeshedClientMock, never()).getOutgoingRequest(any());
+  }
+
+  @Test
+  void itShouldLookUpAuthenticationStatusesWithoutNewThreadsPerCall() {
+
+    Set<Thread> queryThreads = ConcurrentHashMap.newKeySet();
+    when(enmeshedClientMock.searchOutgoingRequests(any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              queryThreads.add(Thread.currentThread());
+              return ResultWrapper.containing(List.of());
+            });
+
+    enmeshedMessagingService.getAuthenticationStatuses(List.of(TEST_REQUEST_ID));
+    Assertions.assertEquals(Set.of(Thread.currentThread()), queryThreads);
+
+    queryThreads.clear();
+    List<String> requestIds = IntStream.range(0, 120).mapToObj(i -> "REQ_" + i).toList();
+    enmeshedMessagingService.getAuthenticationStatuses(requestIds);
+    enmeshedMessagingService.getAuthenticationStatuses(requestIds);
+
+    // 3 chunks per call, the second call reuses the threads of the first one
+    Assertions.assertTrue(queryThreads.size() <= 3, queryThreads::toString);
+  }
+
+  @Test
+  void itShouldAwaitManyAuthenticationStatusesWithSharedPolling() throws Exception {
+
+    LocalRequest answered =
+        LocalRequest.builder()
+            .id("REQ_ANSWERED")
+            .status(LocalRequest.LocalRequestStatus.COMPLETED)
+            .response(
+                LocalRequestResponse.builder()
+                    .createdAt(ZonedDateTime.now())
+                    .content(Response.builder().result(Response.Result.ACCEPTED).build())
+                    .build())
+            .build();
+    LocalRequest expired =
+        LocalRequest.builder()
+            .id("REQ_EXPIRED")
+            .status(LocalRequest.LocalRequestStatus.EXPIRED)
+            .build();
+    when(enmeshedClientMock.searchOutgoingRequests(any()))
+        .thenReturn(ResultWrapper.containing(List.of(answered, expired)));
+
+    CompletableFuture<EnmeshedMessagingService.AuthenticationStatus> answeredStatus =
+        enmeshedMessagingService.awaitAuthenticationStatusAsync(
+            "REQ_ANSWERED", Duration.ofSeconds(10));
+    EnmeshedMessagingService.AuthenticationStatus expiredStatus =
+        enmeshedMessagingService.awaitAuthenticationStatus("REQ_EXPIRED", Duration.ofSeconds(10));
+
+    Assertions.assertTrue(expiredStatus.expired());
+    Assertions.assertTrue(answeredStatus.get(10, TimeUnit.SECONDS).accepted());
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock)
+        .searchOutgoingRequests(
+            argThat(
+                requestIds ->
+                    Set.copyOf(requestIds).equals(Set.of("REQ_ANSWERED", "REQ_EXPIRED"))));
+  }
+
+  @Test
+  void itShouldStopAwaitingAnOpenAuthenticationRequestAfterTheTimeout() {
+
+    Assertions.assertThrows(
+        TimeoutException.class,
+        () ->
+            enmeshedMessagingService.awaitAuthenticationStatus(
+                TEST_REQUEST_ID, Duration.ofMillis(100)));
+  }
+
+  @Test
+  void itShouldCancelAwaitedAuthenticationRequestsOnClose() {
+
+    CompletableFuture<EnmeshedMessagingService.AuthenticationStatus> status =
+        enmeshedMessagingService.awaitAuthenticationStatusAsync(
+            TEST_REQUEST_ID, Duration.ofMinutes(1));
+
+    enmeshedMessagingService.close();
+
+    CompletionException cancelled =
+        Assertions.assertThrows(CompletionException.class, status::join);
+    Assertions.assertInstanceOf(CancellationException.class, cancelled.getCause());
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () ->
+            enmeshedMessagingService.awaitAuthenticationStatusAsync(
+                TEST_REQUEST_ID, Duration.ofMinutes(1)));
+  }
+
+  @Test
+  void itShouldBroadcastToChunksOfRecipients() throws Exception {
+
+    List<String> recipients = IntStream.range(0, 5).mapToObj(i -> "id" + i).toList();
+    List<List<String>> sentRecipients = Collections.synchronizedList(new ArrayList<>());
+    when(enmeshedClientMock.sendMessage(any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              SendMessage message = invocationOnMock.getArgument(0, SendMessage.class);
+              sentRecipients.add(message.getRecipients());
+              return ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build());
+            });
+
+    BulkOperation<List<String>, EnmeshedMessagingService.BroadcastResult> operation =
+        enmeshedMessagingService.broadcast(
+            recipients, Mail.builder().subject("Announcement").build(), 2, 2, null);
+    EnmeshedMessagingService.BroadcastResult result =
+        EnmeshedMessagingService.BroadcastResult.combine(
+            operation.getResults().get(10, TimeUnit.SECONDS));
+
+    Assertions.assertTrue(result.isSuccessful());
+    Assertions.assertEquals(3, result.messages().size());
+    Assertions.assertEquals(
+        Set.of(List.of("id0", "id1"), List.of("id2", "id3"), List.of("id4")),
+        Set.copyOf(sentRecipients));
+  }
+
+  @Test
+  void itShouldIsolateRejectedRecipientsOfABroadcast() throws Exception {
+
+    List<String> recipients = IntStream.range(0, 8).mapToObj(i -> "id" + i).toList();
+    when(enmeshedClientMock.sendMessage(any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              SendMessage message = invocationOnMock.getArgument(0, SendMessage.class);
+              if (message.getRecipients().contains("id5")) {
+                throw new FeignException.FeignClientException(
+                    404,
+                    "",
+                    feign.Request.create(
+                        feign.Request.HttpMethod.POST,
+                        "",
+                        Collections.emptyMap(),
+                        new byte[0],
+                        null,
+                        null),
+                    connectorError(
+                            "error.transport.messages.missingOrInactiveRelationship",
+                            "Due to missing or inactive relationship(s) with the recipient(s),"
+                                + " the message cannot be sent.")
+                        .getBytes(StandardCharsets.UTF_8),
+                    null);
+              }
+              return ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build());
+            });
+
+    EnmeshedMessagingService.BroadcastResult result =
+        EnmeshedMessagingService.BroadcastResult.combine(
+            enmeshedMessagingService
+                .broadcast(recipients, Mail.builder().subject("Announcement").build(), 8, 1, null)
+                .getResults()
+                .get(10, TimeUnit.SECONDS));
+
+    Assertions.assertEquals(Set.of("id5"), result.failures().keySet());
+    Assertions.assertEquals(404, ((FeignException) result.failures().get("id5")).status());
+    // [0-7] fails, [0-3] is sent, [4-7] fails, [4-5] fails, [6-7] is sent, [4] is sent, [5] fails
+    Assertions.assertEquals(3, result.messages().size());
+    verify(enmeshedClientMock, Mockito.times(7)).sendMessage(any());
+  }
+
+  @Test
+  void itShouldLeaveOutRecipientsNamedInTheRejectionWithoutRetries() throws Exception {
+
+    List<String> recipients = IntStream.range(0, 8).mapToObj(i -> "id" + i).toList();
+    List<List<String>> sentRecipients = Collections.synchronizedList(new ArrayList<>());
+    EnmeshedMessagingService service =
+        new EnmeshedMessagingService(
+            retryingClient(
+                sentRecipients,
+                chunk ->
+                    chunk.contains("id5")
+                        ? connectorError(
+                            "error.transport.messages.missingOrInactiveRelationship",
+                            "Due to missing or inactive relationship(s) with the recipient(s)"
+                                + " 'id5', the message cannot be sent.")
+                        : null));
+
+    EnmeshedMessagingService.BroadcastResult result =
+        EnmeshedMessagingService.BroadcastResult.combine(
+            service
+                .broadcast(recipients, Mail.builder().subject("Announcement").build(), 8, 1, null)
+                .getResults()
+                .get(10, TimeUnit.SECONDS));
+
+    Assertions.assertEquals(Set.of("id5"), result.failures().keySet());
+    Assertions.assertEquals(400, ((FeignException) result.failures().get("id5")).status());
+    Assertions.assertEquals(1, result.messages().size());
+    Assertions.assertEquals(
+        List.of(recipients, List.of("id0", "id1", "id2", "id3", "id4", "id6", "id7")),
+        sentRecipients);
+  }
+
+  @Test
+  void itShouldFailTheChunkIfTheContentIsRejected() throws Exception {
+
+    List<String> recipients = IntStream.range(0, 8).mapToObj(i -> "id" + i).toList();
+    List<List<String>> sentRecipients = Collections.synchronizedList(new ArrayList<>());
+    EnmeshedMessagingService service =
+        new EnmeshedMessagingService(
+            retryingClient(
+                sentRecipients,
+                chunk -> connectorError("error.runtime.validation", "content must be an object")));
+
+    EnmeshedMessagingService.BroadcastResult result =
+        EnmeshedMessagingService.BroadcastResult.combine(
+            service
+                .broadcast(recipients, Mail.builder().subject("Announcement").build(), 8, 1, null)
+                .getResults()
+                .get(10, TimeUnit.SECONDS));
+
+    Assertions.assertEquals(Set.copyOf(recipients), result.failures().keySet());
+    Assertions.assertEquals(List.of(recipients), sentRecipients);
+  }
+
+  @Test
+  void itShouldNotBroadcastRequests() {
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            enmeshedMessagingService.broadcast(
+                List.of(TEST_ENMESHED_ADDRESS), new Request(), 10, 1, null));
+  }
+
+  /**
+   * Client configured like {@link EnmeshedClient#configure}, with a retryer without backoff. Sent
+   * messages answer with a 400 and the returned connector error, or are created if it is null.
+   */
+  private static EnmeshedClient retryingClient(
+      List<List<String>> sentRecipients, Function<List<String>, String> rejection) {
+
+    return Feign.builder()
+        .client(
+            (request, options) -> {
+              if (request.url().endsWith("/Sync")) {
+                return rawResponse(204, "");
+              }
+
+              List<String> recipients = new ArrayList<>();
+              EnmeshedObjectMapper.get()
+                  .readTree(request.body())
+                  .path("recipients")
+                  .forEach(recipient -> recipients.add(recipient.asText()));
+              sentRecipients.add(recipients);
+
+              String error = rejection.apply(recipients);
+              return error == null
+                  ? rawResponse(201, "{\"result\":{\"id\":\"" + TEST_MESSAGE_ID + "\"}}")
+                  : rawResponse(400, error);
+            })
+        .encoder(new JacksonEncoder(EnmeshedObjectMapper.get()))
+        .decoder(new JacksonDecoder(EnmeshedObjectMapper.get()))
+        .errorDecoder(new EnmeshedErrorDecoder())
+        .retryer(new Retryable.AnnotationRetryer(new CustomRetryer(1, 5)))
+        .target(EnmeshedClient.class, "http://connector");
+  }
+
+  private static String connectorError(String code, String message) {
+
+    return "{\"error\":{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}}";
+  }
+
+  private static feign.Response rawResponse(int status, String body) {
+
+    return feign.Response.builder()
+        .status(status)
+        .request(
+            feign.Request.create(
+                feign.Request.HttpMethod.GET, "", Collections.emptyMap(), new byte[0], null, null))
+        .body(body, StandardCharsets.UTF_8)
+        .build();
+  }
 }
@@ -8,6 +8,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
 import eu.enmeshed.model.AttributeWrapper;
 import eu.enmeshed.model.ContentWrapper;
 import eu.enmeshed.model.IdentityInfo;
@@ -22,9 +23,10 @@ import eu.enmeshed.model.attributes.values.identity.DisplayName;
 import eu.enmeshed.model.attributes.values.identity.EMailAddress;
 import eu.enmeshed.model.attributes.values.identity.GivenName;
 import eu.enmeshed.model.attributes.values.identity.Surname;
+import eu.enmeshed.model.qr.QrCode;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
 import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateContent;
-import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateCreation;
+import eu.enmeshed.model.relationshipTemplates.SerializedRelationshipTemplateCreation;
 import eu.enmeshed.model.relationships.Relationship;
 import eu.enmeshed.model.relationships.RelationshipChange;
 import eu.enmeshed.model.relationships.RelationshipChangeRequest;
@@ -36,10 +38,16 @@ import eu.enmeshed.model.requestItems.ShareAttributeRequestItem;
 import eu.enmeshed.model.responseItems.ReadAttributeAcceptResponseItem;
 import eu.enmeshed.model.responseItems.ResponseItem;
 import eu.enmeshed.model.responseItems.ResponseItemGroup;
+import eu.enmeshed.qr.QrCodeRenderer;
 import feign.Request;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -69,7 +77,10 @@ public class EnmeshedOnboardingServiceTest {
           .build();
   @Mock EnmeshedClient enmeshedClientMock;
   @Captor ArgumentCaptor<ContentWrapper<Attribute>> attributeCreateRequestCaptor;
-  @Captor ArgumentCaptor<RelationshipTemplateCreation> relationshipTemplateCreationArgumentCaptor;
+
+  @Captor
+  ArgumentCaptor<SerializedRelationshipTemplateCreation> relationshipTemplateCreationArgumentCaptor;
+
   EnmeshedOnboardingService enmeshedService;
 
   @Test
@@ -147,7 +158,55 @@ public class EnmeshedOnboardingServiceTest {
   }
 
   @Test
-  void itShouldReturnRegistrationData() {
+  void itShouldShareOneIdentityLookupBetweenConcurrentlyCreatedServices() {
+
+    when(enmeshedClientMock.getIdentityInfo())
+        .thenReturn(ResultWrapper.containing(TEST_IDENTITY_INFO));
+    when(enmeshedClientMock.searchAttributes(anyString(), anyString(), anyString()))
+        .thenReturn(ResultWrapper.containing(Collections.emptyList()));
+    when(enmeshedClientMock.createAttribute(any()))
+        .thenReturn(ResultWrapper.containing(AttributeWrapper.builder().id("ATTR_ID").build()));
+
+    Deque<Runnable> pendingTasks = new ArrayDeque<>();
+
+    CompletableFuture<EnmeshedOnboardingService> first =
+        EnmeshedOnboardingService.createAsync(
+            enmeshedClientMock,
+            CONNECTOR_DISPLAY_NAME,
+            REQUIRED_ATTRIBUTES,
+            OPTIONAL_ATTRIBUTES,
+            List.of(),
+            pendingTasks::add);
+    CompletableFuture<EnmeshedOnboardingService> second =
+        EnmeshedOnboardingService.createAsync(
+            enmeshedClientMock,
+            CONNECTOR_DISPLAY_NAME,
+            REQUIRED_ATTRIBUTES,
+            OPTIONAL_ATTRIBUTES,
+            List.of(),
+            pendingTasks::add);
+
+    while (!pendingTasks.isEmpty()) {
+      pendingTasks.poll().run();
+    }
+
+    EnmeshedOnboardingService third =
+        new EnmeshedOnboardingService(
+            enmeshedClientMock, CONNECTOR_DISPLAY_NAME, REQUIRED_ATTRIBUTES, OPTIONAL_ATTRIBUTES);
+
+    Assertions.assertEquals("ATTR_ID", first.join().getConnectorDisplayNameAttribute().getId());
+    Assertions.assertSame(
+        first.join().getConnectorDisplayNameAttribute(),
+        second.join().getConnectorDisplayNameAttribute());
+    Assertions.assertSame(
+        first.join().getConnectorDisplayNameAttribute(), third.getConnectorDisplayNameAttribute());
+    verify(enmeshedClientMock).getIdentityInfo();
+    verify(enmeshedClientMock).searchAttributes(anyString(), anyString(), anyString());
+    verify(enmeshedClientMock).createAttribute(any());
+  }
+
+  @Test
+  void itShouldReturnRegistrationData() throws Exception {
 
     enmeshedService = getServiceInstance();
 
@@ -165,10 +224,6 @@ public class EnmeshedOnboardingServiceTest {
                     RelationshipTemplate.builder()
                         .id(testRelationshipTemplateId)
                         .isOwn(true)
-                        .content(
-                            mockInvocation
-                                .getArgument(0, RelationshipTemplateCreation.class)
-                                .getContent())
                         .build()));
 
     when(enmeshedClientMock.getQrCodeForRelationshipTemplate(testRelationshipTemplateId))
@@ -202,7 +257,12 @@ public class EnmeshedOnboardingServiceTest {
             > 3_595_000);
 
     RelationshipTemplateContent.ItemList itemList =
-        relationshipTemplateCreationArgumentCaptor.getValue().getContent().getOnNewRelationship();
+        EnmeshedObjectMapper.get()
+            .readValue(
+                (String)
+                    relationshipTemplateCreationArgumentCaptor.getValue().getContent().rawValue(),
+                RelationshipTemplateContent.class)
+            .getOnNewRelationship();
 
     // Shared Items
     Assertions.assertTrue(itemList.items().get(0).getItems().get(0).getMustBeAccepted());
@@ -246,6 +306,54 @@ public class EnmeshedOnboardingServiceTest {
     Assertions.assertEquals(CREATE_ATTRIBUTES.get(0).getSimpleName(), "CreateAttributeRequestItem");
   }
 
+  @Test
+  void itShouldSerializeTheTemplateContentOncePerDisplayTexts() {
+
+    enmeshedService = getServiceInstance();
+
+    when(enmeshedClientMock.createRelationshipQrCode(any()))
+        .thenReturn(ResultWrapper.containing(QrCode.builder().build()));
+    when(enmeshedClientMock.createOwnRelationshipTemplate(
+            relationshipTemplateCreationArgumentCaptor.capture()))
+        .thenReturn(ResultWrapper.containing(RelationshipTemplate.builder().id("RLT_ID").build()));
+
+    enmeshedService.generateQrCodeForRegistration("Requested", "Shared", "Create", null);
+    enmeshedService.generateQrCodeForRegistration("Requested", "Shared", "Create", 5L);
+    enmeshedService.generateQrCodeForRegistration("Other", "Shared", "Create", null);
+
+    List<SerializedRelationshipTemplateCreation> creations =
+        relationshipTemplateCreationArgumentCaptor.getAllValues();
+    Assertions.assertSame(creations.get(0).getContent(), creations.get(1).getContent());
+    Assertions.assertNotEquals(creations.get(0).getContent(), creations.get(2).getContent());
+    Assertions.assertTrue(
+        creations.get(1).getExpiresAt().isBefore(creations.get(0).getExpiresAt()));
+  }
+
+  @Test
+  void itShouldRenderTheQrCodeLocallyIfARendererIsSet() {
+
+    enmeshedService = getServiceInstance();
+    enmeshedService.setQrCodeRenderer(QrCodeRenderer.withDefaults());
+
+    when(enmeshedClientMock.createOwnRelationshipTemplate(
+            any(SerializedRelationshipTemplateCreation.class)))
+        .thenReturn(
+            ResultWrapper.containing(
+                RelationshipTemplate.builder()
+                    .id("RLT_ID")
+                    .truncatedReference("UkxUX0lEfEFBQUF8c2VjcmV0S2V5")
+                    .build()));
+
+    EnmeshedOnboardingService.RegistrationData registrationData =
+        enmeshedService.generateQrCodeForRegistrationAsJpg("Requested", "Shared", "Create", null);
+
+    Assertions.assertEquals("RLT_ID", registrationData.relationshipTemplateId());
+    // PNG signature
+    Assertions.assertEquals((byte) 0x89, registrationData.qrCode()[0]);
+    Assertions.assertEquals('P', registrationData.qrCode()[1]);
+    verify(enmeshedClientMock, never()).getQrCodeForRelationshipTemplate(any());
+  }
+
   @Test
   void itShouldReturnNullIfRelationshipTemplateCouldNotBeFound() {
 
@@ -461,24 +569,26 @@ public class EnmeshedOnboardingServiceTest {
                                     .status(RelationshipChange.Status.PENDING)
                                     .request(relationshipChangeRequest)
                                     .build()))
-                        .build())))
+                        .build())));
+
+    when(enmeshedClientMock.acceptRelationshipChange(
+            eq(relationshipId), eq(relationshipChangeId), any()))
         .thenReturn(
             ResultWrapper.containing(
-                List.of(
-                    Relationship.builder()
-                        .id(relationshipId)
-                        .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
-                        .peerIdentity(IdentityInfo.builder().address(userAddress).build())
-                        .peer(userAddress)
-                        .changes(
-                            List.of(
-                                RelationshipChange.builder()
-                                    .id(relationshipChangeId)
-                                    .type(RelationshipChange.Type.CREATION)
-                                    .status(RelationshipChange.Status.ACCEPTED)
-                                    .request(relationshipChangeRequest)
-                                    .build()))
-                        .build())));
+                Relationship.builder()
+                    .id(relationshipId)
+                    .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
+                    .peerIdentity(IdentityInfo.builder().address(userAddress).build())
+                    .peer(userAddress)
+                    .changes(
+                        List.of(
+                            RelationshipChange.builder()
+                                .id(relationshipChangeId)
+                                .type(RelationshipChange.Type.CREATION)
+                                .status(RelationshipChange.Status.ACCEPTED)
+                                .request(relationshipChangeRequest)
+                                .build()))
+                    .build()));
 
     EnmeshedOnboardingService.RegistrationResult registrationResult =
         enmeshedService.checkRegistrationState(relationshipTemplateId);
@@ -506,10 +616,11 @@ public class EnmeshedOnboardingServiceTest {
     inOrder
         .verify(enmeshedClientMock)
         .acceptRelationshipChange(eq(relationshipId), eq(relationshipChangeId), any());
-    inOrder.verify(enmeshedClientMock).sync();
-    inOrder
-        .verify(enmeshedClientMock)
-        .searchRelationships(eq(relationshipTemplateId), any(), any());
+
+    // Three connector round trips: the result is read from the accept response
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock).searchRelationships(any(), any(), any());
+    verify(enmeshedClientMock).acceptRelationshipChange(any(), any(), any());
   }
 
   @Test
@@ -571,24 +682,26 @@ public class EnmeshedOnboardingServiceTest {
                                     .status(RelationshipChange.Status.PENDING)
                                     .request(relationshipChangeRequest)
                                     .build()))
-                        .build())))
+                        .build())));
+
+    when(enmeshedClientMock.rejectRelationshipChange(
+            eq(relationshipId), eq(relationshipChangeId), any()))
         .thenReturn(
             ResultWrapper.containing(
-                List.of(
-                    Relationship.builder()
-                        .id(relationshipId)
-                        .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
-                        .peerIdentity(IdentityInfo.builder().address(userAddress).build())
-                        .peer(userAddress)
-                        .changes(
-                            List.of(
-                                RelationshipChange.builder()
-                                    .id(relationshipChangeId)
-                                    .type(RelationshipChange.Type.CREATION)
-                                    .status(RelationshipChange.Status.REJECTED)
-                                    .request(relationshipChangeRequest)
-                                    .build()))
-                        .build())));
+                Relationship.builder()
+                    .id(relationshipId)
+                    .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
+                    .peerIdentity(IdentityInfo.builder().address(userAddress).build())
+                    .peer(userAddress)
+                    .changes(
+                        List.of(
+                            RelationshipChange.builder()
+                                .id(relationshipChangeId)
+                                .type(RelationshipChange.Type.CREATION)
+                                .status(RelationshipChange.Status.REJECTED)
+                                .request(relationshipChangeRequest)
+                                .build()))
+                    .build()));
 
     EnmeshedOnboardingService.RegistrationResult registrationResult =
         enmeshedService.checkRegistrationState(relationshipTemplateId, attributes -> false);
@@ -611,10 +724,11 @@ public class EnmeshedOnboardingServiceTest {
     inOrder
         .verify(enmeshedClientMock)
         .rejectRelationshipChange(eq(relationshipId), eq(relationshipChangeId), any());
-    inOrder.verify(enmeshedClientMock).sync();
-    inOrder
-        .verify(enmeshedClientMock)
-        .searchRelationships(eq(relationshipTemplateId), any(), any());
+
+    // Three connector round trips: the result is read from the reject response
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock).searchRelationships(any(), any(), any());
+    verify(enmeshedClientMock).rejectRelationshipChange(any(), any(), any());
   }
 
   @Test
@@ -676,24 +790,26 @@ public class EnmeshedOnboardingServiceTest {
                                     .status(RelationshipChange.Status.PENDING)
                                     .request(relationshipChangeRequest)
                                     .build()))
-                        .build())))
+                        .build())));
+
+    when(enmeshedClientMock.acceptRelationshipChange(
+            eq(relationshipId), eq(relationshipChangeId), any()))
         .thenReturn(
             ResultWrapper.containing(
-                List.of(
-                    Relationship.builder()
-                        .id(relationshipId)
-                        .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
-                        .peerIdentity(IdentityInfo.builder().address(userAddress).build())
-                        .peer(userAddress)
-                        .changes(
-                            List.of(
-                                RelationshipChange.builder()
-                                    .id(relationshipChangeId)
-                                    .type(RelationshipChange.Type.CREATION)
-                                    .status(RelationshipChange.Status.ACCEPTED)
-                                    .request(relationshipChangeRequest)
-                                    .build()))
-                        .build())));
+                Relationship.builder()
+                    .id(relationshipId)
+                    .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
+                    .peerIdentity(IdentityInfo.builder().address(userAddress).build())
+                    .peer(userAddress)
+                    .changes(
+                        List.of(
+                            RelationshipChange.builder()
+                                .id(relationshipChangeId)
+                                .type(RelationshipChange.Type.CREATION)
+                                .status(RelationshipChange.Status.ACCEPTED)
+                                .request(relationshipChangeRequest)
+                                .build()))
+                    .build()));
 
     enmeshedService.checkRegistrationState(
         relationshipTemplateId,
@@ -708,6 +824,134 @@ public class EnmeshedOnboardingServiceTest {
         });
   }
 
+  @Test
+  void itShouldCheckManyRegistrationsWithOneSyncAndOneSearch() {
+
+    enmeshedService = getServiceInstance();
+
+    when(enmeshedClientMock.searchRelationships(null, null, null))
+        .thenReturn(
+            ResultWrapper.containing(
+                List.of(
+                    relationship("RLT_PENDING", "REL_PENDING", RelationshipChange.Status.PENDING),
+                    relationship(
+                        "RLT_ACCEPTED", "REL_ACCEPTED", RelationshipChange.Status.ACCEPTED),
+                    relationship("RLT_OTHER", "REL_OTHER", RelationshipChange.Status.PENDING))));
+
+    Map<String, EnmeshedOnboardingService.RegistrationResult> registrationResults =
+        enmeshedService.checkRegistrationStates(
+            List.of("RLT_PENDING", "RLT_ACCEPTED", "RLT_UNUSED"),
+            attributes -> "Max".equals(((GivenName) attributes.get(GivenName.class)).getValue()));
+
+    Assertions.assertEquals(Set.of("RLT_PENDING", "RLT_ACCEPTED"), registrationResults.keySet());
+    Assertions.assertTrue(registrationResults.get("RLT_PENDING").accepted());
+    Assertions.assertEquals("REL_PENDING", registrationResults.get("RLT_PENDING").relationshipId());
+    Assertions.assertTrue(registrationResults.get("RLT_ACCEPTED").accepted());
+    Assertions.assertEquals(
+        "ADDR_REL_ACCEPTED", registrationResults.get("RLT_ACCEPTED").enmeshedAddress());
+
+    verify(enmeshedClientMock).sync();
+    verify(enmeshedClientMock).searchRelationships(null, null, null);
+    verify(enmeshedClientMock)
+        .acceptRelationshipChange(eq("REL_PENDING"), eq("RCH_REL_PENDING"), any());
+    verify(enmeshedClientMock, never()).acceptRelationshipChange(eq("REL_OTHER"), any(), any());
+    verify(enmeshedClientMock, never()).rejectRelationshipChange(any(), any(), any());
+  }
+
+  @Test
+  void itShouldAdvanceEveryRelationshipOfATemplateWhenCheckingManyRegistrations() {
+
+    enmeshedService = getServiceInstance();
+
+    when(enmeshedClientMock.searchRelationships(null, null, null))
+        .thenReturn(
+            ResultWrapper.containing(
+                List.of(
+                    relationship("RLT_POSTER", "REL_1", RelationshipChange.Status.PENDING),
+                    relationship("RLT_POSTER", "REL_2", RelationshipChange.Status.PENDING),
+                    relationship(
+                        "RLT_PENDING", "REL_PENDING", RelationshipChange.Status.PENDING))));
+
+    Map<String, EnmeshedOnboardingService.RegistrationResult> registrationResults =
+        enmeshedService.checkRegistrationStates(
+            List.of("RLT_POSTER", "RLT_PENDING"), attributes -> true);
+
+    Assertions.assertEquals("REL_1", registrationResults.get("RLT_POSTER").relationshipId());
+    Assertions.assertEquals("REL_PENDING", registrationResults.get("RLT_PENDING").relationshipId());
+    verify(enmeshedClientMock).acceptRelationshipChange(eq("REL_1"), eq("RCH_REL_1"), any());
+    verify(enmeshedClientMock).acceptRelationshipChange(eq("REL_2"), eq("RCH_REL_2"), any());
+  }
+
+  @Test
+  void itShouldProcessEveryRelationshipOfAMultiAllocationTemplateOnce() {
+
+    enmeshedService = getServiceInstance();
+
+    Relationship first = relationship("RLT_POSTER", "REL_1", RelationshipChange.Status.PENDING);
+    Relationship second = relationship("RLT_POSTER", "REL_2", RelationshipChange.Status.ACCEPTED);
+    Relationship third = relationship("RLT_POSTER", "REL_3", RelationshipChange.Status.PENDING);
+    when(enmeshedClientMock.searchRelationships("RLT_POSTER", null, null))
+        .thenReturn(ResultWrapper.containing(List.of(first, second)))
+        .thenReturn(ResultWrapper.containing(List.of(first, second, third)));
+
+    List<EnmeshedOnboardingService.RegistrationResult> firstResults =
+        enmeshedService.checkRegistrations("RLT_POSTER", attributes -> true);
+    List<EnmeshedOnboardingService.RegistrationResult> secondResults =
+        enmeshedService.checkRegistrations("RLT_POSTER", attributes -> true);
+
+    Assertions.assertEquals(
+        List.of("REL_1", "REL_2"),
+        firstResults.stream()
+            .map(EnmeshedOnboardingService.RegistrationResult::relationshipId)
+            .toList());
+    Assertions.assertEquals(
+        List.of("REL_3"),
+        secondResults.stream()
+            .map(EnmeshedOnboardingService.RegistrationResult::relationshipId)
+            .toList());
+
+    verify(enmeshedClientMock).acceptRelationshipChange(eq("REL_1"), eq("RCH_REL_1"), any());
+    verify(enmeshedClientMock).acceptRelationshipChange(eq("REL_3"), eq("RCH_REL_3"), any());
+    verify(enmeshedClientMock, never()).acceptRelationshipChange(eq("REL_2"), any(), any());
+  }
+
+  private static Relationship relationship(
+      String relationshipTemplateId, String relationshipId, RelationshipChange.Status status) {
+
+    return Relationship.builder()
+        .id(relationshipId)
+        .template(RelationshipTemplate.builder().id(relationshipTemplateId).build())
+        .peerIdentity(IdentityInfo.builder().address("ADDR_" + relationshipId).build())
+        .changes(
+            List.of(
+                RelationshipChange.builder()
+                    .id("RCH_" + relationshipId)
+                    .type(RelationshipChange.Type.CREATION)
+                    .status(status)
+                    .request(
+                        RelationshipChangeRequest.builder()
+                            .content(
+                                RelationshipCreationChangeRequestContent.builder()
+                                    .response(
+                                        Response.builder()
+                                            .items(
+                                                List.of(
+                                                    ReadAttributeAcceptResponseItem.builder()
+                                                        .attribute(
+                                                            IdentityAttribute.builder()
+                                                                .value(
+                                                                    GivenName.builder()
+                                                                        .value("Max")
+                                                                        .build())
+                                                                .build())
+                                                        .build()))
+                                            .build())
+                                    .build())
+                            .build())
+                    .build()))
+        .build();
+  }
+
   private EnmeshedOnboardingService getServiceInstance() {
 
     when(enmeshedClientMock.getIdentityInfo())
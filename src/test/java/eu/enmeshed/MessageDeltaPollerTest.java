@@ -0,0 +1,180 @@
+package eu.enmeshed;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.messaging.Message;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MessageDeltaPollerTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.now(ZoneOffset.UTC);
+
+  @Mock EnmeshedClient enmeshedClientMock;
+
+  private EnmeshedMessagingService enmeshedMessagingService;
+
+  private final List<Message> connectorMessages = new CopyOnWriteArrayList<>();
+
+  private final BlockingQueue<Webhook<?>> events = new LinkedBlockingQueue<>();
+
+  @BeforeEach
+  void setup() {
+
+    enmeshedMessagingService = new EnmeshedMessagingService(enmeshedClientMock);
+  }
+
+  @Test
+  void itShouldReportEveryNewMessageOnceAsWebhook() throws Exception {
+
+    addMessage("MSG_OLD", NOW.minusHours(2), false);
+    addMessage("MSG_1", NOW.minusMinutes(30), false);
+    addMessage("MSG_2", NOW.minusMinutes(20), true);
+    stubConnector();
+
+    try (MessageDeltaPoller poller = poller(events::add)) {
+      assertNextEvent("MSG_1", WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED);
+      assertNextEvent("MSG_2", WebhookTrigger.TRANSPORT__MESSAGE_SENT);
+
+      addMessage("MSG_SYNCED_LATE", NOW.minusMinutes(25), false);
+      addMessage("MSG_3", NOW.minusMinutes(10), false);
+
+      assertNextEvent("MSG_SYNCED_LATE", WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED);
+      assertNextEvent("MSG_3", WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED);
+
+      // Further polls find nothing new
+      int searches =
+          (int)
+              mockingDetails(enmeshedClientMock).getInvocations().stream()
+                  .filter(invocation -> invocation.getMethod().getName().equals("searchMessages"))
+                  .count();
+      verify(enmeshedClientMock, timeout(5000).atLeast(searches + 2)).searchMessages(anyMap());
+      Assertions.assertTrue(events.isEmpty());
+      Assertions.assertEquals(NOW.minusMinutes(10), poller.getCursor().position());
+    }
+  }
+
+  @Test
+  void itShouldReportAMessageAgainIfTheListenerFailed() throws Exception {
+
+    addMessage("MSG_1", NOW.minusMinutes(30), false);
+    addMessage("MSG_2", NOW.minusMinutes(20), false);
+    stubConnector();
+
+    AtomicBoolean failed = new AtomicBoolean();
+    try (MessageDeltaPoller poller =
+        poller(
+            webhook -> {
+              if (((Message) webhook.getData()).getId().equals("MSG_2")
+                  && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Listener failed");
+              }
+              events.add(webhook);
+            })) {
+
+      assertNextEvent("MSG_1", WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED);
+      assertNextEvent("MSG_2", WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED);
+      Assertions.assertTrue(failed.get());
+    }
+  }
+
+  @Test
+  void itShouldPollLessOftenWhileNoMessagesArrive() {
+
+    stubConnector();
+
+    try (MessageDeltaPoller poller =
+        new MessageDeltaPoller(
+            enmeshedMessagingService,
+            MessageIterator.Cursor.startingAt(NOW.minusHours(1)),
+            events::add,
+            Duration.ofMillis(10),
+            Duration.ofMillis(200),
+            Duration.ofMinutes(15))) {
+
+      verify(enmeshedClientMock, timeout(5000).atLeast(2)).searchMessages(anyMap());
+      Assertions.assertEquals(Duration.ofMillis(200), poller.getPollInterval());
+    }
+  }
+
+  private MessageDeltaPoller poller(Consumer<Webhook<?>> listener) {
+
+    return new MessageDeltaPoller(
+        enmeshedMessagingService,
+        MessageIterator.Cursor.startingAt(NOW.minusHours(1)),
+        listener,
+        Duration.ofMillis(10),
+        Duration.ofMillis(10),
+        Duration.ofMinutes(15));
+  }
+
+  private void assertNextEvent(String messageId, WebhookTrigger trigger) throws Exception {
+
+    Webhook<?> webhook = events.poll(5, TimeUnit.SECONDS);
+
+    Assertions.assertNotNull(webhook);
+    Assertions.assertEquals(trigger, webhook.getTrigger());
+    Assertions.assertEquals(messageId, ((Message) webhook.getData()).getId());
+  }
+
+  private void addMessage(String id, ZonedDateTime createdAt, boolean isOwn) {
+
+    connectorMessages.add(Message.builder().id(id).createdAt(createdAt).isOwn(isOwn).build());
+  }
+
+  /** Answers searches like the connector, filtering by the createdAt range of the query. */
+  @SuppressWarnings("unchecked")
+  private void stubConnector() {
+
+    when(enmeshedClientMock.searchMessages(anyMap()))
+        .thenAnswer(
+            invocationOnMock -> {
+              Instant after = Instant.MIN;
+              Instant before = Instant.MAX;
+              for (String bound :
+                  (Collection<String>)
+                      invocationOnMock.<Map<String, Object>>getArgument(0).get("createdAt")) {
+                Instant instant = Instant.parse(bound.substring(1));
+                if (bound.startsWith(">")) {
+                  after = instant;
+                } else {
+                  before = instant;
+                }
+              }
+
+              Instant from = after;
+              Instant to = before;
+              return ResultWrapper.containing(
+                  connectorMessages.stream()
+                      .filter(message -> message.getCreatedAt().toInstant().isAfter(from))
+                      .filter(message -> message.getCreatedAt().toInstant().isBefore(to))
+                      .toList());
+            });
+  }
+}
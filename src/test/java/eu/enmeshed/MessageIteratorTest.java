@@ -0,0 +1,238 @@
+package eu.enmeshed;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.messaging.Message;
+import feign.Feign;
+import feign.Request;
+import feign.Response;
+import feign.jackson.JacksonDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIteratorTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.now(ZoneOffset.UTC);
+
+  @Mock EnmeshedClient enmeshedClientMock;
+
+  private final List<Message> connectorMessages = new ArrayList<>();
+
+  private final List<Integer> searchResultSizes = new ArrayList<>();
+
+  @Test
+  void itShouldReturnTheMessagesOfAllWindowsInOrder() {
+
+    // 300 messages within the last 30 days, 250 of them within a single hour
+    IntStream.range(0, 50).forEach(i -> addMessage("MSG_SPARSE_" + i, NOW.minusHours(14 * i + 1)));
+    IntStream.range(0, 250)
+        .forEach(i -> addMessage("MSG_DENSE_" + i, NOW.minusDays(3).plusSeconds(10 * i)));
+    stubConnector();
+
+    List<String> sync = new ArrayList<>();
+    List<Message> messages = new ArrayList<>();
+    MessageIterator iterator =
+        new MessageIterator(
+            enmeshedClientMock,
+            () -> sync.add("sync"),
+            MessageIterator.Cursor.startingAt(NOW.minusDays(31)),
+            Duration.ofMinutes(1),
+            null);
+    iterator.forEachRemaining(messages::add);
+
+    Assertions.assertEquals(List.of("sync"), sync);
+    Assertions.assertEquals(300, messages.size());
+    Assertions.assertEquals(300, messages.stream().map(Message::getId).distinct().count());
+    for (int i = 1; i < messages.size(); i++) {
+      Assertions.assertFalse(
+          messages.get(i).getCreatedAt().isBefore(messages.get(i - 1).getCreatedAt()));
+    }
+    Assertions.assertEquals(NOW.minusHours(1), iterator.getCursor().position());
+  }
+
+  @Test
+  void itShouldResumeAtTheCursorWithoutRepeatingMessages() {
+
+    addMessage("MSG_1", NOW.minusMinutes(30));
+    addMessage("MSG_2", NOW.minusMinutes(20));
+    stubConnector();
+
+    MessageIterator first =
+        new MessageIterator(
+            enmeshedClientMock,
+            () -> {},
+            MessageIterator.Cursor.startingAt(NOW.minusHours(1)),
+            Duration.ofMinutes(15),
+            null);
+    first.forEachRemaining(message -> {});
+
+    // The cursor survives a round trip through JSON, e.g. in a database
+    MessageIterator.Cursor cursor =
+        EnmeshedObjectMapper.get()
+            .convertValue(
+                EnmeshedObjectMapper.get().valueToTree(first.getCursor()),
+                MessageIterator.Cursor.class);
+
+    addMessage("MSG_SYNCED_LATE", NOW.minusMinutes(25));
+    addMessage("MSG_3", NOW.minusMinutes(10));
+
+    List<String> resumed = new ArrayList<>();
+    new MessageIterator(enmeshedClientMock, () -> {}, cursor, Duration.ofMinutes(15), null)
+        .forEachRemaining(message -> resumed.add(message.getId()));
+
+    Assertions.assertEquals(List.of("MSG_SYNCED_LATE", "MSG_3"), resumed);
+  }
+
+  @Test
+  void itShouldPropagateConnectorFailures() {
+
+    when(enmeshedClientMock.searchMessages(anyMap())).thenThrow(new IllegalStateException("down"));
+
+    MessageIterator iterator =
+        new MessageIterator(
+            enmeshedClientMock,
+            () -> {},
+            MessageIterator.Cursor.startingAt(NOW.minusHours(1)),
+            Duration.ofMinutes(1),
+            null);
+
+    Assertions.assertThrows(IllegalStateException.class, iterator::hasNext);
+    verify(enmeshedClientMock).searchMessages(anyMap());
+  }
+
+  @Test
+  void itShouldSendCollectionsAsRepeatedQueryParameters() {
+
+    List<Request> sentRequests = new ArrayList<>();
+    EnmeshedClient enmeshedClient =
+        Feign.builder()
+            .client(
+                (request, options) -> {
+                  sentRequests.add(request);
+                  return Response.builder()
+                      .status(200)
+                      .headers(Map.of("Content-Type", List.of("application/json")))
+                      .body("{\"result\":[]}", StandardCharsets.UTF_8)
+                      .request(request)
+                      .build();
+                })
+            .decoder(new JacksonDecoder(EnmeshedObjectMapper.get()))
+            .target(EnmeshedClient.class, "http://connector");
+
+    enmeshedClient.searchMessages(
+        Map.of("createdAt", List.of(">2024-01-01T00:00:00Z", "<2024-02-01T00:00:00Z")));
+
+    Assertions.assertEquals(
+        "http://connector/api/v2/Messages?createdAt=%3E2024-01-01T00%3A00%3A00Z"
+            + "&createdAt=%3C2024-02-01T00%3A00%3A00Z",
+        sentRequests.get(0).url());
+  }
+
+  @Test
+  void itShouldSplitDenseWindowsIntoBoundedPages() {
+
+    // 500 messages within 50 seconds, far more than a page, in the first window of the scan.
+    // Millisecond precision like the connector, so adjacent windows do not share messages.
+    ZonedDateTime first = NOW.minusMinutes(20).truncatedTo(ChronoUnit.MILLIS);
+    IntStream.range(0, 500).forEach(i -> addMessage("MSG_" + i, first.plusNanos(100_000_000L * i)));
+    stubConnector();
+
+    List<Message> messages = new ArrayList<>();
+    new MessageIterator(
+            enmeshedClientMock,
+            () -> {},
+            MessageIterator.Cursor.startingAt(NOW.minusDays(2)),
+            Duration.ofMinutes(1),
+            null)
+        .forEachRemaining(messages::add);
+
+    Assertions.assertEquals(500, messages.size());
+    Assertions.assertEquals(500, messages.stream().map(Message::getId).distinct().count());
+    Assertions.assertEquals("MSG_499", messages.get(499).getId());
+    // Oversized searches are split and fetched again, all messages come from pages of at most 100
+    Assertions.assertTrue(searchResultSizes.stream().anyMatch(size -> size > 100));
+    Assertions.assertEquals(
+        500,
+        searchResultSizes.stream().filter(size -> size <= 100).mapToInt(Integer::intValue).sum(),
+        searchResultSizes::toString);
+  }
+
+  @Test
+  void itShouldSendTheBoundsWithMillisecondPrecision() {
+
+    when(enmeshedClientMock.searchMessages(anyMap()))
+        .thenReturn(ResultWrapper.containing(List.of()));
+
+    MessageIterator iterator =
+        new MessageIterator(
+            enmeshedClientMock,
+            () -> {},
+            MessageIterator.Cursor.startingAt(
+                ZonedDateTime.parse("2024-01-01T01:00:00.000123456+01:00")),
+            Duration.ZERO,
+            null);
+
+    Assertions.assertFalse(iterator.hasNext());
+    verify(enmeshedClientMock)
+        .searchMessages(
+            Map.of("createdAt", List.of(">2023-12-31T23:59:59.999Z", "<2024-01-02T00:00:00.000Z")));
+  }
+
+  private void addMessage(String id, ZonedDateTime createdAt) {
+
+    connectorMessages.add(Message.builder().id(id).createdAt(createdAt).build());
+  }
+
+  /** Answers searches like the connector, filtering by the createdAt range of the query. */
+  @SuppressWarnings("unchecked")
+  private void stubConnector() {
+
+    when(enmeshedClientMock.searchMessages(anyMap()))
+        .thenAnswer(
+            invocationOnMock -> {
+              Collection<String> range =
+                  (Collection<String>)
+                      invocationOnMock.<Map<String, Object>>getArgument(0).get("createdAt");
+              Instant after = Instant.MIN;
+              Instant before = Instant.MAX;
+              for (String bound : range) {
+                Instant instant = Instant.parse(bound.substring(1));
+                if (bound.startsWith(">")) {
+                  after = instant;
+                } else {
+                  before = instant;
+                }
+              }
+
+              Instant from = after;
+              Instant to = before;
+              List<Message> result =
+                  connectorMessages.stream()
+                      .filter(message -> message.getCreatedAt().toInstant().isAfter(from))
+                      .filter(message -> message.getCreatedAt().toInstant().isBefore(to))
+                      .toList();
+              searchResultSizes.add(result.size());
+              return ResultWrapper.containing(result);
+            });
+  }
+}
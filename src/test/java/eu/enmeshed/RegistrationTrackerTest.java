@@ -0,0 +1,157 @@
+package eu.enmeshed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.EnmeshedOnboardingService.RegistrationResult;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.relationshipTemplates.RelationshipTemplate;
+import eu.enmeshed.model.relationships.Relationship;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RegistrationTrackerTest {
+
+  private static final String TEMPLATE_ID = "RLT_XXX";
+
+  private static final RegistrationResult REGISTRATION_RESULT =
+      new RegistrationResult(Map.of(), "ADDR_XXX", "RCH_XXX", "REL_XXX", true);
+
+  @Mock EnmeshedOnboardingService onboardingServiceMock;
+
+  RegistrationTracker registrationTracker;
+
+  @AfterEach
+  void tearDown() {
+
+    registrationTracker.close();
+  }
+
+  @Test
+  void itShouldCompleteTheRegistrationFromARelationshipWebhook() throws Exception {
+
+    registrationTracker =
+        new RegistrationTracker(onboardingServiceMock, Duration.ofHours(1), Runnable::run);
+
+    Relationship relationship =
+        Relationship.builder()
+            .id("REL_XXX")
+            .template(RelationshipTemplate.builder().id(TEMPLATE_ID).build())
+            .build();
+    when(onboardingServiceMock.advanceRegistration(eq(TEMPLATE_ID), eq(relationship), any()))
+        .thenReturn(REGISTRATION_RESULT);
+
+    CompletableFuture<RegistrationResult> registration =
+        registrationTracker.track(TEMPLATE_ID, ZonedDateTime.now().plusHours(1));
+    registrationTracker.onWebhook(
+        new Webhook<>(
+            Relationship.builder()
+                .template(RelationshipTemplate.builder().id("RLT_OTHER").build())
+                .build(),
+            WebhookTrigger.TRANSPORT__RELATIONSHIP_CHANGED));
+    Assertions.assertFalse(registration.isDone());
+
+    registrationTracker.onWebhook(
+        new Webhook<>(relationship, WebhookTrigger.TRANSPORT__RELATIONSHIP_CHANGED));
+
+    Assertions.assertSame(REGISTRATION_RESULT, registration.get(1, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, registrationTracker.getTrackedCount());
+    verify(onboardingServiceMock, never()).checkRegistrationStates(anyMap(), any());
+  }
+
+  @Test
+  void itShouldFallBackToPollingAndExpireRegistrations() throws Exception {
+
+    // Like the connector, only polled templates are answered
+    when(onboardingServiceMock.checkRegistrationStates(anyMap(), any()))
+        .thenAnswer(
+            invocationOnMock ->
+                invocationOnMock.<Map<String, ?>>getArgument(0).containsKey(TEMPLATE_ID)
+                    ? Map.of(TEMPLATE_ID, REGISTRATION_RESULT)
+                    : Map.of());
+
+    registrationTracker =
+        new RegistrationTracker(onboardingServiceMock, Duration.ofMillis(20), Runnable::run);
+
+    CompletableFuture<RegistrationResult> registration =
+        registrationTracker.track(TEMPLATE_ID, ZonedDateTime.now().plusHours(1));
+    CompletableFuture<RegistrationResult> expiredRegistration =
+        registrationTracker.track("RLT_EXPIRED", ZonedDateTime.now().minusSeconds(1));
+
+    Assertions.assertSame(REGISTRATION_RESULT, registration.get(5, TimeUnit.SECONDS));
+    ExecutionException expired =
+        Assertions.assertThrows(
+            ExecutionException.class, () -> expiredRegistration.get(5, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(TimeoutException.class, expired.getCause());
+    verify(onboardingServiceMock, timeout(1000).atLeastOnce())
+        .checkRegistrationStates(anyMap(), any());
+  }
+
+  @Test
+  void itShouldCheckAgainForAWebhookArrivingDuringAPoll() throws Exception {
+
+    Relationship relationship =
+        Relationship.builder()
+            .id("REL_XXX")
+            .template(RelationshipTemplate.builder().id(TEMPLATE_ID).build())
+            .build();
+    // The registration arrives while the poll is running, so the poll does not see it yet
+    when(onboardingServiceMock.checkRegistrationStates(anyMap(), any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              registrationTracker.onWebhook(
+                  new Webhook<>(relationship, WebhookTrigger.TRANSPORT__RELATIONSHIP_CHANGED));
+              return Map.of();
+            });
+    when(onboardingServiceMock.checkRegistrationState(eq(TEMPLATE_ID), any()))
+        .thenReturn(REGISTRATION_RESULT);
+
+    registrationTracker =
+        new RegistrationTracker(onboardingServiceMock, Duration.ofMillis(20), Runnable::run);
+
+    CompletableFuture<RegistrationResult> registration =
+        registrationTracker.track(TEMPLATE_ID, ZonedDateTime.now().plusHours(1));
+
+    Assertions.assertSame(REGISTRATION_RESULT, registration.get(5, TimeUnit.SECONDS));
+    verify(onboardingServiceMock, times(1)).checkRegistrationStates(anyMap(), any());
+    verify(onboardingServiceMock, never()).advanceRegistration(any(), any(), any());
+  }
+
+  @Test
+  void itShouldIgnoreResultsOfTemplatesNotPolled() throws Exception {
+
+    // The unknown template comes first, so a failure on it would keep the others from completing
+    Map<String, RegistrationResult> results = new LinkedHashMap<>();
+    results.put("RLT_UNKNOWN", REGISTRATION_RESULT);
+    results.put(TEMPLATE_ID, REGISTRATION_RESULT);
+    when(onboardingServiceMock.checkRegistrationStates(anyMap(), any())).thenReturn(results);
+
+    registrationTracker =
+        new RegistrationTracker(onboardingServiceMock, Duration.ofMillis(20), Runnable::run);
+
+    CompletableFuture<RegistrationResult> registration =
+        registrationTracker.track(TEMPLATE_ID, ZonedDateTime.now().plusHours(1));
+
+    Assertions.assertSame(REGISTRATION_RESULT, registration.get(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,109 @@
+package eu.enmeshed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.EnmeshedOnboardingService.RegistrationData;
+import eu.enmeshed.RelationshipTemplatePool.Configuration;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RelationshipTemplatePoolTest {
+
+  private static final Configuration CONFIGURATION =
+      new Configuration("Requested", "Shared", "Create", 60L);
+
+  @Mock EnmeshedOnboardingService onboardingServiceMock;
+
+  RelationshipTemplatePool relationshipTemplatePool;
+
+  @AfterEach
+  void tearDown() {
+
+    relationshipTemplatePool.close();
+  }
+
+  @Test
+  void itShouldHandOutPreCreatedTemplatesAndRefill() {
+
+    relationshipTemplatePool =
+        new RelationshipTemplatePool(
+            onboardingServiceMock, 2, Duration.ofMinutes(10), Runnable::run);
+
+    AtomicInteger counter = new AtomicInteger();
+    ZonedDateTime expiresAt = ZonedDateTime.now().plusHours(1);
+    when(onboardingServiceMock.generateQrCodeForRegistrationAsJpg(
+            "Requested", "Shared", "Create", 60L, null, false))
+        .thenAnswer(
+            invocation ->
+                new RegistrationData(new byte[0], "RLT_" + counter.incrementAndGet(), expiresAt));
+
+    relationshipTemplatePool.prepareRegistrationData(CONFIGURATION);
+    Assertions.assertEquals(2, relationshipTemplatePool.getPooledCount(CONFIGURATION));
+
+    RegistrationData registrationData =
+        relationshipTemplatePool.takeRegistrationData(CONFIGURATION);
+
+    Assertions.assertEquals("RLT_1", registrationData.relationshipTemplateId());
+    Assertions.assertEquals(2, relationshipTemplatePool.getPooledCount(CONFIGURATION));
+    verify(onboardingServiceMock).trackRegistration("RLT_1", expiresAt);
+    verify(onboardingServiceMock, never())
+        .generateQrCodeForRegistrationAsJpg(
+            anyString(), anyString(), anyString(), any(), any(), eq(true));
+  }
+
+  @Test
+  void itShouldNotHandOutTemplatesAboutToExpire() {
+
+    relationshipTemplatePool =
+        new RelationshipTemplatePool(
+            onboardingServiceMock, 1, Duration.ofMinutes(10), command -> {});
+
+    ZonedDateTime expiresAt = ZonedDateTime.now().plusMinutes(5);
+    RegistrationData inline = new RegistrationData(new byte[0], "RLT_INLINE", expiresAt);
+    when(onboardingServiceMock.generateQrCodeForRegistrationAsJpg(
+            "Requested", "Shared", "Create", 60L, null, true))
+        .thenReturn(inline);
+
+    relationshipTemplatePool.prepareRegistrationData(CONFIGURATION);
+
+    Assertions.assertSame(inline, relationshipTemplatePool.takeRegistrationData(CONFIGURATION));
+    verify(onboardingServiceMock, times(1))
+        .generateQrCodeForRegistrationAsJpg("Requested", "Shared", "Create", 60L, null, true);
+    verify(onboardingServiceMock, never()).trackRegistration(anyString(), any());
+  }
+
+  @Test
+  void itShouldRejectConfigurationsWhoseTemplatesWouldNeverBeUsable() {
+
+    relationshipTemplatePool =
+        new RelationshipTemplatePool(
+            onboardingServiceMock, 1, Duration.ofMinutes(60), Runnable::run);
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> relationshipTemplatePool.prepareQrCode(CONFIGURATION));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            relationshipTemplatePool.takeRegistrationData(
+                new Configuration("Requested", "Shared", "Create", null)));
+    verify(onboardingServiceMock, never())
+        .generateQrCodeForRegistration(
+            anyString(), anyString(), anyString(), any(), any(), anyBoolean());
+  }
+}
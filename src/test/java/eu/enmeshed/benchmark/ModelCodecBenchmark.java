@@ -0,0 +1,115 @@
+package eu.enmeshed.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.enmeshed.codec.EnmeshedModelModule;
+import eu.enmeshed.model.AttributeWrapper;
+import eu.enmeshed.model.attributes.IdentityAttribute;
+import eu.enmeshed.model.attributes.values.AttributeValue;
+import eu.enmeshed.model.attributes.values.identity.BirthYear;
+import eu.enmeshed.model.attributes.values.identity.City;
+import eu.enmeshed.model.attributes.values.identity.DisplayName;
+import eu.enmeshed.model.attributes.values.identity.EMailAddress;
+import eu.enmeshed.model.attributes.values.identity.GivenName;
+import eu.enmeshed.model.attributes.values.identity.Nationality;
+import eu.enmeshed.model.attributes.values.identity.PhoneNumber;
+import eu.enmeshed.model.attributes.values.identity.Surname;
+import eu.enmeshed.model.attributes.values.identity.ZipCode;
+import java.util.List;
+
+/**
+ * Compares the reflective bean codecs with the streaming codecs of {@link EnmeshedModelModule}.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.enmeshed.benchmark.ModelCodecBenchmark}
+ */
+public class ModelCodecBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int MEASURED_ITERATIONS = 200_000;
+  private static final int ROUNDS = 5;
+
+  private static final List<AttributeValue> VALUES =
+      List.of(
+          DisplayName.builder().value("Test Connector").build(),
+          GivenName.builder().value("Max").build(),
+          Surname.builder().value("Muster").build(),
+          EMailAddress.builder().value("max@example.org").build(),
+          PhoneNumber.builder().value("+49 123").build(),
+          City.builder().value("Berlin").build(),
+          ZipCode.builder().value("10115").build(),
+          Nationality.builder().value("DE").build(),
+          BirthYear.builder().value(1999).build());
+
+  public static void main(String[] args) throws Exception {
+
+    // Load the shared Jackson infrastructure so it is not attributed to the first measured mapper
+    newMapper(false).writeValueAsString(IdentityAttribute.builder().owner("OWNER").build());
+
+    // First call latency: every value type is seen for the first time by a fresh mapper
+    long reflectiveFirstCall = firstCallNanos(newMapper(false));
+    long streamingFirstCall = firstCallNanos(newMapper(true));
+
+    // Steady state throughput, alternating to even out JIT effects
+    ObjectMapper reflectiveMapper = newMapper(false);
+    ObjectMapper streamingMapper = newMapper(true);
+    double reflectiveThroughput = 0;
+    double streamingThroughput = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      reflectiveThroughput = Math.max(reflectiveThroughput, throughput(reflectiveMapper));
+      streamingThroughput = Math.max(streamingThroughput, throughput(streamingMapper));
+    }
+
+    System.out.printf(
+        "first call (%d types): reflective %.2f ms, streaming %.2f ms%n",
+        VALUES.size(), reflectiveFirstCall / 1e6, streamingFirstCall / 1e6);
+    System.out.printf(
+        "steady state round trips: reflective %.0f ops/s, streaming %.0f ops/s%n",
+        reflectiveThroughput, streamingThroughput);
+  }
+
+  private static ObjectMapper newMapper(boolean withModelModule) {
+
+    ObjectMapper objectMapper =
+        new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
+
+    return withModelModule ? objectMapper.registerModule(new EnmeshedModelModule()) : objectMapper;
+  }
+
+  private static long firstCallNanos(ObjectMapper objectMapper) throws Exception {
+
+    long start = System.nanoTime();
+    for (AttributeValue value : VALUES) {
+      roundTrip(objectMapper, value);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static double throughput(ObjectMapper objectMapper) throws Exception {
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      roundTrip(objectMapper, VALUES.get(i % VALUES.size()));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      roundTrip(objectMapper, VALUES.get(i % VALUES.size()));
+    }
+    return MEASURED_ITERATIONS / ((System.nanoTime() - start) / 1e9);
+  }
+
+  private static AttributeWrapper roundTrip(ObjectMapper objectMapper, AttributeValue value)
+      throws Exception {
+
+    AttributeWrapper wrapper =
+        AttributeWrapper.builder()
+            .id("ATTR_ID")
+            .content(IdentityAttribute.builder().owner("OWNER").value(value).build())
+            .build();
+
+    return objectMapper.readValue(objectMapper.writeValueAsBytes(wrapper), AttributeWrapper.class);
+  }
+}
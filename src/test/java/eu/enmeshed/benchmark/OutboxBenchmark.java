@@ -0,0 +1,157 @@
+package eu.enmeshed.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.messaging.Mail;
+import eu.enmeshed.model.messaging.SendMessage;
+import eu.enmeshed.outbox.MessageOutbox;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares sending messages directly through the client with journaling them in a {@link
+ * MessageOutbox}, once per fsync policy. For every variant the time the caller is blocked and the
+ * time until all messages reached the connector are reported. The connector answers after {@value
+ * #CONNECTOR_LATENCY_MILLIS} ms.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.enmeshed.benchmark.OutboxBenchmark}
+ */
+public class OutboxBenchmark {
+
+  private static final int MESSAGES = 500;
+  private static final int ROUNDS = 3;
+  private static final long CONNECTOR_LATENCY_MILLIS = 2;
+
+  public static void main(String[] args) throws Exception {
+
+    HttpServer connector = startConnector();
+    EnmeshedClient enmeshedClient =
+        EnmeshedClient.configure("http://127.0.0.1:" + connector.getAddress().getPort(), "API_KEY");
+    Path journalDirectory = Files.createTempDirectory("enmeshed-outbox-benchmark");
+
+    // Warmup of the client, codec and JIT compiler
+    direct(enmeshedClient);
+
+    for (int round = 1; round <= ROUNDS; round++) {
+      System.out.println("round " + round);
+      report("direct", direct(enmeshedClient));
+      for (MessageOutbox.FsyncPolicy fsyncPolicy : MessageOutbox.FsyncPolicy.values()) {
+        report(
+            "outbox " + fsyncPolicy,
+            outbox(
+                enmeshedClient, journalDirectory.resolve(round + "-" + fsyncPolicy), fsyncPolicy));
+      }
+    }
+
+    connector.stop(0);
+    System.exit(0);
+  }
+
+  private static long[] direct(EnmeshedClient enmeshedClient) {
+
+    long start = System.nanoTime();
+    for (int i = 0; i < MESSAGES; i++) {
+      enmeshedClient.sendMessage(message(i));
+    }
+    long end = System.nanoTime();
+
+    return new long[] {end - start, end - start};
+  }
+
+  private static long[] outbox(
+      EnmeshedClient enmeshedClient, Path journalFile, MessageOutbox.FsyncPolicy fsyncPolicy)
+      throws Exception {
+
+    try (MessageOutbox outbox =
+        new MessageOutbox(
+            enmeshedClient,
+            journalFile,
+            fsyncPolicy,
+            Duration.ofSeconds(1),
+            3,
+            Duration.ofMillis(100))) {
+
+      List<MessageOutbox.Delivery> deliveries = new ArrayList<>(MESSAGES);
+
+      long start = System.nanoTime();
+      for (int i = 0; i < MESSAGES; i++) {
+        deliveries.add(outbox.send(message(i)));
+      }
+      long enqueued = System.nanoTime();
+
+      for (MessageOutbox.Delivery delivery : deliveries) {
+        delivery.result().join();
+      }
+      long delivered = System.nanoTime();
+
+      return new long[] {enqueued - start, delivered - start};
+    }
+  }
+
+  private static void report(String variant, long[] nanos) {
+
+    System.out.printf(
+        "  %-16s caller blocked %7.1f ms (%6.1f us/message), delivered after %7.1f ms"
+            + " (%6.0f messages/s)%n",
+        variant,
+        nanos[0] / 1e6,
+        nanos[0] / 1e3 / MESSAGES,
+        nanos[1] / 1e6,
+        MESSAGES / (nanos[1] / 1e9));
+  }
+
+  private static SendMessage message(int index) {
+
+    return SendMessage.builder()
+        .recipients(List.of("idXXXXXXXXXXXXXXXXXXXXXXXXXXX"))
+        .content(
+            Mail.builder()
+                .to(List.of("idXXXXXXXXXXXXXXXXXXXXXXXXXXX"))
+                .subject("Benchmark " + index)
+                .body("Message body of the benchmark")
+                .build())
+        .build();
+  }
+
+  private static HttpServer startConnector() throws IOException {
+
+    // Without it, delayed acknowledgements dominate the latency of every exchange
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+
+    HttpServer connector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    connector.createContext("/api/v2/Messages", OutboxBenchmark::respond);
+    connector.start();
+    return connector;
+  }
+
+  private static void respond(HttpExchange exchange) throws IOException {
+
+    try (InputStream requestBody = exchange.getRequestBody()) {
+      requestBody.readAllBytes();
+    }
+
+    try {
+      Thread.sleep(CONNECTOR_LATENCY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    byte[] bytes =
+        "{\"result\":{\"id\":\"MSGXXXXXXXXXXXXXXXXXXXXXXXXXX\"}}".getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package eu.enmeshed.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.enmeshed.EnmeshedOnboardingService;
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.model.attributes.values.identity.GivenName;
+import eu.enmeshed.model.attributes.values.identity.Surname;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures the time to first request of a freshly started JVM, once with eager initialization
+ * (ObjectMapper built at configuration time, blocking {@link EnmeshedOnboardingService}
+ * constructor) and once with deferred initialization ({@link
+ * EnmeshedOnboardingService#createAsync}, background {@link EnmeshedObjectMapper#warmup()}). Every
+ * run starts a new JVM, so class loading and JIT state are cold. The application is assumed to do
+ * {@value #APPLICATION_STARTUP_MILLIS} ms of own startup work after configuring the SDK.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.enmeshed.benchmark.StartupBenchmark}
+ */
+public class StartupBenchmark {
+
+  private static final int RUNS = 3;
+  private static final long APPLICATION_STARTUP_MILLIS = 300;
+  private static final long CONNECTOR_LATENCY_MILLIS = 20;
+
+  public static void main(String[] args) throws Exception {
+
+    if (args.length == 1) {
+      run(args[0]);
+      return;
+    }
+
+    for (String mode : List.of("eager", "deferred")) {
+      List<String> results = new ArrayList<>();
+      for (int i = 0; i < RUNS; i++) {
+        results.add(runInNewJvm(mode));
+      }
+      System.out.println(mode + ": " + String.join(" | ", results));
+    }
+  }
+
+  private static String runInNewJvm(String mode) throws Exception {
+
+    Process process =
+        new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp",
+                classPath(),
+                StartupBenchmark.class.getName(),
+                mode)
+            .redirectErrorStream(true)
+            .start();
+
+    String result = "";
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (line.startsWith("ready=")) {
+          result = line;
+        }
+      }
+    }
+    process.waitFor();
+    return result;
+  }
+
+  private static String classPath() throws Exception {
+
+    // exec:java runs the benchmark in an isolated class loader instead of on the JVM class path
+    if (!(Thread.currentThread().getContextClassLoader() instanceof URLClassLoader classLoader)) {
+      return System.getProperty("java.class.path");
+    }
+
+    List<String> entries = new ArrayList<>();
+    for (URL url : classLoader.getURLs()) {
+      entries.add(Path.of(url.toURI()).toString());
+    }
+    return String.join(File.pathSeparator, entries);
+  }
+
+  private static void run(String mode) throws Exception {
+
+    HttpServer connector = startConnector();
+    String url = "http://127.0.0.1:" + connector.getAddress().getPort();
+
+    long start = System.nanoTime();
+    CompletableFuture<EnmeshedOnboardingService> onboardingService;
+
+    EnmeshedClient enmeshedClient = EnmeshedClient.configure(url, "API_KEY");
+
+    if (mode.equals("eager")) {
+      EnmeshedObjectMapper.get();
+      onboardingService =
+          CompletableFuture.completedFuture(
+              new EnmeshedOnboardingService(
+                  enmeshedClient, "Benchmark", List.of(GivenName.class), List.of(Surname.class)));
+    } else {
+      onboardingService =
+          EnmeshedOnboardingService.createAsync(
+              enmeshedClient, "Benchmark", List.of(GivenName.class), List.of(Surname.class));
+      CompletableFuture.runAsync(EnmeshedObjectMapper::warmup);
+    }
+
+    Thread.sleep(APPLICATION_STARTUP_MILLIS);
+    long ready = System.nanoTime();
+
+    onboardingService.join().generateQrCodeForRegistration("Requested", "Shared", "Create", 10L);
+    long firstResponse = System.nanoTime();
+
+    System.out.printf(
+        "ready=%.0f ms, first request=%.0f ms, time to first response=%.0f ms%n",
+        (ready - start) / 1e6, (firstResponse - ready) / 1e6, (firstResponse - start) / 1e6);
+
+    connector.stop(0);
+    System.exit(0);
+  }
+
+  private static HttpServer startConnector() throws IOException {
+
+    HttpServer connector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    connector.createContext(
+        "/api/v2/Account/IdentityInfo",
+        exchange ->
+            respond(
+                exchange,
+                "{\"result\":{\"address\":\"ADDR\",\"publicKey\":\"KEY\",\"realm\":\"REALM\"}}"));
+    connector.createContext(
+        "/api/v2/Attributes",
+        exchange ->
+            respond(
+                exchange,
+                "{\"result\":[{\"id\":\"ATT\",\"content\":{\"@type\":\"IdentityAttribute\","
+                    + "\"owner\":\"ADDR\",\"value\":{\"@type\":\"DisplayName\","
+                    + "\"value\":\"Benchmark\"}}}]}"));
+    connector.createContext(
+        "/api/v2/RelationshipTemplates",
+        exchange ->
+            respond(
+                exchange,
+                "{\"result\":{\"id\":\"RLT\",\"expiresAt\":\"2030-01-01T00:00:00Z\","
+                    + "\"truncatedReference\":\"REF\"}}"));
+    connector.start();
+    return connector;
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+
+    try {
+      Thread.sleep(CONNECTOR_LATENCY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(bytes);
+    }
+  }
+}
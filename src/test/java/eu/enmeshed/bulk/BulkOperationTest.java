@@ -0,0 +1,76 @@
+package eu.enmeshed.bulk;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BulkOperationTest {
+
+  @Test
+  void itShouldNotRunMoreInputsConcurrentlyThanAllowed() throws Exception {
+
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<Integer> inputs = IntStream.range(0, 50).boxed().toList();
+
+    BulkOperation<Integer, Integer> operation =
+        BulkOperation.start(
+            inputs,
+            input -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              Thread.sleep(1);
+              inFlight.decrementAndGet();
+              if (input == 7) {
+                throw new IllegalStateException("failed " + input);
+              }
+              return input * 2;
+            },
+            4,
+            null,
+            null);
+
+    List<BulkOperation.ItemResult<Integer, Integer>> results =
+        operation.getResults().get(10, TimeUnit.SECONDS);
+
+    Assertions.assertTrue(maxInFlight.get() <= 4);
+    Assertions.assertEquals(50, results.size());
+    Assertions.assertEquals(98, results.get(49).result());
+    Assertions.assertEquals("failed 7", results.get(7).failure().getMessage());
+    Assertions.assertEquals(new BulkOperation.Progress(50, 50, 1, false), operation.getProgress());
+  }
+
+  @Test
+  void itShouldReportUnstartedInputsAsCancelled() throws Exception {
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    BulkOperation<Integer, Integer> operation =
+        BulkOperation.start(
+            List.of(1, 2, 3),
+            input -> {
+              started.countDown();
+              release.await();
+              return input;
+            },
+            1,
+            null,
+            null);
+
+    started.await();
+    operation.cancel();
+    release.countDown();
+
+    List<BulkOperation.ItemResult<Integer, Integer>> results =
+        operation.getResults().get(10, TimeUnit.SECONDS);
+
+    Assertions.assertTrue(results.get(0).isSuccessful());
+    Assertions.assertTrue(results.get(1).cancelled());
+    Assertions.assertTrue(results.get(2).cancelled());
+    Assertions.assertTrue(operation.getProgress().cancelled());
+  }
+}
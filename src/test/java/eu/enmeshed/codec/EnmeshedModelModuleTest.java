@@ -0,0 +1,94 @@
+package eu.enmeshed.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.model.AttributeWrapper;
+import eu.enmeshed.model.attributes.IdentityAttribute;
+import eu.enmeshed.model.attributes.values.AttributeValue;
+import eu.enmeshed.model.attributes.values.identity.BirthYear;
+import eu.enmeshed.model.attributes.values.identity.DisplayName;
+import eu.enmeshed.model.attributes.values.identity.GivenName;
+import eu.enmeshed.model.attributes.values.identity.SchematizedXML;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EnmeshedModelModuleTest {
+
+  private static final ObjectMapper REFLECTIVE_MAPPER =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
+
+  private final ObjectMapper objectMapper = EnmeshedObjectMapper.get();
+
+  @Test
+  void itShouldWriteTheSameJsonAsTheReflectiveSerializer() throws Exception {
+
+    List<AttributeValue> values =
+        List.of(
+            DisplayName.builder().value("Test Connector").build(),
+            GivenName.builder().build(),
+            BirthYear.builder().value(1999).build(),
+            SchematizedXML.builder().value("<xml/>").schemaURL("https://schema").build());
+
+    for (AttributeValue value : values) {
+      AttributeWrapper wrapper =
+          AttributeWrapper.builder()
+              .id("ATTR_ID")
+              .content(IdentityAttribute.builder().owner("OWNER").value(value).build())
+              .build();
+
+      Assertions.assertEquals(
+          REFLECTIVE_MAPPER.writeValueAsString(wrapper), objectMapper.writeValueAsString(wrapper));
+      Assertions.assertEquals(
+          REFLECTIVE_MAPPER.writeValueAsString(value), objectMapper.writeValueAsString(value));
+    }
+  }
+
+  @Test
+  void itShouldReadPolymorphicValuesRegardlessOfPropertyOrder() throws Exception {
+
+    AttributeValue typeFirst =
+        objectMapper.readValue(
+            "{\"@type\":\"DisplayName\",\"value\":\"Test Connector\"}", AttributeValue.class);
+    AttributeValue typeLast =
+        objectMapper.readValue(
+            "{\"value\":\"Test Connector\",\"@type\":\"DisplayName\"}", AttributeValue.class);
+    AttributeValue number =
+        objectMapper.readValue("{\"@type\":\"BirthYear\",\"value\":1999}", AttributeValue.class);
+
+    Assertions.assertEquals("Test Connector", ((DisplayName) typeFirst).getValue());
+    Assertions.assertEquals("Test Connector", ((DisplayName) typeLast).getValue());
+    Assertions.assertEquals(1999, ((BirthYear) number).getValue());
+  }
+
+  @Test
+  void itShouldReadNestedValuesAndNulls() throws Exception {
+
+    AttributeWrapper wrapper =
+        objectMapper.readValue(
+            "{\"id\":\"ATTR_ID\",\"content\":{\"@type\":\"IdentityAttribute\",\"owner\":\"OWNER\","
+                + "\"value\":{\"@type\":\"GivenName\",\"value\":null}}}",
+            AttributeWrapper.class);
+
+    Assertions.assertInstanceOf(GivenName.class, wrapper.getContent().getValue());
+    Assertions.assertNull(((GivenName) wrapper.getContent().getValue()).getValue());
+  }
+
+  @Test
+  void itShouldRejectUnknownPropertiesLikeTheReflectiveDeserializer() {
+
+    String json = "{\"@type\":\"DisplayName\",\"value\":\"X\",\"unknown\":true}";
+
+    Assertions.assertThrows(
+        UnrecognizedPropertyException.class,
+        () -> REFLECTIVE_MAPPER.readValue(json, AttributeValue.class));
+    Assertions.assertThrows(
+        UnrecognizedPropertyException.class,
+        () -> objectMapper.readValue(json, AttributeValue.class));
+  }
+}
@@ -0,0 +1,68 @@
+package eu.enmeshed.exception.decoder;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EnmeshedErrorDecoderTest {
+
+  private final EnmeshedErrorDecoder errorDecoder = new EnmeshedErrorDecoder();
+
+  @Mock Response.Body bodyMock;
+
+  @Test
+  void itShouldNotReadTheBodyOfExpectedStatuses() throws Exception {
+
+    Exception exception = errorDecoder.decode("getOutgoingRequest", response(404, bodyMock));
+
+    Assertions.assertInstanceOf(StacklessRetryableException.class, exception);
+    verify(bodyMock, never()).asInputStream();
+  }
+
+  @Test
+  void itShouldKeepTheBodyOfOtherStatuses() {
+
+    String body = "{\"error\":{\"code\":\"error.runtime.validation.invalidPropertyValue\"}}";
+
+    Exception exception =
+        errorDecoder.decode(
+            "sendMessage",
+            Response.builder()
+                .status(400)
+                .reason("Bad Request")
+                .headers(Map.of())
+                .body(body, StandardCharsets.UTF_8)
+                .request(request())
+                .build());
+
+    Assertions.assertEquals(body, ((FeignException) exception).contentUTF8());
+  }
+
+  private static Response response(int status, Response.Body body) {
+
+    return Response.builder()
+        .status(status)
+        .reason("")
+        .headers(Map.of())
+        .body(body)
+        .request(request())
+        .build();
+  }
+
+  private static Request request() {
+
+    return Request.create(
+        Request.HttpMethod.GET, "http://connector/api/v2", Map.of(), null, null, null);
+  }
+}
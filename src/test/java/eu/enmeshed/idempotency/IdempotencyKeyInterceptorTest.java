@@ -0,0 +1,124 @@
+package eu.enmeshed.idempotency;
+
+import static eu.enmeshed.idempotency.IdempotencyKeyInterceptor.IDEMPOTENCY_KEY_HEADER;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.model.file.FileUploadRequest;
+import eu.enmeshed.model.messaging.Mail;
+import eu.enmeshed.model.messaging.SendMessage;
+import feign.Feign;
+import feign.Request;
+import feign.Response;
+import feign.Retryer;
+import feign.form.FormEncoder;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IdempotencyKeyInterceptorTest {
+
+  private final List<Request> sentRequests = new ArrayList<>();
+
+  @Test
+  void itShouldKeepTheKeyOfACallAcrossRetries() {
+
+    EnmeshedClient enmeshedClient = client(1);
+
+    enmeshedClient.sendMessage(message());
+    enmeshedClient.sendMessage(message());
+
+    Assertions.assertEquals(4, sentRequests.size());
+    Assertions.assertEquals(key(sentRequests.get(0)), key(sentRequests.get(1)));
+    Assertions.assertEquals(key(sentRequests.get(2)), key(sentRequests.get(3)));
+    Assertions.assertNotEquals(key(sentRequests.get(0)), key(sentRequests.get(2)));
+    Assertions.assertTrue(IdempotencyKeyInterceptor.isGenerated(key(sentRequests.get(0))));
+  }
+
+  @Test
+  void itShouldUseTheKeyOfTheCaller() {
+
+    EnmeshedClient enmeshedClient = client(0);
+
+    enmeshedClient.sendMessage("KEY", message());
+
+    Assertions.assertEquals(1, sentRequests.size());
+    Assertions.assertEquals(
+        List.of("KEY"), sentRequests.get(0).headers().get(IDEMPOTENCY_KEY_HEADER));
+  }
+
+  @Test
+  void itShouldNotSendTheKeyOfTheCallerAsFormField(@TempDir Path directory) throws IOException {
+
+    EnmeshedClient enmeshedClient = client(0);
+    File file = Files.writeString(directory.resolve("file.txt"), "content").toFile();
+
+    enmeshedClient.uploadNewOwnFile(
+        "KEY", FileUploadRequest.builder().file(file).title("Title").build());
+
+    String body = new String(sentRequests.get(0).body(), StandardCharsets.UTF_8);
+    Assertions.assertEquals("KEY", key(sentRequests.get(0)));
+    Assertions.assertTrue(body.contains("name=\"title\""));
+    Assertions.assertFalse(body.contains("idempotencyKey"));
+  }
+
+  @Test
+  void itShouldNotAddKeysToOtherMethods() {
+
+    EnmeshedClient enmeshedClient = client(0);
+
+    enmeshedClient.getMessageById("MSG");
+
+    Assertions.assertNull(key(sentRequests.get(0)));
+  }
+
+  /** Client whose first {@code failures} requests of every call fail with an IOException. */
+  private EnmeshedClient client(int failures) {
+
+    return Feign.builder()
+        .client(
+            (request, options) -> {
+              sentRequests.add(request);
+              if (failures > 0 && sentRequests.size() % (failures + 1) == 1) {
+                throw new IOException("Read timed out");
+              }
+              return Response.builder()
+                  .status(200)
+                  .reason("OK")
+                  .headers(Map.of("Content-Type", List.of("application/json")))
+                  .body("{\"result\":{\"id\":\"MSG\"}}", StandardCharsets.UTF_8)
+                  .request(request)
+                  .build();
+            })
+        .encoder(new FormEncoder(new JacksonEncoder(EnmeshedObjectMapper.get())))
+        .decoder(new JacksonDecoder(EnmeshedObjectMapper.get()))
+        .requestInterceptor(new IdempotencyKeyInterceptor())
+        .retryer(new Retryer.Default(1, 1, failures + 1))
+        .target(EnmeshedClient.class, "http://connector");
+  }
+
+  private static String key(Request request) {
+
+    Collection<String> values = request.headers().get(IDEMPOTENCY_KEY_HEADER);
+    return values == null ? null : values.iterator().next();
+  }
+
+  private static SendMessage message() {
+
+    return SendMessage.builder()
+        .recipients(List.of("idXXXXXXXXXXXXXXXXXXXXXXXXXXX"))
+        .content(Mail.builder().subject("Subject").build())
+        .build();
+  }
+}
@@ -0,0 +1,244 @@
+package eu.enmeshed.idempotency;
+
+import static eu.enmeshed.idempotency.IdempotencyKeyInterceptor.IDEMPOTENCY_KEY_HEADER;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IdempotentClientTest {
+
+  @Test
+  void itShouldAnswerACompletedKeyFromTheTable() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) ->
+                response(request, 201, "{\"id\":" + sent.incrementAndGet() + "}"));
+
+    Response first = client.execute(request("KEY1"), new Request.Options());
+    Response repeated = client.execute(request("KEY1"), new Request.Options());
+    Response other = client.execute(request("KEY2"), new Request.Options());
+
+    Assertions.assertEquals(2, sent.get());
+    Assertions.assertEquals("{\"id\":1}", body(first));
+    Assertions.assertEquals("{\"id\":1}", body(repeated));
+    Assertions.assertEquals(201, repeated.status());
+    Assertions.assertEquals("{\"id\":2}", body(other));
+    Assertions.assertEquals(2, client.size());
+  }
+
+  @Test
+  void itShouldSendUnsuccessfulKeysAgain() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) ->
+                sent.incrementAndGet() == 1
+                    ? response(request, 503, "")
+                    : response(request, 200, "ok"));
+
+    Assertions.assertEquals(503, client.execute(request("KEY"), new Request.Options()).status());
+    Assertions.assertEquals(200, client.execute(request("KEY"), new Request.Options()).status());
+    Assertions.assertEquals(200, client.execute(request("KEY"), new Request.Options()).status());
+    Assertions.assertEquals(2, sent.get());
+  }
+
+  @Test
+  void itShouldSendConcurrentRequestsOfAKeyOnce() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) -> {
+              sent.incrementAndGet();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return response(request, 200, "ok");
+            });
+
+    CompletableFuture<Response> first =
+        CompletableFuture.supplyAsync(() -> execute(client, request("KEY")));
+    CompletableFuture<Response> hedged =
+        CompletableFuture.supplyAsync(() -> execute(client, request("KEY")));
+
+    // Give the hedged request the chance to find the first one in flight
+    Thread.sleep(100);
+    release.countDown();
+
+    Assertions.assertEquals("ok", body(first.get(5, TimeUnit.SECONDS)));
+    Assertions.assertEquals("ok", body(hedged.get(5, TimeUnit.SECONDS)));
+    Assertions.assertEquals(1, sent.get());
+  }
+
+  @Test
+  void itShouldForgetKeysAfterTheirRetention() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    Client delegate =
+        (request, options) -> response(request, 200, String.valueOf(sent.incrementAndGet()));
+
+    IdempotentClient expiring = new IdempotentClient(delegate, 10, Duration.ZERO);
+    expiring.execute(request("KEY"), new Request.Options());
+    Thread.sleep(1);
+    expiring.execute(request("KEY"), new Request.Options());
+    Assertions.assertEquals(2, sent.get());
+
+    IdempotentClient small = new IdempotentClient(delegate, 1, Duration.ofMinutes(1));
+    small.execute(request("KEY1"), new Request.Options());
+    small.execute(request("KEY2"), new Request.Options());
+    small.execute(request("KEY1"), new Request.Options());
+    Assertions.assertEquals(5, sent.get());
+  }
+
+  @Test
+  void itShouldPassRequestsWithoutKeyThrough() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) -> response(request, 200, "" + sent.incrementAndGet()));
+
+    client.execute(request(null), new Request.Options());
+    client.execute(request(null), new Request.Options());
+
+    Assertions.assertEquals(2, sent.get());
+    Assertions.assertEquals(0, client.size());
+  }
+
+  @Test
+  void itShouldPassRequestsWithGeneratedKeysThrough() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) -> response(request, 200, "" + sent.incrementAndGet()));
+    String generatedKey = IdempotencyKeyInterceptor.GENERATED_KEY_PREFIX + "KEY";
+
+    client.execute(request(generatedKey), new Request.Options());
+    client.execute(request(generatedKey), new Request.Options());
+
+    Assertions.assertEquals(2, sent.get());
+    Assertions.assertEquals(0, client.size());
+  }
+
+  @Test
+  void itShouldScopeKeysToTheEndpointAndRejectAnotherBody() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) -> response(request, 201, "" + sent.incrementAndGet()));
+
+    Response message =
+        client.execute(request("KEY", "/api/v2/Messages", "message"), new Request.Options());
+    Response outgoingRequest =
+        client.execute(
+            request("KEY", "/api/v2/Requests/Outgoing", "request"), new Request.Options());
+
+    Assertions.assertEquals("1", body(message));
+    Assertions.assertEquals("2", body(outgoingRequest));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> client.execute(request("KEY", "/api/v2/Messages", "other"), new Request.Options()));
+    Assertions.assertEquals(2, sent.get());
+  }
+
+  @Test
+  void itShouldMatchMultipartBodiesWithDifferentBoundaries() throws Exception {
+
+    AtomicInteger sent = new AtomicInteger();
+    IdempotentClient client =
+        new IdempotentClient(
+            (request, options) -> response(request, 201, "" + sent.incrementAndGet()));
+
+    client.execute(multipartRequest("KEY", "18b2f0c1a01"), new Request.Options());
+    Response repeated =
+        client.execute(multipartRequest("KEY", "18b2f0c1a02"), new Request.Options());
+
+    Assertions.assertEquals("1", body(repeated));
+    Assertions.assertEquals(1, sent.get());
+  }
+
+  private static Response execute(IdempotentClient client, Request request) {
+
+    try {
+      return client.execute(request, new Request.Options());
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Request request(String idempotencyKey) {
+
+    return request(idempotencyKey, "/api/v2/Messages", "");
+  }
+
+  private static Request request(String idempotencyKey, String path, String body) {
+
+    Map<String, Collection<String>> headers =
+        idempotencyKey == null ? Map.of() : Map.of(IDEMPOTENCY_KEY_HEADER, List.of(idempotencyKey));
+    return Request.create(
+        Request.HttpMethod.POST,
+        "http://connector" + path,
+        headers,
+        body.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8,
+        null);
+  }
+
+  private static Request multipartRequest(String idempotencyKey, String boundary) {
+
+    String body =
+        "--"
+            + boundary
+            + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nTitle\r\n--"
+            + boundary
+            + "--\r\n";
+    return Request.create(
+        Request.HttpMethod.POST,
+        "http://connector/api/v2/Files/Own",
+        Map.of(
+            IDEMPOTENCY_KEY_HEADER,
+            List.of(idempotencyKey),
+            "Content-Type",
+            List.of("multipart/form-data; charset=UTF-8; boundary=" + boundary)),
+        body.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8,
+        null);
+  }
+
+  private static Response response(Request request, int status, String body) {
+
+    return Response.builder()
+        .status(status)
+        .reason("")
+        .headers(Map.of())
+        .body(body, StandardCharsets.UTF_8)
+        .request(request)
+        .build();
+  }
+
+  private static String body(Response response) throws Exception {
+
+    return Util.toString(response.body().asReader(StandardCharsets.UTF_8));
+  }
+}
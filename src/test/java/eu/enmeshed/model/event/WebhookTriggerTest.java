@@ -0,0 +1,41 @@
+package eu.enmeshed.model.event;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class WebhookTriggerTest {
+
+  @Test
+  void itShouldMatchTheJsonMappingOfTheWebhook() throws Exception {
+
+    Map<String, Class<?>> dataTypesByTrigger = new HashMap<>();
+    for (JsonSubTypes.Type type :
+        Webhook.class.getDeclaredField("data").getAnnotation(JsonSubTypes.class).value()) {
+      Arrays.stream(type.names()).forEach(name -> dataTypesByTrigger.put(name, type.value()));
+    }
+
+    for (WebhookTrigger trigger : WebhookTrigger.values()) {
+      String jsonName =
+          WebhookTrigger.class.getField(trigger.name()).getAnnotation(JsonProperty.class).value();
+
+      Assertions.assertEquals(jsonName, trigger.getValue());
+      Assertions.assertEquals(dataTypesByTrigger.get(jsonName), trigger.getDataType());
+      Assertions.assertEquals(Optional.of(trigger), WebhookTrigger.fromValue(jsonName));
+    }
+
+    Assertions.assertEquals(dataTypesByTrigger.size(), WebhookTrigger.values().length);
+  }
+
+  @Test
+  void itShouldNotResolveUnknownTriggers() {
+
+    Assertions.assertTrue(WebhookTrigger.fromValue("transport.unknown").isEmpty());
+    Assertions.assertTrue(WebhookTrigger.fromValue(null).isEmpty());
+  }
+}
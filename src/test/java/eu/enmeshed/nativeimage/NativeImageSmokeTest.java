@@ -0,0 +1,115 @@
+package eu.enmeshed.nativeimage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.client.EnmeshedObjectMapper;
+import eu.enmeshed.exception.decoder.StacklessRetryableException;
+import eu.enmeshed.model.IdentityInfo;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.event.WebhookTrigger;
+import eu.enmeshed.model.messaging.Mail;
+import eu.enmeshed.model.messaging.Message;
+import feign.FeignException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises the reflective parts of the SDK (Feign proxy, Jackson polymorphic model, retryer)
+ * against a local stub connector. Run with {@code mvn -Pnative verify} to execute it as a native
+ * image.
+ */
+class NativeImageSmokeTest {
+
+  private static final String API_KEY = "API_KEY";
+
+  private final List<String> receivedApiKeys = new CopyOnWriteArrayList<>();
+
+  private HttpServer connector;
+
+  private EnmeshedClient enmeshedClient;
+
+  @BeforeEach
+  void setup() throws IOException {
+
+    connector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    connector.createContext(
+        "/api/v2/Account/IdentityInfo",
+        exchange ->
+            respond(
+                exchange,
+                200,
+                "{\"result\":{\"address\":\"ADDR\",\"publicKey\":\"KEY\",\"realm\":\"REALM\"}}"));
+    connector.createContext("/api/v2/Account/Sync", exchange -> respond(exchange, 204, null));
+    connector.createContext(
+        "/api/v2/Requests/Outgoing/", exchange -> respond(exchange, 404, "{\"error\":{}}"));
+    connector.start();
+
+    enmeshedClient =
+        EnmeshedClient.configure("http://127.0.0.1:" + connector.getAddress().getPort(), API_KEY);
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    connector.stop(0);
+  }
+
+  @Test
+  void itShouldCallTheConnectorThroughTheClientProxy() {
+
+    IdentityInfo identityInfo = enmeshedClient.getIdentityInfo().getResult();
+    enmeshedClient.sync();
+    FeignException notFound =
+        Assertions.assertThrows(
+            FeignException.class, () -> enmeshedClient.getOutgoingRequest("REQ_ID"));
+
+    Assertions.assertEquals("ADDR", identityInfo.getAddress());
+    Assertions.assertEquals(404, notFound.status());
+    Assertions.assertInstanceOf(StacklessRetryableException.class, notFound);
+    Assertions.assertEquals(0, notFound.getStackTrace().length);
+    Assertions.assertEquals(List.of(API_KEY, API_KEY, API_KEY), receivedApiKeys);
+  }
+
+  @Test
+  void itShouldDeserializePolymorphicWebhooks() throws IOException {
+
+    String json =
+        "{\"trigger\":\"transport.messageReceived\",\"data\":{\"id\":\"MSG_ID\",\"isOwn\":false,"
+            + "\"createdAt\":\"2024-01-01T00:00:00.000Z\",\"content\":{\"@type\":\"Mail\","
+            + "\"to\":[\"ADDR\"],\"subject\":\"Subject\",\"body\":\"Body\"}}}";
+
+    Webhook<?> webhook = EnmeshedObjectMapper.get().readValue(json, Webhook.class);
+
+    Assertions.assertEquals(WebhookTrigger.TRANSPORT__MESSAGE_RECEIVED, webhook.getTrigger());
+    Assertions.assertEquals("transport.messageReceived", webhook.getTrigger().toString());
+    Message message = Assertions.assertInstanceOf(Message.class, webhook.getData());
+    Assertions.assertEquals("Subject", ((Mail) message.getContent()).getSubject());
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+
+    receivedApiKeys.add(exchange.getRequestHeaders().getFirst("X-API-KEY"));
+
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+      return;
+    }
+
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package eu.enmeshed.nativeimage;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.enmeshed.MessageIterator;
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.event.Webhook;
+import eu.enmeshed.model.messaging.SendMessage;
+import eu.enmeshed.model.relationshipTemplates.RelationshipTemplateContent;
+import eu.enmeshed.model.request.LocalRequest;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Derives the reflection metadata required by GraalVM native images. Starting at the signatures of
+ * {@link EnmeshedClient}, the {@link Webhook} payload and the {@link #JSON_ROOTS}, it follows field
+ * types, super classes and the {@link JsonSubTypes} annotations of the model to find every class
+ * Jackson instantiates.
+ *
+ * <p>Regenerate the checked-in file with {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=eu.enmeshed.nativeimage.ReflectConfigGenerator}
+ */
+public class ReflectConfigGenerator {
+
+  static final Path REFLECT_CONFIG =
+      Path.of(
+          "src/main/resources/META-INF/native-image/eu.enmeshed/connector-sdk/reflect-config.json");
+
+  private static final String SDK_PACKAGE = "eu.enmeshed.";
+
+  /** Public types serialized outside the client calls, e.g. persisted by the application. */
+  static final List<Class<?>> JSON_ROOTS =
+      List.of(
+          // Persisted by applications to resume a scan
+          MessageIterator.Cursor.class,
+          // Serialized once per template content by the onboarding service
+          RelationshipTemplateContent.class,
+          // Journal payloads of the outbox
+          SendMessage.class,
+          LocalRequest.class);
+
+  public static void main(String[] args) throws IOException {
+
+    Files.writeString(REFLECT_CONFIG, generate());
+  }
+
+  static String generate() throws IOException {
+
+    List<Map<String, Object>> entries = new ArrayList<>();
+
+    Map<String, Object> clientEntry = new LinkedHashMap<>();
+    clientEntry.put("name", EnmeshedClient.class.getName());
+    clientEntry.put("allPublicMethods", true);
+    entries.add(clientEntry);
+
+    for (String modelClass : modelClasses()) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("name", modelClass);
+      entry.put("allDeclaredConstructors", true);
+      entry.put("allDeclaredMethods", true);
+      entry.put("allPublicMethods", true);
+      entry.put("allDeclaredFields", true);
+      entries.add(entry);
+    }
+
+    // Fixed line endings, so the file generated on any platform equals the checked-in one
+    DefaultPrettyPrinter printer =
+        new DefaultPrettyPrinter().withObjectIndenter(new DefaultIndenter("  ", "\n"));
+
+    return new ObjectMapper().writer(printer).writeValueAsString(entries) + "\n";
+  }
+
+  static SortedSet<String> modelClasses() {
+
+    Deque<Type> pending = new ArrayDeque<>();
+    for (Method method : EnmeshedClient.class.getMethods()) {
+      pending.add(method.getGenericReturnType());
+      pending.addAll(Arrays.asList(method.getGenericParameterTypes()));
+    }
+    pending.add(Webhook.class);
+    pending.addAll(JSON_ROOTS);
+
+    SortedSet<String> modelClasses = new TreeSet<>();
+    while (!pending.isEmpty()) {
+      Type type = pending.poll();
+
+      if (type instanceof ParameterizedType parameterizedType) {
+        pending.add(parameterizedType.getRawType());
+        pending.addAll(Arrays.asList(parameterizedType.getActualTypeArguments()));
+      } else if (type instanceof WildcardType wildcardType) {
+        pending.addAll(Arrays.asList(wildcardType.getUpperBounds()));
+      } else if (type instanceof TypeVariable<?> typeVariable) {
+        pending.addAll(Arrays.asList(typeVariable.getBounds()));
+      } else if (type instanceof GenericArrayType arrayType) {
+        pending.add(arrayType.getGenericComponentType());
+      } else if (type instanceof Class<?> clazz) {
+        if (clazz.isArray()) {
+          pending.add(clazz.getComponentType());
+        } else if (isModelClass(clazz) && modelClasses.add(clazz.getName())) {
+          pending.add(clazz.getGenericSuperclass());
+          addSubTypes(clazz.getAnnotation(JsonSubTypes.class), pending);
+
+          for (Field field : clazz.getDeclaredFields()) {
+            pending.add(field.getGenericType());
+            addSubTypes(field.getAnnotation(JsonSubTypes.class), pending);
+          }
+        }
+      }
+    }
+
+    return modelClasses;
+  }
+
+  private static boolean isModelClass(Class<?> clazz) {
+
+    return clazz.getName().startsWith(SDK_PACKAGE) && !clazz.isInterface();
+  }
+
+  private static void addSubTypes(JsonSubTypes subTypes, Deque<Type> pending) {
+
+    if (subTypes != null) {
+      for (JsonSubTypes.Type subType : subTypes.value()) {
+        pending.add(subType.value());
+      }
+    }
+  }
+}
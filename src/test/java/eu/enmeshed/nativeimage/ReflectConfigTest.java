@@ -0,0 +1,17 @@
+package eu.enmeshed.nativeimage;
+
+import java.nio.file.Files;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReflectConfigTest {
+
+  @Test
+  void itShouldShipReflectionMetadataForAllModelClasses() throws Exception {
+
+    Assertions.assertEquals(
+        ReflectConfigGenerator.generate(),
+        Files.readString(ReflectConfigGenerator.REFLECT_CONFIG),
+        "reflect-config.json is outdated, regenerate it with ReflectConfigGenerator");
+  }
+}
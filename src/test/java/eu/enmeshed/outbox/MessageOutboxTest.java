@@ -0,0 +1,214 @@
+package eu.enmeshed.outbox;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.enmeshed.client.EnmeshedClient;
+import eu.enmeshed.model.ResultWrapper;
+import eu.enmeshed.model.messaging.Mail;
+import eu.enmeshed.model.messaging.Message;
+import eu.enmeshed.model.messaging.SendMessage;
+import eu.enmeshed.model.request.LocalRequest;
+import eu.enmeshed.model.request.Request;
+import feign.FeignException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MessageOutboxTest {
+
+  private static final String TEST_ENMESHED_ADDRESS = "idXXXXXXXXXXXXXXXXXXXXXXXXXXX";
+  private static final String TEST_REQUEST_ID = "REQXXXXXXXXXXXXXXXXXXXXXXXXXX";
+  private static final String TEST_MESSAGE_ID = "MSGXXXXXXXXXXXXXXXXXXXXXXXXXX";
+
+  @Mock EnmeshedClient enmeshedClientMock;
+
+  @TempDir Path journalDirectory;
+
+  @Test
+  void itShouldDeliverJournaledMessages() throws Exception {
+
+    ArgumentCaptor<SendMessage> sendMessageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+    when(enmeshedClientMock.sendMessageWithoutRetry(sendMessageCaptor.capture()))
+        .thenReturn(ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build()));
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      MessageOutbox.Delivery delivery = outbox.send(mail("Hello"));
+
+      Assertions.assertEquals(TEST_MESSAGE_ID, delivery.result().get(5, TimeUnit.SECONDS).getId());
+      Assertions.assertEquals(0, outbox.getPendingCount());
+    }
+
+    Assertions.assertEquals(
+        List.of(TEST_ENMESHED_ADDRESS), sendMessageCaptor.getValue().getRecipients());
+    Assertions.assertEquals(
+        "Hello", ((Mail) sendMessageCaptor.getValue().getContent()).getSubject());
+  }
+
+  @Test
+  void itShouldRetryUntilTheMessageIsDelivered() throws Exception {
+
+    when(enmeshedClientMock.sendMessageWithoutRetry(any()))
+        .thenThrow(feignException(503))
+        .thenThrow(feignException(-1))
+        .thenReturn(ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build()));
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      MessageOutbox.Delivery delivery = outbox.send(mail("Hello"));
+
+      Assertions.assertEquals(TEST_MESSAGE_ID, delivery.result().get(5, TimeUnit.SECONDS).getId());
+    }
+
+    verify(enmeshedClientMock, times(3)).sendMessageWithoutRetry(any());
+  }
+
+  @Test
+  void itShouldNotRetryRejectedMessages() throws Exception {
+
+    when(enmeshedClientMock.sendMessageWithoutRetry(any())).thenThrow(feignException(400));
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      MessageOutbox.Delivery delivery = outbox.send(mail("Hello"));
+
+      ExecutionException exception =
+          Assertions.assertThrows(
+              ExecutionException.class, () -> delivery.result().get(5, TimeUnit.SECONDS));
+      Assertions.assertEquals(400, ((FeignException) exception.getCause()).status());
+      Assertions.assertEquals(0, outbox.getPendingCount());
+    }
+
+    verify(enmeshedClientMock).sendMessageWithoutRetry(any());
+  }
+
+  @Test
+  void itShouldDeliverEntriesLeftByAPreviousOutbox() throws Exception {
+
+    EnmeshedClient unavailableClient = mock(EnmeshedClient.class);
+    // The worker may not get to a delivery attempt before the outbox is closed
+    lenient().when(unavailableClient.sendMessageWithoutRetry(any())).thenThrow(feignException(503));
+
+    try (MessageOutbox outbox =
+        new MessageOutbox(
+            unavailableClient,
+            journalDirectory.resolve("outbox.journal"),
+            MessageOutbox.FsyncPolicy.NEVER,
+            Duration.ZERO,
+            10,
+            Duration.ofMinutes(1))) {
+      outbox.send(mail("First"));
+      outbox.send(mail("Second"));
+    }
+
+    ArgumentCaptor<SendMessage> sendMessageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+    when(enmeshedClientMock.sendMessageWithoutRetry(sendMessageCaptor.capture()))
+        .thenReturn(ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build()));
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      verify(enmeshedClientMock, timeout(5000).times(2)).sendMessageWithoutRetry(any());
+    }
+
+    Assertions.assertEquals(
+        List.of("First", "Second"),
+        sendMessageCaptor.getAllValues().stream()
+            .map(message -> ((Mail) message.getContent()).getSubject())
+            .toList());
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      Assertions.assertEquals(0, outbox.getPendingCount());
+    }
+  }
+
+  @Test
+  void itShouldNotCreateARequestAgainWhenOnlySendingFailed() throws Exception {
+
+    when(enmeshedClientMock.createOutgoingRequest(any()))
+        .thenReturn(
+            ResultWrapper.containing(
+                LocalRequest.builder()
+                    .id(TEST_REQUEST_ID)
+                    .content(Request.builder().id(TEST_REQUEST_ID).build())
+                    .build()));
+    ArgumentCaptor<SendMessage> sendMessageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+    when(enmeshedClientMock.sendMessageWithoutRetry(sendMessageCaptor.capture()))
+        .thenThrow(feignException(502))
+        .thenReturn(ResultWrapper.containing(Message.builder().id(TEST_MESSAGE_ID).build()));
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      MessageOutbox.Delivery delivery =
+          outbox.sendRequest(
+              LocalRequest.builder()
+                  .peer(TEST_ENMESHED_ADDRESS)
+                  .content(Request.builder().title("Title").build())
+                  .build());
+
+      delivery.result().get(5, TimeUnit.SECONDS);
+    }
+
+    verify(enmeshedClientMock).createOutgoingRequest(any());
+    verify(enmeshedClientMock, times(2)).sendMessageWithoutRetry(any());
+    Assertions.assertEquals(
+        List.of(TEST_ENMESHED_ADDRESS), sendMessageCaptor.getValue().getRecipients());
+    Assertions.assertEquals(
+        TEST_REQUEST_ID, ((Request) sendMessageCaptor.getValue().getContent()).getId());
+  }
+
+  @Test
+  void itShouldRejectRequestsWithoutPeer() throws Exception {
+
+    try (MessageOutbox outbox = outbox(enmeshedClientMock, 3)) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> outbox.sendRequest(LocalRequest.builder().content(new Request()).build()));
+      Assertions.assertEquals(0, outbox.getPendingCount());
+    }
+
+    verify(enmeshedClientMock, never()).createOutgoingRequest(any());
+  }
+
+  private MessageOutbox outbox(EnmeshedClient enmeshedClient, int maxAttempts) throws Exception {
+
+    return new MessageOutbox(
+        enmeshedClient,
+        journalDirectory.resolve("outbox.journal"),
+        MessageOutbox.FsyncPolicy.ALWAYS,
+        Duration.ZERO,
+        maxAttempts,
+        Duration.ofMillis(10));
+  }
+
+  private static SendMessage mail(String subject) {
+
+    return SendMessage.builder()
+        .recipients(List.of(TEST_ENMESHED_ADDRESS))
+        .content(Mail.builder().to(List.of(TEST_ENMESHED_ADDRESS)).subject(subject).build())
+        .build();
+  }
+
+  private static FeignException feignException(int status) {
+
+    return new FeignException.FeignServerException(
+        status,
+        "",
+        feign.Request.create(
+            feign.Request.HttpMethod.POST, "", Collections.emptyMap(), new byte[0], null, null),
+        null,
+        null);
+  }
+}
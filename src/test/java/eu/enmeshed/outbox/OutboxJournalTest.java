@@ -0,0 +1,103 @@
+package eu.enmeshed.outbox;
+
+import eu.enmeshed.outbox.OutboxJournal.Entry;
+import eu.enmeshed.outbox.OutboxJournal.RecordType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxJournalTest {
+
+  @TempDir Path journalDirectory;
+
+  @Test
+  void itShouldReplayEntriesWhichWereNotRemoved() throws Exception {
+
+    Path file = journalDirectory.resolve("outbox.journal");
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      long first = journal.append(RecordType.MESSAGE, bytes("first"));
+      long second = journal.append(RecordType.REQUEST, bytes("second"));
+      long third = journal.append(RecordType.MESSAGE, bytes("third"));
+
+      journal.remove(first, RecordType.DELIVERED);
+      journal.update(second, RecordType.CREATED_REQUEST, bytes("created"));
+      journal.remove(third, RecordType.FAILED);
+    }
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      List<Entry> entries = journal.entries();
+
+      Assertions.assertEquals(1, entries.size());
+      Assertions.assertEquals(1, entries.get(0).sequence());
+      Assertions.assertEquals(RecordType.CREATED_REQUEST, entries.get(0).type());
+      Assertions.assertEquals(
+          "created", new String(entries.get(0).payload(), StandardCharsets.UTF_8));
+      Assertions.assertEquals(3, journal.append(RecordType.MESSAGE, bytes("fourth")));
+    }
+  }
+
+  @Test
+  void itShouldStopReplayingAtATornRecord() throws Exception {
+
+    Path file = journalDirectory.resolve("outbox.journal");
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      journal.append(RecordType.MESSAGE, bytes("complete"));
+      journal.append(RecordType.MESSAGE, bytes("torn"));
+    }
+
+    // Corrupt the payload of the second record, as if the process died while writing it
+    int secondPayloadEnd = 2 * (8 + 9) + "complete".length() + "torn".length();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0}), secondPayloadEnd - 1);
+    }
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      Assertions.assertEquals(1, journal.size());
+      Assertions.assertEquals(
+          "complete", new String(journal.entries().get(0).payload(), StandardCharsets.UTF_8));
+
+      journal.append(RecordType.MESSAGE, bytes("next"));
+    }
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      Assertions.assertEquals(2, journal.size());
+    }
+  }
+
+  @Test
+  void itShouldCompactTheJournalOnceMostEntriesAreRemoved() throws Exception {
+
+    Path file = journalDirectory.resolve("outbox.journal");
+    byte[] payload = new byte[4096];
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      long kept = journal.append(RecordType.MESSAGE, bytes("kept"));
+      for (int i = 0; i < 1000; i++) {
+        journal.remove(journal.append(RecordType.MESSAGE, payload), RecordType.DELIVERED);
+      }
+
+      Assertions.assertTrue(Files.size(file) <= 2 << 20);
+      Assertions.assertEquals(kept, journal.entries().get(0).sequence());
+    }
+
+    try (OutboxJournal journal = OutboxJournal.open(file)) {
+      Assertions.assertEquals(1, journal.size());
+      Assertions.assertEquals(
+          "kept", new String(journal.entries().get(0).payload(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static byte[] bytes(String value) {
+
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
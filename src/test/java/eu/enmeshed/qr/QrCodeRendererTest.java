@@ -0,0 +1,61 @@
+package eu.enmeshed.qr;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class QrCodeRendererTest {
+
+  private static final String TRUNCATED_REFERENCE = "UkxUX1hYWHxBQUFBfHNlY3JldEtleQ==";
+
+  @Test
+  void itShouldRenderAReadablePng() throws Exception {
+
+    QrCodeRenderer renderer =
+        QrCodeRenderer.builder().size(250).errorCorrectionLevel(ErrorCorrectionLevel.H).build();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    renderer.writePng(TRUNCATED_REFERENCE, outputStream);
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertEquals(250, image.getWidth());
+    Assertions.assertEquals(250, image.getHeight());
+
+    int[] pixels =
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    String content =
+        new QRCodeReader()
+            .decode(
+                new BinaryBitmap(
+                    new HybridBinarizer(
+                        new RGBLuminanceSource(image.getWidth(), image.getHeight(), pixels))))
+            .getText();
+
+    Assertions.assertEquals("nmshd://tr#" + TRUNCATED_REFERENCE, content);
+  }
+
+  @Test
+  void itShouldRenderAnSvgWithTheConfiguredSize() throws Exception {
+
+    QrCodeRenderer renderer = QrCodeRenderer.builder().size(120).referencePrefix("custom#").build();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    renderer.writeSvg(TRUNCATED_REFERENCE, outputStream);
+
+    String svg = outputStream.toString(StandardCharsets.UTF_8);
+    Assertions.assertTrue(svg.startsWith("<svg "));
+    Assertions.assertTrue(svg.contains("width=\"120\" height=\"120\""));
+    Assertions.assertTrue(svg.contains("<path fill=\"#000\" d=\"M"));
+    Assertions.assertTrue(svg.endsWith("</svg>"));
+    Assertions.assertEquals("custom#" + TRUNCATED_REFERENCE, renderer.content(TRUNCATED_REFERENCE));
+  }
+}
@@ -0,0 +1,106 @@
+package eu.enmeshed.sync;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.enmeshed.client.EnmeshedClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SyncCoordinatorTest {
+
+  @Mock EnmeshedClient enmeshedClientMock;
+
+  SyncCoordinator syncCoordinator;
+
+  @BeforeEach
+  void setup() {
+
+    syncCoordinator = new SyncCoordinator(enmeshedClientMock);
+  }
+
+  @Test
+  void itShouldShareOneSyncBetweenCallersArrivingWhileASyncIsRunning() throws Exception {
+
+    CountDownLatch firstSyncStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstSync = new CountDownLatch(1);
+    AtomicInteger syncs = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              if (syncs.incrementAndGet() == 1) {
+                firstSyncStarted.countDown();
+                releaseFirstSync.await();
+              }
+              return null;
+            })
+        .when(enmeshedClientMock)
+        .sync();
+
+    ExecutorService executor = Executors.newFixedThreadPool(11);
+    try {
+      Future<?> first = executor.submit(() -> syncCoordinator.sync());
+      Assertions.assertTrue(firstSyncStarted.await(5, TimeUnit.SECONDS));
+
+      List<Future<?>> followers = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        followers.add(executor.submit(() -> syncCoordinator.sync()));
+      }
+      while (syncCoordinator.getMetrics().requested() < 11) {
+        Thread.sleep(1);
+      }
+      releaseFirstSync.countDown();
+
+      first.get(5, TimeUnit.SECONDS);
+      for (Future<?> follower : followers) {
+        follower.get(5, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    verify(enmeshedClientMock, times(2)).sync();
+    Assertions.assertEquals(
+        new SyncCoordinator.SyncMetrics(11, 2, 0), syncCoordinator.getMetrics());
+    Assertions.assertEquals(5.5, syncCoordinator.getMetrics().coalescingRatio());
+  }
+
+  @Test
+  void itShouldReuseASyncWithinTheFreshnessWindow() {
+
+    syncCoordinator.sync();
+    syncCoordinator.sync(Duration.ofMinutes(1));
+    syncCoordinator.sync();
+
+    verify(enmeshedClientMock, times(2)).sync();
+    Assertions.assertEquals(new SyncCoordinator.SyncMetrics(3, 2, 1), syncCoordinator.getMetrics());
+  }
+
+  @Test
+  void itShouldNotReuseAFailedSync() {
+
+    RuntimeException failure = new IllegalStateException("connector down");
+    doThrow(failure).doNothing().when(enmeshedClientMock).sync();
+
+    Assertions.assertSame(
+        failure, Assertions.assertThrows(RuntimeException.class, syncCoordinator::sync));
+    syncCoordinator.sync(Duration.ofMinutes(1));
+
+    verify(enmeshedClientMock, times(2)).sync();
+  }
+}
@@ -0,0 +1,78 @@
+package eu.enmeshed.sync;
+
+import eu.enmeshed.client.EnmeshedClient;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SyncSchedulerTest {
+
+  private static final Duration MIN_INTERVAL = Duration.ofMillis(10);
+  private static final Duration MAX_INTERVAL = Duration.ofMillis(80);
+
+  @Mock EnmeshedClient enmeshedClientMock;
+
+  SyncCoordinator syncCoordinator;
+
+  @BeforeEach
+  void setup() {
+
+    syncCoordinator = new SyncCoordinator(enmeshedClientMock);
+  }
+
+  @Test
+  void itShouldBackOffWhileIdleAndResetOnPendingWork() throws Exception {
+
+    try (SyncScheduler syncScheduler =
+        new SyncScheduler(syncCoordinator, MIN_INTERVAL, MAX_INTERVAL)) {
+
+      awaitCondition(() -> syncScheduler.getInterval().equals(MAX_INTERVAL));
+
+      syncCoordinator.addPendingWork("RLT_ID", ZonedDateTime.now().plusMinutes(1));
+      Assertions.assertEquals(MIN_INTERVAL, syncScheduler.getInterval());
+
+      long performed = syncCoordinator.getMetrics().performed();
+      awaitCondition(() -> syncCoordinator.getMetrics().performed() >= performed + 3);
+      Assertions.assertEquals(MIN_INTERVAL, syncScheduler.getInterval());
+
+      syncCoordinator.removePendingWork("RLT_ID");
+      awaitCondition(() -> syncScheduler.getInterval().equals(MAX_INTERVAL));
+    }
+  }
+
+  @Test
+  void itShouldServeReadsWithinTheMaxStalenessFromBackgroundSyncs() throws Exception {
+
+    try (SyncScheduler ignored = new SyncScheduler(syncCoordinator, MIN_INTERVAL, MAX_INTERVAL)) {
+
+      awaitCondition(() -> syncCoordinator.getMetrics().performed() >= 1);
+      syncCoordinator.sync(Duration.ofMinutes(1));
+
+      Assertions.assertEquals(1, syncCoordinator.getMetrics().reused());
+    }
+  }
+
+  @Test
+  void itShouldIgnoreExpiredPendingWork() {
+
+    syncCoordinator.addPendingWork("REQ_ID", ZonedDateTime.now().minusSeconds(1));
+
+    Assertions.assertEquals(0, syncCoordinator.getPendingWorkCount());
+  }
+
+  private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "Condition not met within 5 seconds");
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package eu.enmeshed.timer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+  @Test
+  void itShouldRunCallbacksInDeadlineOrderAcrossLevels() throws Exception {
+
+    try (TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(1))) {
+      List<String> order = new CopyOnWriteArrayList<>();
+      CountDownLatch done = new CountDownLatch(3);
+
+      // 300 ticks are beyond the first level and have to be moved down
+      timingWheel.schedule(
+          Duration.ofMillis(300),
+          () -> {
+            order.add("late");
+            done.countDown();
+          });
+      timingWheel.schedule(
+          Duration.ofMillis(20),
+          () -> {
+            order.add("early");
+            done.countDown();
+          });
+      timingWheel.schedule(
+          Duration.ofMillis(-5),
+          () -> {
+            order.add("overdue");
+            done.countDown();
+          });
+
+      long start = System.nanoTime();
+      Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+      Assertions.assertEquals(List.of("overdue", "early", "late"), order);
+      Assertions.assertTrue(System.nanoTime() - start >= Duration.ofMillis(290).toNanos());
+      Assertions.assertEquals(0, timingWheel.size());
+    }
+  }
+
+  @Test
+  void itShouldNotRunCancelledCallbacks() throws Exception {
+
+    try (TimingWheel timingWheel = new TimingWheel(Duration.ofMillis(1))) {
+      CountDownLatch cancelledRan = new CountDownLatch(1);
+      CountDownLatch otherRan = new CountDownLatch(1);
+
+      TimingWheel.Timeout cancelled =
+          timingWheel.schedule(Duration.ofMillis(10), cancelledRan::countDown);
+      timingWheel.schedule(Duration.ofMillis(30), otherRan::countDown);
+
+      Assertions.assertTrue(cancelled.cancel());
+      Assertions.assertFalse(cancelled.cancel());
+      Assertions.assertEquals(1, timingWheel.size());
+
+      Assertions.assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+      Assertions.assertEquals(1, cancelledRan.getCount());
+      Assertions.assertFalse(cancelled.isExpired());
+    }
+  }
+}